@@ -0,0 +1,95 @@
+package dev.rocketsheep.plugin.bench;
+
+import dev.rocketsheep.plugin.index.ContainerIndex;
+import dev.rocketsheep.plugin.search.ContainerHits;
+import dev.rocketsheep.plugin.search.SphereScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Container search across radii and container densities: the original cubic scan,
+ * the chunk-batched sphere scan, and a warm index query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerSearchBenchmark {
+
+    @Param({"1", "4", "8", "16", "32"})
+    public int radius;
+
+    /** Fraction of blocks holding a container: sparse base, storage hall. */
+    @Param({"0.0002", "0.005"})
+    public double density;
+
+    private SyntheticWorld world;
+    private ContainerIndex<Object> index;
+    private final ContainerHits<Object> hits = new ContainerHits<>();
+
+    private static final double CENTER_X = 0.3;
+    private static final double CENTER_Y = 64.6;
+    private static final double CENTER_Z = -0.2;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        world = new SyntheticWorld(48, density, 42L);
+        index = new ContainerIndex<>(world);
+        // Warm the index so the benchmark measures steady-state queries
+        index.query(CENTER_X, CENTER_Y, CENTER_Z, radius);
+    }
+
+    @Benchmark
+    public List<Object> cubeScanReference() {
+        // The original findNearbyContainers loop: every block in the cube, sqrt per block
+        List<Object> containers = new ArrayList<>();
+        int centerX = (int) Math.floor(CENTER_X);
+        int centerY = (int) Math.floor(CENTER_Y);
+        int centerZ = (int) Math.floor(CENTER_Z);
+        for (int x = centerX - radius; x <= centerX + radius; x++) {
+            for (int y = centerY - radius; y <= centerY + radius; y++) {
+                for (int z = centerZ - radius; z <= centerZ + radius; z++) {
+                    double dx = x + 0.5 - CENTER_X;
+                    double dy = y + 0.5 - CENTER_Y;
+                    double dz = z + 0.5 - CENTER_Z;
+                    if (Math.sqrt(dx * dx + dy * dy + dz * dz) > radius) {
+                        continue;
+                    }
+                    Object container = world.containerAt(x, y, z);
+                    if (container != null) {
+                        containers.add(container);
+                    }
+                }
+            }
+        }
+        return containers;
+    }
+
+    @Benchmark
+    public int sphereScan() {
+        hits.clear();
+        SphereScanner.scan(world, CENTER_X, CENTER_Y, CENTER_Z, radius, hits);
+        return hits.size();
+    }
+
+    @Benchmark
+    public int indexedQuery() {
+        return index.query(CENTER_X, CENTER_Y, CENTER_Z, radius).size();
+    }
+}
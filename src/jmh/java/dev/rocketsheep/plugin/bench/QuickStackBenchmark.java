@@ -0,0 +1,125 @@
+package dev.rocketsheep.plugin.bench;
+
+import dev.rocketsheep.plugin.deposit.DepositPlanner;
+import dev.rocketsheep.plugin.deposit.DepositSnapshot;
+import dev.rocketsheep.plugin.deposit.InventorySnapshot;
+import dev.rocketsheep.plugin.deposit.ItemKeys;
+import dev.rocketsheep.plugin.deposit.TransferPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deposit transfer step across inventory and container sizes: one quick stack per
+ * container (each rescanning the player's slots) versus the single-pass planner.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuickStackBenchmark {
+
+    private static final int ITEM_TYPES = 200;
+    private static final int MAX_STACK = 100;
+
+    @Param({"9", "36"})
+    public int playerSlots;
+
+    @Param({"18", "54"})
+    public int containerSlots;
+
+    @Param({"8", "64", "200"})
+    public int containers;
+
+    private DepositSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(7L);
+        InventorySnapshot player = randomInventory(random, playerSlots, 0.9);
+        InventorySnapshot[] targets = new InventorySnapshot[containers];
+        long[] positions = new long[containers];
+        for (int i = 0; i < containers; i++) {
+            targets[i] = randomInventory(random, containerSlots, 0.6);
+            positions[i] = i;
+        }
+        snapshot = new DepositSnapshot(player, positions, targets, new int[containers]);
+    }
+
+    @Benchmark
+    public int sequentialQuickStack() {
+        // Stand-in for the old loop: each container's quick stack rescans every player slot
+        int[] remaining = new int[playerSlots];
+        InventorySnapshot player = snapshot.playerStorage();
+        for (int slot = 0; slot < playerSlots; slot++) {
+            remaining[slot] = player.quantity(slot);
+        }
+
+        int moved = 0;
+        for (int target = 0; target < snapshot.containerCount(); target++) {
+            InventorySnapshot container = snapshot.container(target);
+            int[] quantities = new int[containerSlots];
+            for (int slot = 0; slot < containerSlots; slot++) {
+                quantities[slot] = container.quantity(slot);
+            }
+            for (int slot = 0; slot < playerSlots; slot++) {
+                int key = player.itemKey(slot);
+                if (key == ItemKeys.EMPTY || remaining[slot] == 0 || !holds(container, key)) {
+                    continue;
+                }
+                for (int targetSlot = 0; targetSlot < containerSlots && remaining[slot] > 0; targetSlot++) {
+                    int targetKey = container.itemKey(targetSlot);
+                    if (targetKey == key || targetKey == ItemKeys.EMPTY) {
+                        int take = Math.min(remaining[slot], MAX_STACK - quantities[targetSlot]);
+                        quantities[targetSlot] += take;
+                        remaining[slot] -= take;
+                        moved += take;
+                    }
+                }
+            }
+        }
+        return moved;
+    }
+
+    @Benchmark
+    public TransferPlan singlePassPlanner() {
+        return DepositPlanner.plan(snapshot);
+    }
+
+    private static boolean holds(InventorySnapshot container, int key) {
+        for (int slot = 0; slot < container.size(); slot++) {
+            if (container.itemKey(slot) == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static InventorySnapshot randomInventory(SplittableRandom random, int slots, double fill) {
+        int[] keys = new int[slots];
+        int[] quantities = new int[slots];
+        int[] maxStacks = new int[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            if (random.nextDouble() < fill) {
+                keys[slot] = 1 + random.nextInt(ITEM_TYPES);
+                quantities[slot] = 1 + random.nextInt(MAX_STACK);
+                maxStacks[slot] = MAX_STACK;
+            }
+        }
+        return new InventorySnapshot(keys, quantities, maxStacks);
+    }
+}
@@ -0,0 +1,90 @@
+package dev.rocketsheep.plugin.bench;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+import dev.rocketsheep.plugin.search.SectionAccess;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Stand-in world for benchmarks: a fixed set of container positions scattered through
+ * a cube at a given density, stored in an open-addressing hash set of packed positions.
+ * Every section reports as loaded and non-empty, which is the worst case for the scan.
+ */
+public class SyntheticWorld implements SectionAccess<Object> {
+
+    private static final Object CONTAINER = new Object();
+
+    private final long[] table;
+    private final int mask;
+    private final long[] containers;
+
+    /**
+     * @param halfExtent Containers are placed within this many blocks of the origin on X and Z
+     * @param density Fraction of blocks that hold a container
+     */
+    public SyntheticWorld(int halfExtent, double density, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int span = 2 * halfExtent + 1;
+        int height = Math.min(ChunkMath.WORLD_HEIGHT, span);
+        int count = (int) Math.max(1, (double) span * span * height * density);
+
+        int capacity = Integer.highestOneBit(count * 4 - 1) << 1;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(table, Long.MIN_VALUE);
+
+        this.containers = new long[count];
+        for (int i = 0; i < count; i++) {
+            long packed = ChunkMath.pack(
+                random.nextInt(-halfExtent, halfExtent + 1),
+                random.nextInt(0, height),
+                random.nextInt(-halfExtent, halfExtent + 1));
+            containers[i] = packed;
+            insert(packed);
+        }
+    }
+
+    public long[] containerPositions() {
+        return containers;
+    }
+
+    @Override
+    public boolean loadSection(int chunkX, int section, int chunkZ) {
+        return true;
+    }
+
+    @Override
+    public Object containerAt(int x, int y, int z) {
+        return contains(ChunkMath.pack(x, y, z)) ? CONTAINER : null;
+    }
+
+    @Override
+    public boolean isPassable(int x, int y, int z) {
+        return !contains(ChunkMath.pack(x, y, z));
+    }
+
+    private void insert(long packed) {
+        int slot = hash(packed) & mask;
+        while (table[slot] != Long.MIN_VALUE && table[slot] != packed) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = packed;
+    }
+
+    private boolean contains(long packed) {
+        int slot = hash(packed) & mask;
+        while (table[slot] != Long.MIN_VALUE) {
+            if (table[slot] == packed) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    private static int hash(long packed) {
+        long h = packed * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -4,8 +4,20 @@ import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import com.hypixel.hytale.server.core.universe.world.events.AddWorldEvent;
+import com.hypixel.hytale.server.core.universe.world.events.ChunkPreLoadProcessEvent;
+import com.hypixel.hytale.server.core.universe.world.events.ChunkUnloadEvent;
+import com.hypixel.hytale.server.core.universe.world.events.RemoveWorldEvent;
 import dev.rocketsheep.plugin.commands.AreaDepositCommand;
+import dev.rocketsheep.plugin.config.AreaDepositConfig;
+import dev.rocketsheep.plugin.listeners.WorldIndexListener;
+import dev.rocketsheep.plugin.stats.DepositStats;
 import dev.rocketsheep.plugin.systems.AreaDepositorEventSystem;
+import dev.rocketsheep.plugin.systems.ContainerBreakEventSystem;
+import dev.rocketsheep.plugin.systems.ContainerPlaceEventSystem;
+import dev.rocketsheep.plugin.systems.DepositSchedulerSystem;
+import dev.rocketsheep.plugin.systems.IndexWriteBackSystem;
+import dev.rocketsheep.plugin.systems.ProximityDepositSystem;
 
 import javax.annotation.Nonnull;
 
@@ -19,6 +31,7 @@ import javax.annotation.Nonnull;
  * Features:
  *   - /ad [radius] command - Deposit to all nearby containers
  *   - Area Depositor block - Place and interact to deposit items
+ *   - Automatic deposits - Stand next to an Area Depositor (opt-in)
  */
 public class AreaDeposit extends JavaPlugin {
 
@@ -28,21 +41,69 @@ public class AreaDeposit extends JavaPlugin {
 
     @Override
     protected void setup() {
+        // Load settings (tick budgets etc.) from the plugin data directory
+        AreaDepositConfig.load(this.getDataDirectory());
+        DepositStats.setEnabled(AreaDepositConfig.get().isStatsEnabled());
+
+        // Persist container indexes next to the plugin data, one directory per world
+        AreaDepositService.setStorageDirectory(
+            AreaDepositConfig.get().isIndexPersistent() ? this.getDataDirectory().resolve("index") : null);
+
         // Register the /ad command
         this.getCommandRegistry().registerCommand(new AreaDepositCommand());
 
         // Register the UseBlockEvent.Pre system for the Area Depositor block
         this.getEntityStoreRegistry().registerSystem(new AreaDepositorEventSystem());
+
+        // Deposit for players who linger next to an Area Depositor, if enabled
+        if (AreaDepositConfig.get().isAutoDepositEnabled()) {
+            this.getEntityStoreRegistry().registerSystem(new ProximityDepositSystem());
+        }
+
+        // Keep the container index current as blocks are placed and broken
+        this.getEntityStoreRegistry().registerSystem(new ContainerPlaceEventSystem());
+        this.getEntityStoreRegistry().registerSystem(new ContainerBreakEventSystem());
+
+        // Run queued deposits within each world's per-tick budget
+        this.getEntityStoreRegistry().registerSystem(new DepositSchedulerSystem());
+
+        // Write changed container index regions back to disk now and then
+        this.getEntityStoreRegistry().registerSystem(new IndexWriteBackSystem());
     }
 
     @Override
     protected void start() {
-        // TEST: Register connect event to verify event system works
-        this.getEventRegistry().registerGlobal(
-            PlayerConnectEvent.class,
-            event -> {
-                event.getPlayer().sendMessage(Message.raw("[AreaDeposit] Event system working!"));
-            }
-        );
+        // Create and close the per-world services as worlds come and go, and keep their
+        // container indexes current as chunks load and unload
+        this.getEventRegistry().registerGlobal(AddWorldEvent.class, WorldIndexListener::onWorldAdded);
+        this.getEventRegistry().registerGlobal(ChunkPreLoadProcessEvent.class, WorldIndexListener::onChunkLoad);
+        this.getEventRegistry().registerGlobal(ChunkUnloadEvent.class, WorldIndexListener::onChunkUnload);
+        this.getEventRegistry().registerGlobal(RemoveWorldEvent.class, WorldIndexListener::onWorldRemoved);
+
+        // Dump deposit stats to the server log now and then
+        DepositStats.startLogging(AreaDepositConfig.get().getStatsLogIntervalSeconds());
+
+        // Resolve the depositor block type once, so block uses are matched by identity
+        AreaDepositorBlock.resolve();
+
+        // Debug only: greet joining players to verify the event system works
+        if (AreaDepositConfig.get().isDebugEnabled()) {
+            this.getEventRegistry().registerGlobal(
+                PlayerConnectEvent.class,
+                event -> {
+                    event.getPlayer().sendMessage(Message.raw("[AreaDeposit] Event system working!"));
+                }
+            );
+        }
+    }
+
+    @Override
+    protected void shutdown() {
+        // Stop the periodic stats dump
+        DepositStats.stopLogging();
+
+        // Close every world's service on its world thread, stopping its planner threads
+        // and saving and closing its container index files
+        AreaDepositService.closeAll();
     }
 }
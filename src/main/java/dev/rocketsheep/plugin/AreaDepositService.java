@@ -1,68 +1,331 @@
 package dev.rocketsheep.plugin;
 
 import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.math.vector.Vector3i;
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.inventory.Inventory;
 import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
-import com.hypixel.hytale.server.core.inventory.transaction.ListTransaction;
 import com.hypixel.hytale.server.core.modules.entity.component.TransformComponent;
-import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.World;
-import com.hypixel.hytale.server.core.universe.world.meta.BlockState;
-import com.hypixel.hytale.server.core.universe.world.meta.state.ItemContainerBlockState;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
+import dev.rocketsheep.plugin.config.AreaDepositConfig;
+import dev.rocketsheep.plugin.deposit.DepositJob;
+import dev.rocketsheep.plugin.deposit.DepositJournal;
+import dev.rocketsheep.plugin.deposit.DepositMode;
+import dev.rocketsheep.plugin.deposit.DepositPlanner;
+import dev.rocketsheep.plugin.deposit.DepositScheduler;
+import dev.rocketsheep.plugin.deposit.DepositStrategy;
+import dev.rocketsheep.plugin.deposit.DepositThrottle;
+import dev.rocketsheep.plugin.deposit.DepositTrigger;
+import dev.rocketsheep.plugin.deposit.ProximityTracker;
+import dev.rocketsheep.plugin.deposit.UndoJob;
+import dev.rocketsheep.plugin.index.ChunkMath;
+import dev.rocketsheep.plugin.index.ContainerIndex;
+import dev.rocketsheep.plugin.index.DepositorHash;
+import dev.rocketsheep.plugin.index.DepositorNetworks;
+import dev.rocketsheep.plugin.index.ItemIndex;
+import dev.rocketsheep.plugin.index.RegionStore;
+import dev.rocketsheep.plugin.platform.HytaleContainerAccess;
+import dev.rocketsheep.plugin.platform.HytaleDepositPlayer;
+import dev.rocketsheep.plugin.search.ContainerHits;
+import dev.rocketsheep.plugin.search.WorldSectionAccess;
+import dev.rocketsheep.plugin.stats.DepositStats;
+import dev.rocketsheep.plugin.stats.TriggerStats;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 /**
- * Service class containing the core Area Deposit logic.
- * Used by both the /ad command and the Area Depositor block.
+ * Per-world Area Deposit service, used by the /ad commands and the Area Depositor block.
+ *
+ * Each world gets its own instance, created when the world is added (or on first use for
+ * worlds that were already running) and closed when it is removed. An instance owns
+ * everything the world's deposits touch: the container index and its scan buffers, the
+ * item index, the depositor networks, the depositors known for automatic deposits,
+ * the undo journal, the queue of pending jobs and the threads their plans run on.
+ * Worlds tick on their own threads, so keeping this state per world means no two
+ * threads ever share it, and removing a world frees all of it at once.
+ *
+ * Apart from {@link #executeDeposit} and the static lifecycle methods, everything must
+ * be called from the world's thread.
  */
 public class AreaDepositService {
 
-    private static final double MAX_RADIUS = 32.0;
+    private static final Logger LOGGER = Logger.getLogger(AreaDepositService.class.getName());
+    private static final Map<World, AreaDepositService> SERVICES = new ConcurrentHashMap<>();
+    // How long plugin shutdown waits for the world threads to close their services
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    // Root directory for persistent container indexes, or null to keep them in memory only
+    private static volatile Path storageDirectory;
+
+    private final ContainerIndex<ItemContainer> containerIndex;
+    private final ItemIndex<ItemContainer> itemIndex;
+    private final DepositorNetworks<ItemContainer> networks;
+    private final DepositScheduler scheduler;
+    private final DepositPlanner planner;
+    private final DepositorHash depositors;
+    private final ProximityTracker<Ref<EntityStore>> proximity;
+    private final DepositJournal journal;
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    private AreaDepositService(World world, Path directory) {
+        Path worldDirectory = directory != null
+            ? directory.resolve(world.getName().replaceAll("[^A-Za-z0-9._-]", "_"))
+            : null;
+        AreaDepositConfig config = AreaDepositConfig.get();
+        this.containerIndex = new ContainerIndex<>(new WorldSectionAccess(world),
+            worldDirectory != null ? new RegionStore(worldDirectory) : null);
+        this.itemIndex = new ItemIndex<>(HytaleContainerAccess.INSTANCE, config.getIndexMissCacheSize());
+        this.networks = new DepositorNetworks<>(containerIndex);
+        this.scheduler = new DepositScheduler();
+        this.planner = new DepositPlanner();
+        this.depositors = new DepositorHash(config.getAutoDepositRange(),
+            worldDirectory != null ? worldDirectory.resolve("depositors.dat") : null);
+        this.depositors.load();
+        this.proximity = new ProximityTracker<>(depositors, Ref::isValid,
+            config.getAutoDepositDwellMillis(), config.getAutoDepositMaxPerTick());
+        this.journal = new DepositJournal(config.getUndoMaxEntries(), config.getUndoExpirySeconds());
+    }
+
+    /**
+     * Sets the directory container indexes are persisted under (one subdirectory per
+     * world), or null to disable persistence. Applies to services created afterwards.
+     */
+    public static void setStorageDirectory(Path directory) {
+        storageDirectory = directory;
+    }
+
+    /**
+     * Gets the service for a world, creating it on first use.
+     */
+    public static AreaDepositService forWorld(World world) {
+        return SERVICES.computeIfAbsent(world, w -> new AreaDepositService(w, storageDirectory));
+    }
+
+    /**
+     * Gets the service for a world if one has been created. Block and chunk events use
+     * this, so a late event for a removed world can't bring its service back.
+     */
+    public static AreaDepositService getIfPresent(World world) {
+        return SERVICES.get(world);
+    }
+
+    /**
+     * Creates the service for a world that has just been added.
+     */
+    public static void onWorldAdded(World world) {
+        forWorld(world);
+    }
+
+    /**
+     * Forgets the service for a world that is being removed and closes it on the world's
+     * thread, so it can't race a tick still using it. Doesn't wait for the close.
+     */
+    public static void onWorldRemoved(World world) {
+        AreaDepositService service = SERVICES.remove(world);
+        if (service != null) {
+            closeOnWorldThread(world, service);
+        }
+    }
+
+    /**
+     * Closes every world's service (plugin shutdown), each on its world's thread, and
+     * waits up to 5 seconds in total for them. A service whose world thread has stopped
+     * meanwhile is closed on the calling thread instead; one whose world is still running
+     * but didn't get to it is left unclosed, losing the index changes since its last
+     * write-back.
+     */
+    public static void closeAll() {
+        Map<World, AreaDepositService> closing = new HashMap<>();
+        for (World world : SERVICES.keySet()) {
+            AreaDepositService service = SERVICES.remove(world);
+            if (service != null) {
+                closing.put(world, service);
+                closeOnWorldThread(world, service);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+        for (Map.Entry<World, AreaDepositService> entry : closing.entrySet()) {
+            World world = entry.getKey();
+            AreaDepositService service = entry.getValue();
+            try {
+                if (service.closed.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!world.isAlive()) {
+                service.close();
+            } else {
+                LOGGER.warning("Timed out closing Area Deposit for world " + world.getName()
+                    + "; index changes since the last write-back are lost");
+            }
+        }
+    }
+
+    private static void closeOnWorldThread(World world, AreaDepositService service) {
+        if (world.isAlive()) {
+            world.execute(service::close);
+        } else {
+            service.close();
+        }
+    }
+
+    public ContainerIndex<ItemContainer> getContainerIndex() {
+        return containerIndex;
+    }
+
+    public ItemIndex<ItemContainer> getItemIndex() {
+        return itemIndex;
+    }
+
+    public DepositorNetworks<ItemContainer> getNetworks() {
+        return networks;
+    }
+
+    public DepositScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public DepositorHash getDepositors() {
+        return depositors;
+    }
+
+    public ProximityTracker<Ref<EntityStore>> getProximity() {
+        return proximity;
+    }
+
+    public DepositJournal getJournal() {
+        return journal;
+    }
 
     /**
      * Executes the area deposit functionality for a player.
-     * Finds all nearby containers and performs quick stack to each one.
+     * Routes the request to the world the player is in and runs it on that world's
+     * service. Safe to call from any thread.
      *
      * @param entityRef Reference to the player entity
      * @param radius The search radius in blocks
+     * @param trigger What started the request, for stats
      */
-    public static void executeDeposit(Ref<EntityStore> entityRef, double radius) {
-        // Clamp radius
-        if (radius > MAX_RADIUS) {
-            radius = MAX_RADIUS;
-        }
-        if (radius < 1.0) {
-            radius = 1.0;
+    public static void executeDeposit(Ref<EntityStore> entityRef, double radius, DepositTrigger trigger) {
+        if (!entityRef.isValid()) {
+            return;
         }
 
-        final double finalRadius = radius;
+        // Each world ticks on its own thread, so hop onto the player's world
+        Store<EntityStore> store = entityRef.getStore();
+        World world = store.getExternalData().getWorld();
+        if (world == null) {
+            return;
+        }
 
-        // Execute on the world thread
-        Universe.get().getDefaultWorld().execute(() -> {
-            executeDepositInternal(entityRef, finalRadius);
-        });
+        world.execute(() -> forWorld(world).executeDepositWithStore(entityRef, store, radius, trigger));
     }
 
     /**
      * Executes the area deposit functionality with access to the world store.
+     * The work is queued on the world's deposit scheduler and runs within its
+     * per-tick budget; the player is messaged when it finishes.
      *
      * @param entityRef Reference to the player entity
      * @param store The entity store
-     * @param world The world
      * @param radius The search radius
+     * @param trigger What started the request, for stats
      */
-    public static void executeDepositWithStore(
+    public void executeDepositWithStore(
             Ref<EntityStore> entityRef,
             Store<EntityStore> store,
-            World world,
-            double radius) {
+            double radius,
+            DepositTrigger trigger) {
+        executeDepositWithStore(entityRef, store, radius, trigger, null);
+    }
+
+    /**
+     * Executes the area deposit functionality with access to the world store,
+     * optionally centered on an Area Depositor block instead of the player.
+     * Depositor deposits reuse the block's cached container network.
+     *
+     * @param entityRef Reference to the player entity
+     * @param store The entity store
+     * @param radius The search radius
+     * @param trigger What started the request, for stats
+     * @param depositor Position of the Area Depositor block used, or null to center on the player
+     */
+    public void executeDepositWithStore(
+            Ref<EntityStore> entityRef,
+            Store<EntityStore> store,
+            double radius,
+            DepositTrigger trigger,
+            Vector3i depositor) {
+        executeWithStore(entityRef, store, radius, trigger, depositor, DepositMode.QUICK_STACK);
+    }
+
+    /**
+     * Sorts the player's items into the containers around them: each item goes to a
+     * container already holding it, then to one holding the same category of items,
+     * then to an empty one. Runs through the same queue and tick budget as a deposit.
+     *
+     * @param entityRef Reference to the player entity
+     * @param store The entity store
+     * @param radius The search radius
+     * @param mode {@link DepositMode#SORT}, or {@link DepositMode#SORT_ALL} to also gather
+     *        stacks scattered across the containers
+     */
+    public void executeSortWithStore(
+            Ref<EntityStore> entityRef,
+            Store<EntityStore> store,
+            double radius,
+            DepositMode mode) {
+        executeWithStore(entityRef, store, radius, DepositTrigger.COMMAND, null, mode);
+    }
+
+    /**
+     * Takes back what the player's last deposit or sort in this world moved out of their
+     * storage. Runs through the same queue and tick budget as a deposit, after any
+     * deposit of theirs that is still running; each further undo goes one deposit back.
+     *
+     * @param entityRef Reference to the player entity
+     * @param store The entity store
+     */
+    public void executeUndoWithStore(Ref<EntityStore> entityRef, Store<EntityStore> store) {
+        if (!entityRef.isValid()) {
+            return;
+        }
+
+        Player player = store.getComponent(entityRef, Player.getComponentType());
+        if (player == null) {
+            return;
+        }
+        if (!journal.isEnabled()) {
+            player.sendMessage(Message.raw("Undo is disabled on this server."));
+            return;
+        }
+
+        scheduler.request(new UndoJob<>(new HytaleDepositPlayer(entityRef), journal, containerIndex, itemIndex,
+            HytaleContainerAccess.INSTANCE));
+    }
+
+    private void executeWithStore(
+            Ref<EntityStore> entityRef,
+            Store<EntityStore> store,
+            double radius,
+            DepositTrigger trigger,
+            Vector3i depositor,
+            DepositMode mode) {
+
+        TriggerStats stats = DepositStats.forTrigger(trigger);
+        long start = stats != null ? System.nanoTime() : 0L;
 
         // Validate entity reference
         if (!entityRef.isValid()) {
@@ -70,8 +333,9 @@ public class AreaDepositService {
         }
 
         // Clamp radius
-        if (radius > MAX_RADIUS) {
-            radius = MAX_RADIUS;
+        double maxRadius = AreaDepositConfig.get().getMaxRadius();
+        if (radius > maxRadius) {
+            radius = maxRadius;
         }
         if (radius < 1.0) {
             radius = 1.0;
@@ -87,97 +351,102 @@ public class AreaDepositService {
         TransformComponent transform = player.getTransformComponent();
         Vector3d playerPos = transform.getPosition();
 
-        // Get player's inventory storage container
+        // Make sure the player has storage to deposit from
         Inventory playerInventory = player.getInventory();
         if (playerInventory == null) {
             player.sendMessage(Message.raw("Error: Could not access inventory."));
             return;
         }
-        ItemContainer playerStorage = playerInventory.getStorage();
 
-        // Find all nearby container blocks
-        List<ItemContainer> nearbyContainers = findNearbyContainers(world, playerPos, radius);
-
-        if (nearbyContainers.isEmpty()) {
-            player.sendMessage(Message.raw("No containers found within " + (int) radius + " blocks."));
-            return;
-        }
-
-        // Execute quick stack to each container individually (matches vanilla behavior)
-        int containersWithDeposits = 0;
-        int totalOperations = 0;
-
-        for (ItemContainer container : nearbyContainers) {
-            ListTransaction<?> transaction = playerStorage.quickStackTo(container);
-            if (transaction.succeeded() && transaction.size() > 0) {
-                containersWithDeposits++;
-                totalOperations += transaction.size();
-            }
+        // Queue the search and transfers; the scheduler spreads them over the next ticks
+        // and sends the result message when the job completes. Repeat requests from the
+        // same player are merged or dropped by the scheduler's throttle.
+        DepositJob<ItemContainer> job;
+        if (depositor != null) {
+            job = new DepositJob<>(
+                new HytaleDepositPlayer(entityRef),
+                trigger,
+                mode,
+                AreaDepositConfig.get().getSearchMode(),
+                DepositStrategy.fromConfig(),
+                planner,
+                networks,
+                ChunkMath.pack(depositor.x, depositor.y, depositor.z),
+                itemIndex,
+                HytaleContainerAccess.INSTANCE,
+                journal,
+                radius
+            );
+        } else {
+            job = new DepositJob<>(
+                new HytaleDepositPlayer(entityRef),
+                trigger,
+                mode,
+                AreaDepositConfig.get().getSearchMode(),
+                DepositStrategy.fromConfig(),
+                planner,
+                containerIndex,
+                itemIndex,
+                HytaleContainerAccess.INSTANCE,
+                journal,
+                playerPos.x, playerPos.y, playerPos.z,
+                radius
+            );
         }
+        DepositThrottle.Result result = scheduler.request(job);
 
-        // Report actual results
-        if (totalOperations > 0) {
-            player.sendMessage(Message.raw(
-                "Deposited items into " + containersWithDeposits + " container(s)."
-            ));
-        } else {
-            player.sendMessage(Message.raw(
-                "No matching items to deposit. Found " + nearbyContainers.size() + " container(s)."
-            ));
+        if (stats != null) {
+            stats.recordRequest(result, System.nanoTime() - start);
         }
     }
 
     /**
-     * Internal method to execute deposit when we don't have direct store access.
+     * Finds all container blocks within the specified radius of a position.
+     * Uses the per-world container index, so the cost scales with the number of
+     * containers nearby rather than with the volume searched.
+     *
+     * The returned buffer is reused by the next search in the same world, so it must
+     * be consumed on the world thread before searching again.
+     *
+     * @param center The center position to search from
+     * @param radius The search radius in blocks
+     * @return The ItemContainers found in range
      */
-    private static void executeDepositInternal(Ref<EntityStore> entityRef, double radius) {
-        // This method is called from the world execute() context
-        // We need to get the store from the entity ref
-        // For now, log that this path is not fully implemented
-        // The command path (executeDepositWithStore) should be used instead
+    public ContainerHits<ItemContainer> findNearbyContainers(Vector3d center, double radius) {
+        return containerIndex.query(center.x, center.y, center.z, radius);
     }
 
     /**
-     * Finds all container blocks within the specified radius of a position.
+     * Finds all container blocks within the specified radius by scanning every block in
+     * the sphere, section by section. Fallback for when the index can't be trusted.
      *
-     * @param world The world to search in
      * @param center The center position to search from
      * @param radius The search radius in blocks
-     * @return List of ItemContainers found in range
+     * @return The ItemContainers found in range (same buffer rules as findNearbyContainers)
      */
-    public static List<ItemContainer> findNearbyContainers(World world, Vector3d center, double radius) {
-        List<ItemContainer> containers = new ArrayList<>();
-
-        int centerX = (int) Math.floor(center.x);
-        int centerY = (int) Math.floor(center.y);
-        int centerZ = (int) Math.floor(center.z);
-        int radiusInt = (int) Math.ceil(radius);
-
-        // Iterate through all blocks in the cubic area
-        for (int x = centerX - radiusInt; x <= centerX + radiusInt; x++) {
-            for (int y = centerY - radiusInt; y <= centerY + radiusInt; y++) {
-                for (int z = centerZ - radiusInt; z <= centerZ + radiusInt; z++) {
-                    // Check if within spherical radius
-                    double distance = center.distanceTo(x + 0.5, y + 0.5, z + 0.5);
-                    if (distance > radius) {
-                        continue;
-                    }
-
-                    // Get the block state at this position (false = don't follow filler blocks)
-                    BlockState blockState = world.getState(x, y, z, false);
-
-                    // Check if it's a container block
-                    if (blockState instanceof ItemContainerBlockState) {
-                        ItemContainerBlockState containerState = (ItemContainerBlockState) blockState;
-                        ItemContainer container = containerState.getItemContainer();
-                        if (container != null) {
-                            containers.add(container);
-                        }
-                    }
-                }
-            }
-        }
+    public ContainerHits<ItemContainer> scanNearbyContainers(Vector3d center, double radius) {
+        return containerIndex.scan(center.x, center.y, center.z, radius);
+    }
 
-        return containers;
+    /**
+     * Drops the pending jobs, undo journal and tracked players, unregisters the item index's container
+     * listeners, saves the known depositors and writes back and closes the container index.
+     * Runs on the world thread, or once it has stopped; later calls do nothing.
+     */
+    private synchronized void close() {
+        if (closed.getCount() == 0) {
+            return;
+        }
+        try {
+            scheduler.clear();
+            planner.close();
+            journal.clear();
+            proximity.clear();
+            itemIndex.clear();
+            depositors.save();
+            containerIndex.close();
+        } finally {
+            closed.countDown();
+        }
     }
 }
@@ -0,0 +1,65 @@
+package dev.rocketsheep.plugin;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.asset.type.blocktype.config.BlockType;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+import dev.rocketsheep.plugin.index.ChunkMath;
+
+/**
+ * The Area Depositor block type, resolved once so block-use handlers can recognize it
+ * with an identity check instead of comparing id strings on every interaction.
+ */
+public final class AreaDepositorBlock {
+
+    public static final String BLOCK_ID = "RocketSheep_Area_Depositor";
+
+    /** Radius around the block that a depositor deposits into. */
+    public static final double RADIUS = 8.0;
+
+    private static volatile BlockType blockType;
+
+    private AreaDepositorBlock() {
+    }
+
+    /**
+     * Looks up the block type asset. Called at startup; if the asset isn't loaded yet,
+     * {@link #matches} resolves it on first sight instead.
+     */
+    public static void resolve() {
+        blockType = BlockType.getAssetMap().getAsset(BLOCK_ID);
+    }
+
+    /**
+     * Checks whether a used block is an Area Depositor.
+     */
+    public static boolean matches(BlockType type) {
+        BlockType depositor = blockType;
+        if (type == depositor) {
+            return type != null;
+        }
+        if (depositor != null || type == null) {
+            return false;
+        }
+
+        // Not resolved at startup: fall back to the id until the asset shows up
+        if (BLOCK_ID.equals(type.getId())) {
+            blockType = type;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the block at a position is an Area Depositor. Must be called from
+     * the world thread; blocks in unloaded chunks never match.
+     */
+    public static boolean isAt(World world, int x, int y, int z) {
+        if (y < 0 || y >= ChunkMath.WORLD_HEIGHT) {
+            return false;
+        }
+        WorldChunk chunk = world.getChunkIfLoaded(
+            ChunkUtil.indexChunk(x >> ChunkMath.CHUNK_BITS, z >> ChunkMath.CHUNK_BITS));
+        return chunk != null && matches(BlockType.getAssetMap().getAsset(chunk.getBlock(x, y, z)));
+    }
+}
@@ -0,0 +1,76 @@
+package dev.rocketsheep.plugin.commands;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.DefaultArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractTargetPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import dev.rocketsheep.plugin.AreaDepositService;
+import dev.rocketsheep.plugin.config.AreaDepositConfig;
+import dev.rocketsheep.plugin.deposit.DepositMode;
+
+import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+/**
+ * Sort commands - route every item in the player's inventory to the best-suited
+ * container nearby instead of only topping up matching ones.
+ *
+ * Usage: /ad sort [radius] - sort inventory items
+ *        /ad sortall [radius] - also gather stacks scattered across the containers
+ * Default radius: 8 blocks
+ */
+public final class AreaDepositSortCommand extends AbstractTargetPlayerCommand {
+
+    private static final double DEFAULT_RADIUS = 8.0;
+
+    private final DepositMode mode;
+
+    @NonNullDecl
+    private final DefaultArg<Double> radiusArg;
+
+    public AreaDepositSortCommand(String name, String description, DepositMode mode) {
+        super(name, description);
+        this.mode = mode;
+
+        this.radiusArg = this.withDefaultArg(
+            "radius",
+            "dev.rocketsheep.areadeposit.commands.ad." + name + ".arg.radius",
+            ArgTypes.DOUBLE,
+            DEFAULT_RADIUS,
+            "dev.rocketsheep.areadeposit.commands.ad." + name + ".arg.radius.default"
+        );
+    }
+
+    @Override
+    protected void execute(
+            @NonNullDecl CommandContext context,
+            @NullableDecl Ref<EntityStore> sourceRef,
+            @NonNullDecl Ref<EntityStore> ref,
+            @NonNullDecl PlayerRef playerRef,
+            @NonNullDecl World world,
+            @NonNullDecl Store<EntityStore> store) {
+
+        if (!ref.isValid()) {
+            context.sendMessage(Message.raw("Error: Invalid player reference."));
+            return;
+        }
+
+        // Get the radius argument, clamped to the configured max
+        double radius = context.get(this.radiusArg);
+        double maxRadius = AreaDepositConfig.get().getMaxRadius();
+        if (radius > maxRadius) {
+            radius = maxRadius;
+        }
+        if (radius < 1.0) {
+            radius = 1.0;
+        }
+
+        AreaDepositService.forWorld(world).executeSortWithStore(ref, store, radius, mode);
+    }
+}
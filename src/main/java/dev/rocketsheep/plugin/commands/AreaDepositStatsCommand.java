@@ -0,0 +1,66 @@
+package dev.rocketsheep.plugin.commands;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.DefaultArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
+import dev.rocketsheep.plugin.stats.DepositStats;
+
+import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
+
+import java.util.Locale;
+
+/**
+ * Admin view of the deposit stats (counters and timings, split by command and block).
+ *
+ * Usage: /ad stats [show|reset|on|off]
+ */
+public final class AreaDepositStatsCommand extends CommandBase {
+
+    private static final String PERMISSION = "dev.rocketsheep.areadeposit.admin";
+
+    @NonNullDecl
+    private final DefaultArg<String> actionArg;
+
+    public AreaDepositStatsCommand() {
+        super("stats", "Show or control AreaDeposit performance stats");
+        this.requirePermission(PERMISSION);
+
+        this.actionArg = this.withDefaultArg(
+            "action",
+            "dev.rocketsheep.areadeposit.commands.ad.stats.arg.action",
+            ArgTypes.STRING,
+            "show",
+            "dev.rocketsheep.areadeposit.commands.ad.stats.arg.action.default"
+        );
+    }
+
+    @Override
+    protected void executeSync(@NonNullDecl CommandContext context) {
+        String action = context.get(this.actionArg).toLowerCase(Locale.ROOT);
+
+        switch (action) {
+            case "show":
+                for (String line : DepositStats.report()) {
+                    context.sendMessage(Message.raw(line));
+                }
+                break;
+            case "reset":
+                DepositStats.reset();
+                context.sendMessage(Message.raw("AreaDeposit stats reset."));
+                break;
+            case "on":
+                DepositStats.setEnabled(true);
+                context.sendMessage(Message.raw("AreaDeposit stats enabled."));
+                break;
+            case "off":
+                DepositStats.setEnabled(false);
+                context.sendMessage(Message.raw("AreaDeposit stats disabled."));
+                break;
+            default:
+                context.sendMessage(Message.raw("Usage: /ad stats [show|reset|on|off]"));
+                break;
+        }
+    }
+}
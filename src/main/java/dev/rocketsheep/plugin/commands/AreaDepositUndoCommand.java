@@ -0,0 +1,44 @@
+package dev.rocketsheep.plugin.commands;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractTargetPlayerCommand;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import dev.rocketsheep.plugin.AreaDepositService;
+
+import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+/**
+ * Undo command - takes back what the player's last deposit or sort moved out of their
+ * inventory, from the containers it went into. Run again to go one deposit further back.
+ *
+ * Usage: /ad undo
+ */
+public final class AreaDepositUndoCommand extends AbstractTargetPlayerCommand {
+
+    public AreaDepositUndoCommand() {
+        super("undo", "Take back the items your last area deposit moved");
+    }
+
+    @Override
+    protected void execute(
+            @NonNullDecl CommandContext context,
+            @NullableDecl Ref<EntityStore> sourceRef,
+            @NonNullDecl Ref<EntityStore> ref,
+            @NonNullDecl PlayerRef playerRef,
+            @NonNullDecl World world,
+            @NonNullDecl Store<EntityStore> store) {
+
+        if (!ref.isValid()) {
+            context.sendMessage(Message.raw("Error: Invalid player reference."));
+            return;
+        }
+
+        AreaDepositService.forWorld(world).executeUndoWithStore(ref, store);
+    }
+}
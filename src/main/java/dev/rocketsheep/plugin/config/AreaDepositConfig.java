@@ -0,0 +1,285 @@
+package dev.rocketsheep.plugin.config;
+
+import dev.rocketsheep.plugin.deposit.ExecutorStrategy;
+import dev.rocketsheep.plugin.search.LocatorStrategy;
+import dev.rocketsheep.plugin.search.SearchMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plugin settings, read from {@code config.properties} in the plugin data directory.
+ *
+ * Missing keys fall back to their defaults, and a file containing every default is
+ * written on first start so server owners have something to edit.
+ */
+public class AreaDepositConfig {
+
+    private static final Logger LOGGER = Logger.getLogger(AreaDepositConfig.class.getName());
+    private static final String FILE_NAME = "config.properties";
+
+    private static final String TICK_BUDGET_MICROS = "scheduler.tickBudgetMicros";
+    private static final String TICK_MAX_OPERATIONS = "scheduler.tickMaxOperations";
+    private static final String COOLDOWN_MILLIS = "throttle.cooldownMillis";
+    private static final String STATS_ENABLED = "stats.enabled";
+    private static final String STATS_LOG_INTERVAL_SECONDS = "stats.logIntervalSeconds";
+    private static final String MAX_RADIUS = "search.maxRadius";
+    private static final String SEARCH_MODE = "search.mode";
+    private static final String SEARCH_LOCATOR = "search.locator";
+    private static final String DEPOSIT_EXECUTOR = "deposit.executor";
+    private static final String SHADOW_SAMPLE_EVERY = "shadow.sampleEvery";
+    private static final String DEBUG_ENABLED = "debug.enabled";
+    private static final String INDEX_PERSISTENT = "index.persistent";
+    private static final String INDEX_FLUSH_INTERVAL_SECONDS = "index.flushIntervalSeconds";
+    private static final String INDEX_MISS_CACHE_SIZE = "index.missCacheSize";
+    private static final String AUTO_DEPOSIT_ENABLED = "autoDeposit.enabled";
+    private static final String AUTO_DEPOSIT_DWELL_MILLIS = "autoDeposit.dwellMillis";
+    private static final String AUTO_DEPOSIT_RANGE = "autoDeposit.range";
+    private static final String AUTO_DEPOSIT_MAX_PER_TICK = "autoDeposit.maxPerTick";
+    private static final String UNDO_MAX_ENTRIES = "undo.maxEntries";
+    private static final String UNDO_EXPIRY_SECONDS = "undo.expirySeconds";
+
+    private static final Properties DEFAULTS = new Properties();
+
+    static {
+        DEFAULTS.setProperty(TICK_BUDGET_MICROS, "2000");
+        DEFAULTS.setProperty(TICK_MAX_OPERATIONS, "64");
+        DEFAULTS.setProperty(COOLDOWN_MILLIS, "750");
+        DEFAULTS.setProperty(STATS_ENABLED, "true");
+        DEFAULTS.setProperty(STATS_LOG_INTERVAL_SECONDS, "600");
+        DEFAULTS.setProperty(MAX_RADIUS, "32");
+        DEFAULTS.setProperty(SEARCH_MODE, "sphere");
+        DEFAULTS.setProperty(SEARCH_LOCATOR, "indexed");
+        DEFAULTS.setProperty(DEPOSIT_EXECUTOR, "planned");
+        DEFAULTS.setProperty(SHADOW_SAMPLE_EVERY, "0");
+        DEFAULTS.setProperty(DEBUG_ENABLED, "false");
+        DEFAULTS.setProperty(INDEX_PERSISTENT, "true");
+        DEFAULTS.setProperty(INDEX_FLUSH_INTERVAL_SECONDS, "30");
+        DEFAULTS.setProperty(INDEX_MISS_CACHE_SIZE, "4096");
+        DEFAULTS.setProperty(AUTO_DEPOSIT_ENABLED, "false");
+        DEFAULTS.setProperty(AUTO_DEPOSIT_DWELL_MILLIS, "2000");
+        DEFAULTS.setProperty(AUTO_DEPOSIT_RANGE, "4");
+        DEFAULTS.setProperty(AUTO_DEPOSIT_MAX_PER_TICK, "4");
+        DEFAULTS.setProperty(UNDO_MAX_ENTRIES, "256");
+        DEFAULTS.setProperty(UNDO_EXPIRY_SECONDS, "300");
+    }
+
+    /** Upper limit for {@link #getMaxRadius()}, the largest sphere the search code caches offsets for. */
+    private static final long MAX_RADIUS_LIMIT = 256L;
+
+    private static volatile AreaDepositConfig current = new AreaDepositConfig(new Properties(DEFAULTS));
+
+    /** Wall-clock time the deposit scheduler may spend per world tick, in microseconds. */
+    private final long tickBudgetMicros;
+    /** Maximum number of deposit steps (scan slices or container transfers) per world tick. */
+    private final int tickMaxOperations;
+    /** Time after a player's deposit finishes during which new requests are dropped. */
+    private final long cooldownMillis;
+    /** Whether deposit counters and timings are recorded at startup (toggle with /ad stats on|off). */
+    private final boolean statsEnabled;
+    /** Interval between stats dumps to the server log; 0 disables them. */
+    private final long statsLogIntervalSeconds;
+    /** Largest deposit radius accepted from commands, in blocks (at most 256). */
+    private final double maxRadius;
+    /** Deposit into every container in range (sphere) or only those reachable through open space (room). */
+    private final SearchMode searchMode;
+    /** How sphere searches find containers: through the container index, or by scanning every block. */
+    private final LocatorStrategy locatorStrategy;
+    /** How deposits are planned: the single-pass planner, or one simulated quick stack per container. */
+    private final ExecutorStrategy executorStrategy;
+    /** Shadow-check one deposit in this many against the reference strategies; 0 disables it. */
+    private final long shadowSampleEvery;
+    /** Send diagnostic chat messages (block interactions, join notice). For development only. */
+    private final boolean debugEnabled;
+    /** Save each world's container index under the data directory so restarts don't rescan. */
+    private final boolean indexPersistent;
+    /** Interval between write-backs of changed index regions. */
+    private final long indexFlushIntervalSeconds;
+    /** Known quick stack misses remembered per world; 0 disables the cache. */
+    private final int indexMissCacheSize;
+    /** Deposit automatically when a player stands next to an Area Depositor. */
+    private final boolean autoDepositEnabled;
+    /** How long a player must stay near a depositor before it deposits for them. */
+    private final long autoDepositDwellMillis;
+    /** How close a player must be to a depositor to count as near it, in blocks (1 to 16). */
+    private final int autoDepositRange;
+    /** Most automatic deposits started per world tick; the rest wait for later ticks. */
+    private final int autoDepositMaxPerTick;
+    /** Slot moves remembered per player for /ad undo (24 bytes each); 0 disables undo. */
+    private final int undoMaxEntries;
+    /** How long after a deposit it can still be undone. */
+    private final long undoExpirySeconds;
+
+    private AreaDepositConfig(Properties properties) {
+        this.tickBudgetMicros = Math.max(1L, readLong(properties, TICK_BUDGET_MICROS));
+        this.tickMaxOperations = (int) Math.max(1L, readLong(properties, TICK_MAX_OPERATIONS));
+        this.cooldownMillis = Math.max(0L, readLong(properties, COOLDOWN_MILLIS));
+        this.statsEnabled = readBoolean(properties, STATS_ENABLED);
+        this.statsLogIntervalSeconds = Math.max(0L, readLong(properties, STATS_LOG_INTERVAL_SECONDS));
+        this.maxRadius = Math.max(1L, Math.min(MAX_RADIUS_LIMIT, readLong(properties, MAX_RADIUS)));
+        this.searchMode = readEnum(properties, SEARCH_MODE, SearchMode.class);
+        this.locatorStrategy = readEnum(properties, SEARCH_LOCATOR, LocatorStrategy.class);
+        this.executorStrategy = readEnum(properties, DEPOSIT_EXECUTOR, ExecutorStrategy.class);
+        this.shadowSampleEvery = Math.max(0L, readLong(properties, SHADOW_SAMPLE_EVERY));
+        this.debugEnabled = readBoolean(properties, DEBUG_ENABLED);
+        this.indexPersistent = readBoolean(properties, INDEX_PERSISTENT);
+        this.indexFlushIntervalSeconds = Math.max(1L, readLong(properties, INDEX_FLUSH_INTERVAL_SECONDS));
+        this.indexMissCacheSize = (int) Math.max(0L, Math.min(1_000_000L, readLong(properties, INDEX_MISS_CACHE_SIZE)));
+        this.autoDepositEnabled = readBoolean(properties, AUTO_DEPOSIT_ENABLED);
+        this.autoDepositDwellMillis = Math.max(0L, readLong(properties, AUTO_DEPOSIT_DWELL_MILLIS));
+        this.autoDepositRange = (int) Math.max(1L, Math.min(16L, readLong(properties, AUTO_DEPOSIT_RANGE)));
+        this.autoDepositMaxPerTick = (int) Math.max(1L, readLong(properties, AUTO_DEPOSIT_MAX_PER_TICK));
+        this.undoMaxEntries = (int) Math.max(0L, Math.min(65_536L, readLong(properties, UNDO_MAX_ENTRIES)));
+        this.undoExpirySeconds = Math.max(0L, readLong(properties, UNDO_EXPIRY_SECONDS));
+    }
+
+    /**
+     * Gets the active configuration.
+     */
+    public static AreaDepositConfig get() {
+        return current;
+    }
+
+    /**
+     * Loads the configuration from the plugin data directory, writing the defaults
+     * if no file exists yet. Falls back to defaults if the file can't be read.
+     */
+    public static void load(Path dataDirectory) {
+        Path file = dataDirectory.resolve(FILE_NAME);
+        Properties properties = new Properties(DEFAULTS);
+
+        try {
+            if (Files.exists(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    properties.load(in);
+                }
+            } else {
+                Files.createDirectories(dataDirectory);
+                try (OutputStream out = Files.newOutputStream(file)) {
+                    DEFAULTS.store(out, "AreaDeposit settings");
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read " + file + ", using defaults", e);
+        }
+
+        current = new AreaDepositConfig(properties);
+    }
+
+    public long getTickBudgetMicros() {
+        return tickBudgetMicros;
+    }
+
+    public int getTickMaxOperations() {
+        return tickMaxOperations;
+    }
+
+    public long getCooldownMillis() {
+        return cooldownMillis;
+    }
+
+    public boolean isStatsEnabled() {
+        return statsEnabled;
+    }
+
+    public long getStatsLogIntervalSeconds() {
+        return statsLogIntervalSeconds;
+    }
+
+    public double getMaxRadius() {
+        return maxRadius;
+    }
+
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    public LocatorStrategy getLocatorStrategy() {
+        return locatorStrategy;
+    }
+
+    public ExecutorStrategy getExecutorStrategy() {
+        return executorStrategy;
+    }
+
+    public long getShadowSampleEvery() {
+        return shadowSampleEvery;
+    }
+
+    public boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    public boolean isIndexPersistent() {
+        return indexPersistent;
+    }
+
+    public long getIndexFlushIntervalSeconds() {
+        return indexFlushIntervalSeconds;
+    }
+
+    public int getIndexMissCacheSize() {
+        return indexMissCacheSize;
+    }
+
+    public boolean isAutoDepositEnabled() {
+        return autoDepositEnabled;
+    }
+
+    public long getAutoDepositDwellMillis() {
+        return autoDepositDwellMillis;
+    }
+
+    public int getAutoDepositRange() {
+        return autoDepositRange;
+    }
+
+    public int getAutoDepositMaxPerTick() {
+        return autoDepositMaxPerTick;
+    }
+
+    public int getUndoMaxEntries() {
+        return undoMaxEntries;
+    }
+
+    public long getUndoExpirySeconds() {
+        return undoExpirySeconds;
+    }
+
+    private static long readLong(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Invalid value for " + key + ": " + value + ", using the default");
+            return Long.parseLong(DEFAULTS.getProperty(key));
+        }
+    }
+
+    private static boolean readBoolean(Properties properties, String key) {
+        String value = properties.getProperty(key).trim();
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        LOGGER.warning("Invalid value for " + key + ": " + value + ", using the default");
+        return Boolean.parseBoolean(DEFAULTS.getProperty(key));
+    }
+
+    private static <E extends Enum<E>> E readEnum(Properties properties, String key, Class<E> type) {
+        String value = properties.getProperty(key).trim();
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value)) {
+                return constant;
+            }
+        }
+        LOGGER.warning("Invalid value for " + key + ": " + value + ", using the default");
+        return Enum.valueOf(type, DEFAULTS.getProperty(key).toUpperCase(Locale.ROOT));
+    }
+}
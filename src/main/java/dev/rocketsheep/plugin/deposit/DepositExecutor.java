@@ -0,0 +1,12 @@
+package dev.rocketsheep.plugin.deposit;
+
+/**
+ * Strategy for deciding which moves a deposit makes. Runs off the world thread on an
+ * immutable snapshot; the job applies the resulting plan on the world thread.
+ *
+ * Every executor must produce the same plan for the same snapshot and mode.
+ */
+public interface DepositExecutor {
+
+    TransferPlan plan(DepositSnapshot snapshot, DepositMode mode);
+}
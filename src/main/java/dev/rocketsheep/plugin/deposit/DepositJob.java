@@ -0,0 +1,810 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+import dev.rocketsheep.plugin.index.ContainerIndex;
+import dev.rocketsheep.plugin.index.DepositorNetworks;
+import dev.rocketsheep.plugin.index.ItemIndex;
+import dev.rocketsheep.plugin.platform.ContainerAccess;
+import dev.rocketsheep.plugin.platform.DepositPlayer;
+import dev.rocketsheep.plugin.search.ContainerHits;
+import dev.rocketsheep.plugin.search.ContainerSearch;
+import dev.rocketsheep.plugin.search.LocatorStrategy;
+import dev.rocketsheep.plugin.search.SearchMode;
+import dev.rocketsheep.plugin.stats.DepositStats;
+import dev.rocketsheep.plugin.stats.TriggerStats;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One player's area deposit, split into resumable steps.
+ *
+ * Each call to {@link #step} does a single bounded piece of work on the world thread:
+ * one slice of the container search (a chunk column or one section of it, a depositor's
+ * cached container network, or part of a room-mode flood fill), selecting, snapshotting
+ * or re-checking up to {@link #CONTAINERS_PER_STEP} containers (fewer if the tick's
+ * budget runs out part way), or applying the planned moves into one container. The transfer plan is built on a virtual thread from the
+ * snapshot; when it comes back the job checks that nothing it read has changed and
+ * re-plans from a fresh snapshot if it has. If planning fails or the area keeps
+ * changing, a quick stack falls back to quick stacking each candidate in turn, while a
+ * sort is cancelled with a message and moves nothing.
+ *
+ * The search and the planner are chosen by the job's {@link DepositStrategy}. A job
+ * sampled for a shadow check also runs the reference strategies and compares (see
+ * {@link ShadowCheck}); the extra sphere scan runs in its own steps after the search.
+ *
+ * Each step runs inside a change batch (see {@link ContainerAccess#beginBatch}), so the
+ * moves into one container notify the plugin's listeners once. The engine still
+ * syncs the player's storage after each of its own transactions.
+ *
+ * Everything moved out of the player's storage is recorded in the world's
+ * {@link DepositJournal} as one deposit, so {@link UndoJob} can take it back: the
+ * container slots that gained items, found by comparing the container before and after
+ * each move, and the container's content version once the step's change batch has
+ * notified the item index.
+ *
+ * The job is abandoned quietly if the player goes away between steps.
+ *
+ * @param <C> The container type
+ */
+public class DepositJob<C> implements ScheduledJob {
+
+    private enum Phase { SCAN, VERIFY, SELECT, SNAPSHOT, PLAN, TRANSFER, DONE }
+
+    /** Re-plans allowed before a quick stack falls back to every candidate and a sort gives up. */
+    private static final int MAX_REPLANS = 3;
+
+    /** Containers handled by one step of the SELECT, SNAPSHOT and PLAN phases. */
+    private static final int CONTAINERS_PER_STEP = 32;
+
+    /** Containers handled between checks of the tick deadline within a step. */
+    private static final int CONTAINERS_PER_DEADLINE_CHECK = 8;
+
+    /** Containers listed by position in the result message before it says "and N more". */
+    private static final int SUMMARY_LIMIT = 4;
+
+    private final DepositPlayer<C> player;
+    private final DepositTrigger trigger;
+    private final DepositMode depositMode;
+    private final SearchMode searchMode;
+    private final DepositStrategy strategy;
+    private final DepositPlanner planner;
+    private final ContainerIndex<C> containerIndex;
+    // Set for deposits from an Area Depositor block, which use its cached container network
+    private final DepositorNetworks<C> networks;
+    private final ItemIndex<C> itemIndex;
+    private final ContainerAccess<C> access;
+    // Null if moves aren't journaled
+    private final DepositJournal journal;
+    private final double centerX;
+    private final double centerY;
+    private final double centerZ;
+    private final double radius;
+
+    private final ContainerHits<C> nearby = new ContainerHits<>();
+    private final ContainerHits<C> candidates = new ContainerHits<>();
+    // The player's item types when candidates were selected (quick stack only)
+    private ItemIndex.PlayerItems playerItems;
+
+    private Phase phase = Phase.SCAN;
+
+    // Search in progress (sphere, room or depositor network), dropped once it completes
+    private ContainerSearch<C> search;
+
+    // Reference scan and its results for a shadow-checked search, dropped once compared
+    private ContainerSearch<C> shadowSearch;
+    private ContainerHits<C> shadowHits;
+    private long searchNanos;
+    private long shadowNanos;
+
+    // Containers of nearby (SELECT) or candidates (SNAPSHOT, PLAN) handled so far
+    private int cursor;
+    // Tick deadline of the step in progress (System.nanoTime)
+    private long deadlineNanos;
+    // Set once the PLAN phase finds that something changed since the snapshot
+    private boolean stale;
+
+    // Snapshot being taken, a batch of candidates per step
+    private InventorySnapshot playerSnapshot;
+    // The snapshot's item types and their fingerprint, which recorded misses are keyed by
+    private int[] playerKeys;
+    private long itemSet;
+    private long[] snapshotPositions;
+    private InventorySnapshot[] snapshotContainers;
+    private int[] snapshotVersions;
+
+    // Off-thread planning state
+    private DepositSnapshot snapshot;
+    private CompletableFuture<TransferPlan> pendingPlan;
+    private int replans;
+
+    // Transfer cursor and results. A null plan means quick stack every candidate instead.
+    private TransferPlan plan;
+    private int moveIndex;
+    private int containersFound;
+    private int targetIndex;
+    private int containersWithDeposits;
+    private int totalOperations;
+    private int[] movedPerCandidate;
+    // Whether this job's deposit has been opened in the journal
+    private boolean journaled;
+    // Container slots read before a journaled move, to find where its items landed
+    private int[] slotKeys = new int[0];
+    private int[] slotQuantities = new int[0];
+    // Moves made by the current step, journaled once its batch has ended
+    private long stepPosition;
+    private int[] stepSlots = new int[8];
+    private int[] stepKeys = new int[8];
+    private int[] stepQuantities = new int[8];
+    private int stepMoves;
+
+    // Repeat requests absorbed by this job (see DepositThrottle)
+    private int mergedRequests;
+
+    // Stats for this job's trigger, or null if stats were disabled when it was requested
+    private final TriggerStats stats;
+    private final long requestedAtNanos;
+    private boolean completed;
+    private long blocksScanned;
+    private long scanNanos;
+    private long transferNanos;
+    private long worldNanos;
+
+    /**
+     * Creates a deposit into the containers within {@code radius} of a point (usually
+     * the player's position).
+     *
+     * @param planner Planner the job's plans run on
+     * @param journal Journal to record the moves in for undo, or null
+     */
+    public DepositJob(DepositPlayer<C> player, DepositTrigger trigger, DepositMode depositMode,
+                      SearchMode searchMode, DepositStrategy strategy, DepositPlanner planner,
+                      ContainerIndex<C> containerIndex, ItemIndex<C> itemIndex, ContainerAccess<C> access, DepositJournal journal,
+                      double centerX, double centerY, double centerZ, double radius) {
+        this(player, trigger, depositMode, searchMode, strategy, planner, containerIndex, null, 0L, itemIndex, access, journal,
+            centerX, centerY, centerZ, radius);
+    }
+
+    /**
+     * Creates a deposit into the cached network of an Area Depositor block, centered on
+     * the block. In room mode the network cache is bypassed and the job fills outward
+     * from the block instead.
+     *
+     * @param depositor Packed position of the depositor block
+     * @param planner Planner the job's plans run on
+     * @param journal Journal to record the moves in for undo, or null
+     */
+    public DepositJob(DepositPlayer<C> player, DepositTrigger trigger, DepositMode depositMode,
+                      SearchMode searchMode, DepositStrategy strategy, DepositPlanner planner,
+                      DepositorNetworks<C> networks, long depositor,
+                      ItemIndex<C> itemIndex, ContainerAccess<C> access, DepositJournal journal, double radius) {
+        this(player, trigger, depositMode, searchMode, strategy, planner, networks.getContainerIndex(), networks, depositor,
+            itemIndex, access, journal,
+            ChunkMath.unpackX(depositor) + 0.5, ChunkMath.unpackY(depositor) + 0.5, ChunkMath.unpackZ(depositor) + 0.5,
+            radius);
+    }
+
+    private DepositJob(DepositPlayer<C> player, DepositTrigger trigger, DepositMode depositMode,
+                       SearchMode searchMode, DepositStrategy strategy, DepositPlanner planner,
+                       ContainerIndex<C> containerIndex,
+                       DepositorNetworks<C> networks, long depositor,
+                       ItemIndex<C> itemIndex, ContainerAccess<C> access, DepositJournal journal,
+                       double centerX, double centerY, double centerZ, double radius) {
+        this.player = player;
+        this.trigger = trigger;
+        this.depositMode = depositMode;
+        this.searchMode = searchMode;
+        this.strategy = strategy;
+        this.planner = planner;
+        this.containerIndex = containerIndex;
+        this.networks = searchMode == SearchMode.SPHERE ? networks : null;
+        this.itemIndex = itemIndex;
+        this.access = access;
+        this.journal = journal != null && journal.isEnabled() ? journal : null;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+        this.radius = radius;
+
+        if (searchMode == SearchMode.ROOM) {
+            this.search = containerIndex.roomScanner(
+                (int) Math.floor(centerX), (int) Math.floor(centerY), (int) Math.floor(centerZ),
+                centerX, centerY, centerZ, radius);
+        } else if (this.networks != null) {
+            this.search = this.networks.search(depositor, radius);
+        } else {
+            this.search = containerIndex.locator(strategy.locator()).start(centerX, centerY, centerZ, radius);
+        }
+        // Sphere searches other than the reference scan itself are checked against it
+        if (strategy.shadow() && searchMode == SearchMode.SPHERE
+                && (this.networks != null || strategy.locator() != LocatorStrategy.SCAN)) {
+            this.shadowSearch = containerIndex.locator(LocatorStrategy.SCAN).start(centerX, centerY, centerZ, radius);
+            this.shadowHits = new ContainerHits<>();
+        }
+
+        this.stats = DepositStats.forTrigger(trigger);
+        this.requestedAtNanos = stats != null ? System.nanoTime() : 0L;
+    }
+
+    @Override
+    public DepositPlayer<C> getPlayer() {
+        return player;
+    }
+
+    public DepositTrigger getTrigger() {
+        return trigger;
+    }
+
+    @Override
+    public int getMergedRequests() {
+        return mergedRequests;
+    }
+
+    @Override
+    public void addMergedRequests(int count) {
+        mergedRequests += count;
+    }
+
+    /**
+     * Checks whether the job is only waiting for its off-thread plan, so the scheduler
+     * can skip it without spending budget.
+     */
+    @Override
+    public boolean isWaiting() {
+        return phase == Phase.PLAN && !pendingPlan.isDone();
+    }
+
+    /**
+     * Checks whether another request would deposit into the same area: same radius and
+     * modes, and a center in the same or an adjacent block.
+     */
+    @Override
+    public boolean coversSameArea(ScheduledJob job) {
+        if (!(job instanceof DepositJob<?> other)) {
+            return false;
+        }
+        return other.radius == radius
+            && other.depositMode == depositMode
+            && other.searchMode == searchMode
+            && Math.abs(Math.floor(other.centerX) - Math.floor(centerX)) <= 1.0
+            && Math.abs(Math.floor(other.centerY) - Math.floor(centerY)) <= 1.0
+            && Math.abs(Math.floor(other.centerZ) - Math.floor(centerZ)) <= 1.0;
+    }
+
+    @Override
+    public boolean step(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+        if (stats == null) {
+            return runBatchedStep();
+        }
+
+        Phase stepPhase = phase;
+        long start = System.nanoTime();
+        boolean done = runBatchedStep();
+        long elapsed = System.nanoTime() - start;
+
+        worldNanos += elapsed;
+        if (stepPhase == Phase.SCAN) {
+            scanNanos += elapsed;
+        } else if (stepPhase == Phase.TRANSFER) {
+            transferNanos += elapsed;
+        }
+        if (done) {
+            if (completed) {
+                stats.recordDeposit(blocksScanned, containersFound, containersWithDeposits, totalOperations,
+                    scanNanos, transferNanos, worldNanos, System.nanoTime() - requestedAtNanos);
+            } else {
+                stats.recordAbandoned();
+            }
+        }
+        return done;
+    }
+
+    private boolean runBatchedStep() {
+        access.beginBatch();
+        try {
+            return runStep();
+        } finally {
+            access.endBatch();
+            // The batch has notified the item index, so versions now include this step's moves
+            journalStep();
+        }
+    }
+
+    private boolean runStep() {
+        if (!player.isValid()) {
+            phase = Phase.DONE;
+            return true;
+        }
+
+        switch (phase) {
+            case SCAN: {
+                long start = shadowSearch != null ? System.nanoTime() : 0L;
+                blocksScanned += search.step(nearby);
+                if (shadowSearch != null) {
+                    searchNanos += System.nanoTime() - start;
+                }
+                if (search.isDone()) {
+                    search = null;
+                    phase = shadowSearch != null ? Phase.VERIFY : Phase.SELECT;
+                }
+                return false;
+            }
+
+            case VERIFY: {
+                long start = System.nanoTime();
+                shadowSearch.step(shadowHits);
+                shadowNanos += System.nanoTime() - start;
+                if (shadowSearch.isDone()) {
+                    String active = networks != null ? "network" : strategy.locator().name().toLowerCase(Locale.ROOT);
+                    ShadowCheck.compareSearch(active, centerX, centerY, centerZ, radius, nearby, shadowHits,
+                        searchNanos, shadowNanos);
+                    shadowSearch = null;
+                    shadowHits = null;
+                    phase = Phase.SELECT;
+                }
+                return false;
+            }
+
+            case SELECT: {
+                C playerStorage = player.getStorage();
+                if (playerStorage == null) {
+                    phase = Phase.DONE;
+                    return true;
+                }
+                containersFound = nearby.size();
+                if (containersFound == 0) {
+                    finish();
+                    return true;
+                }
+                if (depositMode == DepositMode.QUICK_STACK && playerItems == null) {
+                    playerItems = itemIndex.playerItems(playerStorage);
+                }
+                int limit = Math.min(cursor + CONTAINERS_PER_STEP, containersFound);
+                do {
+                    int end = Math.min(cursor + CONTAINERS_PER_DEADLINE_CHECK, limit);
+                    if (depositMode == DepositMode.QUICK_STACK) {
+                        // Only containers already holding one of the player's item types can accept a quick stack
+                        // (minus those already known to have no room for them)
+                        itemIndex.selectCandidates(nearby, cursor, end, playerItems, candidates);
+                    } else {
+                        // A sort may use any container in range, including empty ones
+                        itemIndex.selectAll(nearby, cursor, end, candidates);
+                    }
+                    cursor = end;
+                } while (cursor < limit && !pastDeadline());
+                if (cursor < containersFound) {
+                    return false;
+                }
+                cursor = 0;
+                playerItems = null;
+                nearby.clear();
+                movedPerCandidate = new int[candidates.size()];
+                plan = new TransferPlan();
+                phase = candidates.isEmpty() ? Phase.TRANSFER : Phase.SNAPSHOT;
+                return false;
+            }
+
+            case SNAPSHOT: {
+                C playerStorage = player.getStorage();
+                if (playerStorage == null) {
+                    phase = Phase.DONE;
+                    return true;
+                }
+                if (!snapshotNextContainers(playerStorage)) {
+                    return false;
+                }
+                pendingPlan = planner.planAsync(snapshot, depositMode, strategy);
+                phase = Phase.PLAN;
+                return false;
+            }
+
+            case PLAN: {
+                if (!pendingPlan.isDone()) {
+                    return false;
+                }
+                C playerStorage = player.getStorage();
+                if (playerStorage == null) {
+                    phase = Phase.DONE;
+                    return true;
+                }
+
+                TransferPlan planned = pendingPlan.isCompletedExceptionally() ? null : pendingPlan.join();
+                if (planned != null && !stale) {
+                    // Check what the plan was made from, a batch of containers per step
+                    int limit = Math.min(cursor + CONTAINERS_PER_STEP, snapshot.containerCount());
+                    do {
+                        int end = Math.min(cursor + CONTAINERS_PER_DEADLINE_CHECK, limit);
+                        stale = !isCurrent(snapshot, playerStorage, cursor, end);
+                        cursor = end;
+                    } while (!stale && cursor < limit && !pastDeadline());
+                    if (!stale && cursor < snapshot.containerCount()) {
+                        return false;
+                    }
+                }
+                boolean current = planned != null && !stale;
+                cursor = 0;
+                stale = false;
+
+                if (current) {
+                    plan = planned;
+                } else if (planned != null && ++replans <= MAX_REPLANS) {
+                    // Something changed while we were planning; plan again from fresh data
+                    phase = Phase.SNAPSHOT;
+                    return false;
+                } else if (depositMode != DepositMode.QUICK_STACK) {
+                    // A sort has no container-by-container fallback, so give up rather
+                    // than quietly quick stacking instead
+                    phase = Phase.DONE;
+                    player.sendMessage(planned == null
+                        ? "Couldn't plan the sort, so nothing was moved."
+                        : "The containers kept changing while the sort was planned, so nothing was moved.");
+                    return true;
+                } else {
+                    // Planning failed or the area keeps changing: quick stack every candidate
+                    plan = null;
+                }
+                snapshot = null;
+                pendingPlan = null;
+                phase = Phase.TRANSFER;
+                return false;
+            }
+
+            case TRANSFER: {
+                C playerStorage = player.getStorage();
+                if (playerStorage == null) {
+                    phase = Phase.DONE;
+                    return true;
+                }
+                boolean done = plan != null ? applyNextContainer(playerStorage) : quickStackNextContainer(playerStorage);
+                if (done) {
+                    finish();
+                }
+                return done;
+            }
+
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Reports the results to the player.
+     */
+    private void finish() {
+        phase = Phase.DONE;
+        completed = true;
+        nearby.clear();
+
+        // Automatic deposits only speak up when they moved something
+        if (trigger == DepositTrigger.AUTO && totalOperations == 0) {
+            return;
+        }
+
+        // Mention repeat clicks/commands that were folded into this deposit
+        String merged = mergedRequests > 0 ? " (merged " + mergedRequests + " repeated request(s))" : "";
+
+        // Report actual results
+        if (containersFound == 0) {
+            player.sendMessage("No containers found within " + (int) radius + " blocks." + merged);
+        } else if (totalOperations > 0 && plan != null) {
+            String verb = depositMode == DepositMode.QUICK_STACK ? "Deposited " : "Sorted ";
+            player.sendMessage(
+                verb + totalOperations + " item(s) into " + containersWithDeposits + " container(s)"
+                    + summarizeContainers() + "." + merged
+            );
+        } else if (totalOperations > 0) {
+            player.sendMessage(
+                "Deposited items into " + containersWithDeposits + " container(s)." + merged
+            );
+        } else {
+            player.sendMessage(
+                "No matching items to deposit. Found " + containersFound + " container(s)." + merged
+            );
+        }
+    }
+
+    /**
+     * Applies the planned moves for the next target container.
+     *
+     * @return true once every move has been applied
+     */
+    private boolean applyNextContainer(C playerStorage) {
+        if (moveIndex >= plan.size()) {
+            return true;
+        }
+
+        int target = plan.target(moveIndex);
+        long position = candidates.position(target);
+        C container = candidates.container(target);
+        // The container may have been broken since planning; never deposit into a stale one
+        boolean valid = containerIndex.resolve(position) == container;
+
+        int moved = 0;
+        for (; moveIndex < plan.size() && plan.target(moveIndex) == target; moveIndex++) {
+            if (valid) {
+                boolean fromPlayer = journal != null && plan.source(moveIndex) == TransferPlan.PLAYER;
+                if (fromPlayer) {
+                    readSlots(container);
+                }
+                int movedNow = applyMove(playerStorage, container, moveIndex);
+                if (movedNow > 0 && fromPlayer) {
+                    recordSlots(container, position);
+                }
+                moved += movedNow;
+            }
+        }
+
+        if (moved > 0) {
+            movedPerCandidate[target] += moved;
+            containersWithDeposits++;
+            totalOperations += moved;
+        }
+        return moveIndex >= plan.size();
+    }
+
+    /**
+     * Moves one planned slot, re-checking that the slot still holds the planned item
+     * (the player may have rearranged their inventory since the plan was checked).
+     *
+     * @return The number of items actually moved
+     */
+    private int applyMove(C playerStorage, C container, int move) {
+        C from = playerStorage;
+        int source = plan.source(move);
+        if (source != TransferPlan.PLAYER) {
+            // A sort moving a stack between containers; skip it if the source was broken
+            from = candidates.container(source);
+            if (containerIndex.resolve(candidates.position(source)) != from) {
+                return 0;
+            }
+        }
+        int slot = plan.slot(move);
+        String itemId = access.itemId(from, slot);
+        if (itemId == null || ItemKeys.keyOf(itemId) != plan.itemKey(move)) {
+            return 0;
+        }
+        return access.moveFromSlot(from, slot, plan.quantity(move), container);
+    }
+
+    /**
+     * Quick stacks into the next candidate container (fallback when no plan is usable).
+     *
+     * @return true once every candidate has been visited
+     */
+    private boolean quickStackNextContainer(C playerStorage) {
+        if (targetIndex >= candidates.size()) {
+            return true;
+        }
+
+        // The container may have been broken since the scan; never deposit into a stale one
+        long position = candidates.position(targetIndex);
+        C container = candidates.container(targetIndex);
+        targetIndex++;
+        if (containerIndex.resolve(position) == container) {
+            if (journal != null) {
+                readSlots(container);
+            }
+
+            // Quick stack to each container individually (matches vanilla behavior)
+            int operations = access.quickStack(playerStorage, container);
+            if (operations > 0) {
+                containersWithDeposits++;
+                totalOperations += operations;
+                if (journal != null) {
+                    recordSlots(container, position);
+                }
+            }
+        }
+        return targetIndex >= candidates.size();
+    }
+
+    /**
+     * Reads a container's slots before a move from the player's storage into it.
+     */
+    private void readSlots(C container) {
+        int capacity = access.capacity(container);
+        if (slotKeys.length < capacity) {
+            slotKeys = new int[capacity];
+            slotQuantities = new int[capacity];
+        }
+        for (int slot = 0; slot < capacity; slot++) {
+            String itemId = access.itemId(container, slot);
+            slotKeys[slot] = itemId != null ? ItemKeys.keyOf(itemId) : ItemKeys.EMPTY;
+            slotQuantities[slot] = itemId != null ? access.quantity(container, slot) : 0;
+        }
+    }
+
+    /**
+     * Adds every slot of the container that gained items since {@link #readSlots} to the
+     * step's moves. Only the player's storage moves items in a step, so that is where
+     * they came from.
+     */
+    private void recordSlots(C container, long position) {
+        int capacity = access.capacity(container);
+        for (int slot = 0; slot < capacity; slot++) {
+            String itemId = access.itemId(container, slot);
+            if (itemId == null) {
+                continue;
+            }
+            int key = ItemKeys.keyOf(itemId);
+            int before = slotKeys[slot] == key ? slotQuantities[slot] : 0;
+            int gained = access.quantity(container, slot) - before;
+            if (gained <= 0 || (slotKeys[slot] != key && slotKeys[slot] != ItemKeys.EMPTY)) {
+                continue;
+            }
+            if (stepMoves == stepSlots.length) {
+                stepSlots = Arrays.copyOf(stepSlots, stepMoves * 2);
+                stepKeys = Arrays.copyOf(stepKeys, stepMoves * 2);
+                stepQuantities = Arrays.copyOf(stepQuantities, stepMoves * 2);
+            }
+            stepPosition = position;
+            stepSlots[stepMoves] = slot;
+            stepKeys[stepMoves] = key;
+            stepQuantities[stepMoves] = gained;
+            stepMoves++;
+        }
+    }
+
+    /**
+     * Records the step's moves in the journal with the container's content version,
+     * opening this job's deposit on the first ones.
+     */
+    private void journalStep() {
+        if (stepMoves == 0) {
+            return;
+        }
+        if (!journaled) {
+            journal.begin(player);
+            journaled = true;
+        }
+        int version = itemIndex.version(stepPosition);
+        for (int i = 0; i < stepMoves; i++) {
+            journal.record(player, stepPosition, stepSlots[i], stepKeys[i], stepQuantities[i], version);
+        }
+        stepMoves = 0;
+    }
+
+    /**
+     * Lists how many items went into each container, e.g. ": 12 at (10, 64, -3), 5 at ...".
+     */
+    private String summarizeContainers() {
+        StringBuilder summary = new StringBuilder();
+        int listed = 0;
+        for (int i = 0; i < movedPerCandidate.length; i++) {
+            if (movedPerCandidate[i] == 0) {
+                continue;
+            }
+            if (listed == SUMMARY_LIMIT) {
+                summary.append(", and ").append(containersWithDeposits - listed).append(" more");
+                break;
+            }
+            long position = candidates.position(i);
+            summary.append(listed == 0 ? ": " : ", ")
+                .append(movedPerCandidate[i]).append(" at (")
+                .append(ChunkMath.unpackX(position)).append(", ")
+                .append(ChunkMath.unpackY(position)).append(", ")
+                .append(ChunkMath.unpackZ(position)).append(')');
+            listed++;
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Copies the player's storage, on the first call, and the next batch of candidate
+     * containers. Quick stack candidates with no room for any of the player's item
+     * types are recorded as misses, so the next deposit with the same item types skips
+     * them until they change; unlike "the plan moved nothing into it", this doesn't
+     * depend on the deposit order or on how many items the player has. World thread only.
+     *
+     * @return true once every candidate is copied and {@link #snapshot} is set
+     */
+    private boolean snapshotNextContainers(C playerStorage) {
+        int count = candidates.size();
+        if (cursor == 0) {
+            playerSnapshot = InventorySnapshot.of(playerStorage, access);
+            playerKeys = depositMode == DepositMode.QUICK_STACK ? itemKeysOf(playerSnapshot) : null;
+            // Taken now rather than at selection, since the player's items may have changed since
+            itemSet = playerKeys != null ? itemIndex.fingerprint(playerStorage) : 0L;
+            snapshotPositions = new long[count];
+            snapshotContainers = new InventorySnapshot[count];
+            snapshotVersions = new int[count];
+        }
+
+        int limit = Math.min(cursor + CONTAINERS_PER_STEP, count);
+        do {
+            int end = Math.min(cursor + CONTAINERS_PER_DEADLINE_CHECK, limit);
+            for (int i = cursor; i < end; i++) {
+                long position = candidates.position(i);
+                InventorySnapshot container = InventorySnapshot.of(candidates.container(i), access);
+                int version = itemIndex.version(position);
+                snapshotPositions[i] = position;
+                snapshotContainers[i] = container;
+                snapshotVersions[i] = version;
+                if (playerKeys != null && !acceptsAny(container, playerKeys)) {
+                    itemIndex.recordMiss(position, version, itemSet);
+                }
+            }
+            cursor = end;
+        } while (cursor < limit && !pastDeadline());
+        if (cursor < count) {
+            return false;
+        }
+
+        snapshot = new DepositSnapshot(playerSnapshot, snapshotPositions, snapshotContainers, snapshotVersions);
+        cursor = 0;
+        playerSnapshot = null;
+        playerKeys = null;
+        snapshotPositions = null;
+        snapshotContainers = null;
+        snapshotVersions = null;
+        return true;
+    }
+
+    /**
+     * Checks whether the tick's budget is spent, so a step should stop after its current
+     * containers.
+     */
+    private boolean pastDeadline() {
+        return System.nanoTime() >= deadlineNanos;
+    }
+
+    /**
+     * Gets the item keys in a storage snapshot, sorted.
+     */
+    private static int[] itemKeysOf(InventorySnapshot storage) {
+        int[] keys = new int[storage.size()];
+        int count = 0;
+        for (int slot = 0; slot < storage.size(); slot++) {
+            if (storage.itemKey(slot) != ItemKeys.EMPTY) {
+                keys[count++] = storage.itemKey(slot);
+            }
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Checks whether a quick stack could move anything into a container: it holds one of
+     * the item types and has either an empty slot or a stack of that type with room.
+     *
+     * @param keys The player's item keys, sorted
+     */
+    private static boolean acceptsAny(InventorySnapshot container, int[] keys) {
+        boolean holdsAny = false;
+        boolean hasEmptySlot = false;
+        for (int slot = 0; slot < container.size(); slot++) {
+            int key = container.itemKey(slot);
+            if (key == ItemKeys.EMPTY) {
+                hasEmptySlot = true;
+            } else if (Arrays.binarySearch(keys, key) >= 0) {
+                holdsAny = true;
+                if (container.quantity(slot) < container.maxStack(slot)) {
+                    return true;
+                }
+            }
+        }
+        return holdsAny && hasEmptySlot;
+    }
+
+    /**
+     * Checks that neither the player's storage nor the candidate containers {@code from}
+     * (inclusive) to {@code to} (exclusive) changed since the snapshot was taken. World
+     * thread only.
+     */
+    private boolean isCurrent(DepositSnapshot snapshot, C playerStorage, int from, int to) {
+        if (InventorySnapshot.fingerprintOf(playerStorage, access) != snapshot.playerStorage().fingerprint()) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            long position = snapshot.position(i);
+            if (itemIndex.version(position) != snapshot.version(i)
+                    || containerIndex.resolve(position) != candidates.container(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,306 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.platform.DepositPlayer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-world record of what each player's recent deposits moved out of their storage,
+ * so {@code /ad undo} can take it back.
+ *
+ * Each player gets a ring buffer of moves (container position and slot, item key,
+ * quantity, and the container's {@link dev.rocketsheep.plugin.index.ItemIndex} content
+ * version right after the move) stored as parallel primitive arrays, 24 bytes a move.
+ * The ring starts small and grows up to {@code maxEntries}; past that, new moves
+ * overwrite the oldest ones, so a player's journal never costs more than
+ * {@code maxEntries * 24} bytes. Moves are
+ * grouped by deposit, newest last, and a deposit older than the expiry can no longer
+ * be undone. Players whose journal expired or who left are dropped by {@link #prune}.
+ *
+ * Must only be used from the world thread.
+ */
+public class DepositJournal {
+
+    /** Deposits remembered per player; older ones are forgotten even if their moves fit. */
+    private static final int MAX_DEPOSITS = 8;
+
+    private static final int INITIAL_ENTRIES = 16;
+    private static final long PRUNE_INTERVAL_NANOS = 10_000_000_000L;
+
+    private final int maxEntries;
+    private final long expiryNanos;
+    private final LongSupplier clock;
+    private final Map<DepositPlayer<?>, PlayerLog> players = new HashMap<>();
+    private long nextPruneNanos;
+
+    /**
+     * @param maxEntries Moves remembered per player; 0 disables the journal
+     * @param expirySeconds How long a deposit can be undone
+     */
+    public DepositJournal(int maxEntries, long expirySeconds) {
+        this(maxEntries, expirySeconds, System::nanoTime);
+    }
+
+    /**
+     * @param clock Nanosecond clock used for expiry and pruning
+     */
+    public DepositJournal(int maxEntries, long expirySeconds, LongSupplier clock) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.expiryNanos = Math.max(0L, expirySeconds) * 1_000_000_000L;
+        this.clock = clock;
+        this.nextPruneNanos = clock.getAsLong() + PRUNE_INTERVAL_NANOS;
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Starts a new deposit for a player; the moves recorded next belong to it.
+     */
+    public void begin(DepositPlayer<?> player) {
+        if (maxEntries == 0) {
+            return;
+        }
+        PlayerLog log = players.get(player);
+        if (log == null) {
+            log = new PlayerLog(Math.min(INITIAL_ENTRIES, maxEntries));
+            players.put(player, log);
+        }
+        log.begin(clock.getAsLong());
+    }
+
+    /**
+     * Records a move out of the player's storage into the current deposit.
+     *
+     * @param position Packed position of the container the items went into
+     * @param slot Container slot the items went into
+     * @param version Content version of the container once the move was made
+     */
+    public void record(DepositPlayer<?> player, long position, int slot, int itemKey, int quantity, int version) {
+        PlayerLog log = players.get(player);
+        if (log != null && log.deposits > 0) {
+            log.add(position, slot, itemKey, quantity, version, maxEntries);
+        }
+    }
+
+    /**
+     * Removes the player's newest deposit that hasn't expired and returns its moves,
+     * newest first.
+     *
+     * @return The moves, or null if there is nothing to undo
+     */
+    public Moves takeLast(DepositPlayer<?> player) {
+        PlayerLog log = players.get(player);
+        if (log == null) {
+            return null;
+        }
+        Moves moves = log.takeLast(clock.getAsLong() - expiryNanos);
+        if (log.deposits == 0) {
+            players.remove(player);
+        }
+        return moves;
+    }
+
+    /**
+     * Now and then drops the players whose deposits have all expired or who left.
+     */
+    public void prune() {
+        long now = clock.getAsLong();
+        if (now - nextPruneNanos < 0) {
+            return;
+        }
+        nextPruneNanos = now + PRUNE_INTERVAL_NANOS;
+        long cutoff = now - expiryNanos;
+        Iterator<Map.Entry<DepositPlayer<?>, PlayerLog>> iterator = players.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<DepositPlayer<?>, PlayerLog> entry = iterator.next();
+            PlayerLog log = entry.getValue();
+            if (!entry.getKey().isValid() || log.deposits == 0 || log.depositTimes[log.deposits - 1] - cutoff < 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        players.clear();
+    }
+
+    /**
+     * The moves of one undone deposit, newest first.
+     */
+    public static final class Moves {
+        private final long[] positions;
+        private final int[] slots;
+        private final int[] itemKeys;
+        private final int[] quantities;
+        private final int[] versions;
+        private final boolean truncated;
+
+        Moves(long[] positions, int[] slots, int[] itemKeys, int[] quantities, int[] versions, boolean truncated) {
+            this.positions = positions;
+            this.slots = slots;
+            this.itemKeys = itemKeys;
+            this.quantities = quantities;
+            this.versions = versions;
+            this.truncated = truncated;
+        }
+
+        public int size() {
+            return positions.length;
+        }
+
+        public long position(int index) {
+            return positions[index];
+        }
+
+        public int slot(int index) {
+            return slots[index];
+        }
+
+        public int itemKey(int index) {
+            return itemKeys[index];
+        }
+
+        public int quantity(int index) {
+            return quantities[index];
+        }
+
+        /**
+         * @return The container's content version once the move was made
+         */
+        public int version(int index) {
+            return versions[index];
+        }
+
+        /**
+         * @return true if the deposit's earliest moves were overwritten by later ones
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    /**
+     * One player's ring of moves. Moves are numbered by a running sequence; move
+     * {@code s} lives at {@code s % capacity} while {@code oldest <= s < next}.
+     */
+    private static final class PlayerLog {
+        long[] positions;
+        int[] slots;
+        int[] itemKeys;
+        int[] quantities;
+        int[] versions;
+        long oldest;
+        long next;
+
+        // First move sequence and start time of each remembered deposit, oldest first
+        final long[] depositStarts = new long[MAX_DEPOSITS];
+        final long[] depositTimes = new long[MAX_DEPOSITS];
+        int deposits;
+
+        PlayerLog(int capacity) {
+            positions = new long[capacity];
+            slots = new int[capacity];
+            itemKeys = new int[capacity];
+            quantities = new int[capacity];
+            versions = new int[capacity];
+        }
+
+        void begin(long nowNanos) {
+            if (deposits == MAX_DEPOSITS) {
+                // Forget the oldest deposit along with its moves
+                System.arraycopy(depositStarts, 1, depositStarts, 0, MAX_DEPOSITS - 1);
+                System.arraycopy(depositTimes, 1, depositTimes, 0, MAX_DEPOSITS - 1);
+                deposits--;
+                oldest = Math.max(oldest, depositStarts[0]);
+            }
+            depositStarts[deposits] = next;
+            depositTimes[deposits] = nowNanos;
+            deposits++;
+        }
+
+        void add(long position, int slot, int itemKey, int quantity, int version, int maxEntries) {
+            int capacity = positions.length;
+            if (next - oldest == capacity) {
+                if (capacity < maxEntries) {
+                    grow(Math.min(maxEntries, capacity * 2));
+                    capacity = positions.length;
+                } else {
+                    // Full: overwrite the oldest move, and forget deposits left with none
+                    oldest++;
+                    while (deposits > 1 && depositStarts[1] <= oldest) {
+                        System.arraycopy(depositStarts, 1, depositStarts, 0, deposits - 1);
+                        System.arraycopy(depositTimes, 1, depositTimes, 0, deposits - 1);
+                        deposits--;
+                    }
+                }
+            }
+            int index = (int) (next % capacity);
+            positions[index] = position;
+            slots[index] = slot;
+            itemKeys[index] = itemKey;
+            quantities[index] = quantity;
+            versions[index] = version;
+            next++;
+        }
+
+        Moves takeLast(long cutoffNanos) {
+            if (deposits == 0 || depositTimes[deposits - 1] - cutoffNanos < 0) {
+                // The newest deposit has expired, so all of them have
+                deposits = 0;
+                oldest = next;
+                return null;
+            }
+            deposits--;
+            long start = depositStarts[deposits];
+            long from = Math.max(start, oldest);
+            int count = (int) (next - from);
+            int capacity = positions.length;
+
+            long[] takenPositions = new long[count];
+            int[] takenSlots = new int[count];
+            int[] takenKeys = new int[count];
+            int[] takenQuantities = new int[count];
+            int[] takenVersions = new int[count];
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((next - 1 - i) % capacity);
+                takenPositions[i] = positions[index];
+                takenSlots[i] = slots[index];
+                takenKeys[i] = itemKeys[index];
+                takenQuantities[i] = quantities[index];
+                takenVersions[i] = versions[index];
+            }
+            next = from;
+            return count > 0
+                ? new Moves(takenPositions, takenSlots, takenKeys, takenQuantities, takenVersions, start < oldest)
+                : null;
+        }
+
+        private void grow(int capacity) {
+            long[] grownPositions = new long[capacity];
+            int[] grownSlots = new int[capacity];
+            int[] grownKeys = new int[capacity];
+            int[] grownQuantities = new int[capacity];
+            int[] grownVersions = new int[capacity];
+            int length = positions.length;
+            for (long s = oldest; s < next; s++) {
+                int from = (int) (s % length);
+                int to = (int) (s % capacity);
+                grownPositions[to] = positions[from];
+                grownSlots[to] = slots[from];
+                grownKeys[to] = itemKeys[from];
+                grownQuantities[to] = quantities[from];
+                grownVersions[to] = versions[from];
+            }
+            positions = grownPositions;
+            slots = grownSlots;
+            itemKeys = grownKeys;
+            quantities = grownQuantities;
+            versions = grownVersions;
+        }
+    }
+}
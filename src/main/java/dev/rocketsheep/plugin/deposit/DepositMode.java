@@ -0,0 +1,13 @@
+package dev.rocketsheep.plugin.deposit;
+
+/**
+ * What a deposit does with the containers it finds.
+ */
+public enum DepositMode {
+    /** Quick stack: only items the container already holds (the /ad default). */
+    QUICK_STACK,
+    /** Sort every player item into the best-suited container (see {@link SortPlanner}). */
+    SORT,
+    /** Like {@link #SORT}, and also gather stacks scattered across the containers. */
+    SORT_ALL
+}
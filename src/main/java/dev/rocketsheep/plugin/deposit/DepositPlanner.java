@@ -0,0 +1,171 @@
+package dev.rocketsheep.plugin.deposit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds deposit plans from snapshots, off the world thread.
+ *
+ * Instead of one quick stack per container (each rescanning the player's storage),
+ * the planner reads the player's storage once into a compact slot/item/quantity table
+ * and matches it against every candidate container in a single pass. It follows the
+ * same rules as a sequence of vanilla quick stacks: containers in deposit order, player
+ * slots in slot order, only items the container already holds, existing stacks topped
+ * up before empty slots are used, and stack limits respected.
+ *
+ * Sort deposits are planned by {@link SortPlanner} instead.
+ *
+ * This is the {@link ExecutorStrategy#PLANNED} executor; {@link ReferencePlanner} is
+ * the brute-force reference it is shadow-checked against.
+ *
+ * Planning itself is static. An instance owns the virtual threads asynchronous plans
+ * run on; each world's service creates one and closes it with the world, so a reload
+ * starts with a fresh one.
+ */
+public final class DepositPlanner implements AutoCloseable {
+
+    private static final DepositExecutor PLANNED = DepositPlanner::plan;
+    private static final DepositExecutor REFERENCE = ReferencePlanner::plan;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Gets the executor for a strategy.
+     */
+    public static DepositExecutor executor(ExecutorStrategy strategy) {
+        return strategy == ExecutorStrategy.REFERENCE ? REFERENCE : PLANNED;
+    }
+
+    /**
+     * Plans a deposit on a virtual thread with the strategy's executor. A deposit sampled
+     * for a shadow check is also planned with the reference executor and the plans are
+     * compared; the result is always the active executor's plan.
+     */
+    public CompletableFuture<TransferPlan> planAsync(DepositSnapshot snapshot, DepositMode mode,
+                                                            DepositStrategy strategy) {
+        DepositExecutor active = executor(strategy.executor());
+        if (strategy.shadow() && strategy.executor() != ExecutorStrategy.REFERENCE) {
+            return CompletableFuture.supplyAsync(
+                () -> ShadowCheck.planAndCompare(active, strategy.executor(), REFERENCE, snapshot, mode), executor);
+        }
+        return CompletableFuture.supplyAsync(() -> active.plan(snapshot, mode), executor);
+    }
+
+    /**
+     * Stops accepting new planning work. Plans already running finish on their own.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Plans a deposit of the given mode synchronously.
+     */
+    public static TransferPlan plan(DepositSnapshot snapshot, DepositMode mode) {
+        switch (mode) {
+            case SORT:
+                return SortPlanner.plan(snapshot, false);
+            case SORT_ALL:
+                return SortPlanner.plan(snapshot, true);
+            default:
+                return plan(snapshot);
+        }
+    }
+
+    /**
+     * Plans a quick stack deposit synchronously.
+     */
+    public static TransferPlan plan(DepositSnapshot snapshot) {
+        TransferPlan plan = new TransferPlan();
+        InventorySnapshot player = snapshot.playerStorage();
+
+        // Compact table of the player's non-empty slots, read once
+        int[] slots = new int[player.size()];
+        int[] keys = new int[player.size()];
+        int[] remaining = new int[player.size()];
+        int[] maxStacks = new int[player.size()];
+        int count = 0;
+        int maxKey = 0;
+        for (int slot = 0; slot < player.size(); slot++) {
+            int key = player.itemKey(slot);
+            if (key == ItemKeys.EMPTY) {
+                continue;
+            }
+            slots[count] = slot;
+            keys[count] = key;
+            remaining[count] = player.quantity(slot);
+            maxStacks[count] = Math.max(1, player.maxStack(slot));
+            maxKey = Math.max(maxKey, key);
+            count++;
+        }
+        if (count == 0) {
+            return plan;
+        }
+
+        // Per-item-key scratch for the container being planned: which keys it holds
+        // (marked with the container's stamp) and how much room its stacks have left
+        int[] heldStamp = new int[maxKey + 1];
+        int[] stackRoom = new int[maxKey + 1];
+        int playerItemsLeft = count;
+
+        for (int target = 0; target < snapshot.containerCount() && playerItemsLeft > 0; target++) {
+            InventorySnapshot container = snapshot.container(target);
+            int stamp = target + 1;
+            int freeSlots = 0;
+            boolean holdsAny = false;
+
+            for (int slot = 0; slot < container.size(); slot++) {
+                int key = container.itemKey(slot);
+                if (key == ItemKeys.EMPTY) {
+                    freeSlots++;
+                    continue;
+                }
+                if (key > maxKey) {
+                    continue;
+                }
+                if (heldStamp[key] != stamp) {
+                    heldStamp[key] = stamp;
+                    stackRoom[key] = 0;
+                }
+                stackRoom[key] += Math.max(0, container.maxStack(slot) - container.quantity(slot));
+                holdsAny = true;
+            }
+            if (!holdsAny) {
+                continue;
+            }
+
+            for (int i = 0; i < count; i++) {
+                int key = keys[i];
+                if (remaining[i] == 0 || heldStamp[key] != stamp) {
+                    continue;
+                }
+
+                // Top up existing stacks first
+                int left = remaining[i];
+                int topUp = Math.min(left, stackRoom[key]);
+                stackRoom[key] -= topUp;
+                left -= topUp;
+
+                // Then start new stacks in empty slots; a partial stack leaves room for later slots
+                while (left > 0 && freeSlots > 0) {
+                    int placed = Math.min(left, maxStacks[i]);
+                    freeSlots--;
+                    left -= placed;
+                    stackRoom[key] += maxStacks[i] - placed;
+                }
+
+                int moved = remaining[i] - left;
+                if (moved > 0) {
+                    plan.add(slots[i], target, key, moved);
+                    remaining[i] = left;
+                    if (left == 0) {
+                        playerItemsLeft--;
+                    }
+                }
+            }
+        }
+        return plan;
+    }
+}
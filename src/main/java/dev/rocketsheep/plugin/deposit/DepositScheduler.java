@@ -0,0 +1,136 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.config.AreaDepositConfig;
+
+import java.util.ArrayDeque;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-world queue of pending deposit and undo jobs, drained a little every tick.
+ *
+ * Each tick runs job steps round-robin (one step per job per turn, so a large deposit
+ * can't starve a small one) until either the configured time budget or the operation
+ * budget is used up. Steps are handed the budget's deadline, so a step working through
+ * a batch of containers stops part way once it is spent. Unfinished jobs resume on the
+ * next tick. A job whose step throws is
+ * logged, reported to its player and dropped, and the tick carries on with the others.
+ *
+ * All methods must be called from the world thread.
+ */
+public class DepositScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(DepositScheduler.class.getName());
+
+    private static final long PRUNE_INTERVAL_NANOS = 10_000_000_000L;
+
+    private final ArrayDeque<ScheduledJob> jobs = new ArrayDeque<>();
+    private final DepositThrottle throttle = new DepositThrottle();
+    private final LongSupplier clock;
+    private long nextPruneNanos;
+
+    public DepositScheduler() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param clock Nanosecond clock used for cooldowns and pruning. The tick budget
+     *              always uses the real {@link System#nanoTime()}.
+     */
+    public DepositScheduler(LongSupplier clock) {
+        this.clock = clock;
+        this.nextPruneNanos = clock.getAsLong() + PRUNE_INTERVAL_NANOS;
+    }
+
+    /**
+     * Requests a deposit, applying the per-player throttle. The job starts on the next
+     * tick unless it was merged into a running job, deferred behind one, or dropped
+     * because the player is in their cooldown window.
+     */
+    public DepositThrottle.Result request(ScheduledJob job) {
+        DepositThrottle.Result result = throttle.offer(job, clock.getAsLong());
+        if (result == DepositThrottle.Result.STARTED) {
+            jobs.addLast(job);
+        }
+        return result;
+    }
+
+    public int pendingJobs() {
+        return jobs.size();
+    }
+
+    /**
+     * Drops every pending job and the throttle's player state without running them.
+     */
+    public void clear() {
+        jobs.clear();
+        throttle.clear();
+    }
+
+    /**
+     * Runs queued job steps until this tick's budget is spent.
+     */
+    public void tick() {
+        if (jobs.isEmpty()) {
+            long now = clock.getAsLong();
+            if (now - nextPruneNanos >= 0) {
+                throttle.prune(now);
+                nextPruneNanos = now + PRUNE_INTERVAL_NANOS;
+            }
+            return;
+        }
+
+        AreaDepositConfig config = AreaDepositConfig.get();
+        long deadline = System.nanoTime() + config.getTickBudgetMicros() * 1000L;
+        long cooldownNanos = config.getCooldownMillis() * 1_000_000L;
+        int operations = 0;
+        int waiting = 0;
+
+        while (!jobs.isEmpty() && operations < config.getTickMaxOperations()) {
+            ScheduledJob job = jobs.pollFirst();
+
+            // Jobs waiting on an off-thread plan don't use budget; stop once every job is waiting
+            if (job.isWaiting()) {
+                jobs.addLast(job);
+                if (++waiting >= jobs.size()) {
+                    break;
+                }
+                continue;
+            }
+            waiting = 0;
+
+            if (!runStep(job, deadline)) {
+                jobs.addLast(job);
+            } else {
+                ScheduledJob deferred = throttle.complete(job, clock.getAsLong(), cooldownNanos);
+                if (deferred != null) {
+                    jobs.addLast(deferred);
+                }
+            }
+            operations++;
+
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Runs one step of a job, treating a step that throws as the end of the job so the
+     * throttle still releases the player.
+     *
+     * @return true once the job has finished
+     */
+    private static boolean runStep(ScheduledJob job, long deadline) {
+        try {
+            return job.step(deadline);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Deposit job failed and was dropped", e);
+            if (job.getPlayer().isValid()) {
+                job.getPlayer().sendMessage("Something went wrong; the rest of this deposit was cancelled.");
+            }
+            return true;
+        }
+    }
+}
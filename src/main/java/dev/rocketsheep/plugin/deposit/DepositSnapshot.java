@@ -0,0 +1,44 @@
+package dev.rocketsheep.plugin.deposit;
+
+/**
+ * Immutable input for deposit planning: the player's storage and every candidate
+ * container, in search order, with the versions needed to detect staleness later.
+ */
+public final class DepositSnapshot {
+
+    private final InventorySnapshot playerStorage;
+    private final long[] positions;
+    private final InventorySnapshot[] containers;
+    private final int[] versions;
+
+    public DepositSnapshot(InventorySnapshot playerStorage, long[] positions,
+                           InventorySnapshot[] containers, int[] versions) {
+        this.playerStorage = playerStorage;
+        this.positions = positions;
+        this.containers = containers;
+        this.versions = versions;
+    }
+
+    public InventorySnapshot playerStorage() {
+        return playerStorage;
+    }
+
+    public int containerCount() {
+        return containers.length;
+    }
+
+    public long position(int index) {
+        return positions[index];
+    }
+
+    public InventorySnapshot container(int index) {
+        return containers[index];
+    }
+
+    /**
+     * Gets the content version the container had when the snapshot was taken.
+     */
+    public int version(int index) {
+        return versions[index];
+    }
+}
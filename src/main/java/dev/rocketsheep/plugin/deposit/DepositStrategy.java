@@ -0,0 +1,44 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.config.AreaDepositConfig;
+import dev.rocketsheep.plugin.search.LocatorStrategy;
+
+/**
+ * The strategies one deposit runs with: which locator finds its containers, which
+ * executor plans its moves, and whether it was sampled to also run the reference
+ * strategies and compare (see {@link ShadowCheck}).
+ */
+public final class DepositStrategy {
+
+    private final LocatorStrategy locator;
+    private final ExecutorStrategy executor;
+    private final boolean shadow;
+
+    public DepositStrategy(LocatorStrategy locator, ExecutorStrategy executor, boolean shadow) {
+        this.locator = locator;
+        this.executor = executor;
+        this.shadow = shadow;
+    }
+
+    /**
+     * Gets the configured strategies for a new deposit, sampling it for a shadow check
+     * at the configured rate.
+     */
+    public static DepositStrategy fromConfig() {
+        AreaDepositConfig config = AreaDepositConfig.get();
+        return new DepositStrategy(config.getLocatorStrategy(), config.getExecutorStrategy(),
+            ShadowCheck.sample(config.getShadowSampleEvery()));
+    }
+
+    public LocatorStrategy locator() {
+        return locator;
+    }
+
+    public ExecutorStrategy executor() {
+        return executor;
+    }
+
+    public boolean shadow() {
+        return shadow;
+    }
+}
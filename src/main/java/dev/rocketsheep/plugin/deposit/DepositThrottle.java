@@ -0,0 +1,129 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.platform.DepositPlayer;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player in-flight and cooldown tracking for deposit and undo requests.
+ *
+ * While a player's deposit is running, a repeat request for the same area is merged
+ * into it, and a request for a different area replaces any deferred one so it starts
+ * when the current job finishes. Requests arriving within the cooldown after a job
+ * finishes are dropped. Merged and dropped requests are counted on the job that absorbs
+ * them so the completion message can report them.
+ *
+ * Lookups go through a {@link ConcurrentHashMap} and per-player state is only mutated
+ * from the owning world's thread, so the hot path takes no locks.
+ */
+public class DepositThrottle {
+
+    public enum Result {
+        /** No job was running: the caller should start the new one. */
+        STARTED,
+        /** A job for the same area is already running and absorbed the request. */
+        COALESCED,
+        /** A job for another area is running: the new one starts when it finishes. */
+        DEFERRED,
+        /** The player is in their cooldown window: the request was dropped. */
+        DROPPED
+    }
+
+    private final Map<DepositPlayer<?>, PlayerState> players = new ConcurrentHashMap<>();
+
+    /**
+     * Decides what to do with a new deposit request.
+     *
+     * @param job The requested (not yet started) job
+     * @param nowNanos The current time from the scheduler's clock
+     */
+    public Result offer(ScheduledJob job, long nowNanos) {
+        PlayerState state = players.get(job.getPlayer());
+        if (state == null) {
+            state = players.computeIfAbsent(job.getPlayer(), player -> new PlayerState(nowNanos));
+        }
+
+        ScheduledJob running = state.inFlight;
+        if (running != null) {
+            if (running.coversSameArea(job)) {
+                running.addMergedRequests(1 + job.getMergedRequests());
+                return Result.COALESCED;
+            }
+            ScheduledJob deferred = state.deferred;
+            if (deferred != null) {
+                job.addMergedRequests(1 + deferred.getMergedRequests());
+            }
+            state.deferred = job;
+            return Result.DEFERRED;
+        }
+
+        if (nowNanos - state.cooldownUntilNanos < 0) {
+            state.dropped++;
+            return Result.DROPPED;
+        }
+
+        // Report anything dropped during the last cooldown with this job
+        job.addMergedRequests(state.dropped);
+        state.dropped = 0;
+        state.inFlight = job;
+        return Result.STARTED;
+    }
+
+    /**
+     * Records that a job finished and starts the player's cooldown.
+     *
+     * @return A deferred job that should be started now, or null
+     */
+    public ScheduledJob complete(ScheduledJob job, long nowNanos, long cooldownNanos) {
+        PlayerState state = players.get(job.getPlayer());
+        if (state == null || state.inFlight != job) {
+            return null;
+        }
+
+        state.inFlight = null;
+        state.cooldownUntilNanos = nowNanos + cooldownNanos;
+
+        ScheduledJob deferred = state.deferred;
+        if (deferred != null) {
+            // The deferred request already waited its turn, so it skips the cooldown
+            state.deferred = null;
+            state.inFlight = deferred;
+        }
+        return deferred;
+    }
+
+    /**
+     * Forgets idle players whose cooldown has expired or whose entity is gone.
+     */
+    public void prune(long nowNanos) {
+        Iterator<Map.Entry<DepositPlayer<?>, PlayerState>> iterator = players.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<DepositPlayer<?>, PlayerState> entry = iterator.next();
+            PlayerState state = entry.getValue();
+            boolean idle = state.inFlight == null && nowNanos - state.cooldownUntilNanos >= 0;
+            if (idle || !entry.getKey().isValid()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets every player's state, including in-flight and deferred jobs.
+     */
+    public void clear() {
+        players.clear();
+    }
+
+    private static final class PlayerState {
+        volatile ScheduledJob inFlight;
+        volatile ScheduledJob deferred;
+        volatile long cooldownUntilNanos;
+        volatile int dropped;
+
+        PlayerState(long nowNanos) {
+            this.cooldownUntilNanos = nowNanos;
+        }
+    }
+}
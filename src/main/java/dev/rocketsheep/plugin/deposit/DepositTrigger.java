@@ -0,0 +1,13 @@
+package dev.rocketsheep.plugin.deposit;
+
+/**
+ * What started a deposit request. Stats are kept separately for each trigger.
+ */
+public enum DepositTrigger {
+    /** The /ad command. */
+    COMMAND,
+    /** Using a placed Area Depositor block. */
+    BLOCK,
+    /** Standing next to a placed Area Depositor block. */
+    AUTO
+}
@@ -0,0 +1,11 @@
+package dev.rocketsheep.plugin.deposit;
+
+/**
+ * Which {@link DepositExecutor} deposits are planned with.
+ */
+public enum ExecutorStrategy {
+    /** The single-pass planner (see {@link DepositPlanner}). */
+    PLANNED,
+    /** One simulated vanilla quick stack per container. The reference the planner is checked against. */
+    REFERENCE
+}
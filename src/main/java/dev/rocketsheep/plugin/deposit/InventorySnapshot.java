@@ -0,0 +1,89 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.platform.ContainerAccess;
+
+/**
+ * Immutable copy of an item container's slots as primitive arrays (item key, quantity,
+ * max stack size per slot), safe to read from any thread.
+ */
+public final class InventorySnapshot {
+
+    private final int[] itemKeys;
+    private final int[] quantities;
+    private final int[] maxStacks;
+    private final long fingerprint;
+
+    public InventorySnapshot(int[] itemKeys, int[] quantities, int[] maxStacks) {
+        this.itemKeys = itemKeys;
+        this.quantities = quantities;
+        this.maxStacks = maxStacks;
+
+        long hash = 1L;
+        for (int slot = 0; slot < itemKeys.length; slot++) {
+            hash = mix(hash, itemKeys[slot], quantities[slot]);
+        }
+        this.fingerprint = hash;
+    }
+
+    /**
+     * Copies a live container. Must be called on the thread that owns the container.
+     */
+    public static <C> InventorySnapshot of(C container, ContainerAccess<C> access) {
+        int capacity = access.capacity(container);
+        int[] itemKeys = new int[capacity];
+        int[] quantities = new int[capacity];
+        int[] maxStacks = new int[capacity];
+
+        for (int slot = 0; slot < capacity; slot++) {
+            String itemId = access.itemId(container, slot);
+            if (itemId != null) {
+                itemKeys[slot] = ItemKeys.keyOf(itemId);
+                quantities[slot] = access.quantity(container, slot);
+                maxStacks[slot] = access.maxStack(container, slot);
+            }
+        }
+        return new InventorySnapshot(itemKeys, quantities, maxStacks);
+    }
+
+    /**
+     * Computes the same fingerprint {@link #of} would, without copying the container.
+     * Used to check whether a snapshot is still current.
+     */
+    public static <C> long fingerprintOf(C container, ContainerAccess<C> access) {
+        int capacity = access.capacity(container);
+        long hash = 1L;
+        for (int slot = 0; slot < capacity; slot++) {
+            String itemId = access.itemId(container, slot);
+            if (itemId != null) {
+                hash = mix(hash, ItemKeys.keyOf(itemId), access.quantity(container, slot));
+            } else {
+                hash = mix(hash, ItemKeys.EMPTY, 0);
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int itemKey, int quantity) {
+        return (hash * 31L + itemKey) * 31L + quantity;
+    }
+
+    public int size() {
+        return itemKeys.length;
+    }
+
+    public int itemKey(int slot) {
+        return itemKeys[slot];
+    }
+
+    public int quantity(int slot) {
+        return quantities[slot];
+    }
+
+    public int maxStack(int slot) {
+        return maxStacks[slot];
+    }
+
+    public long fingerprint() {
+        return fingerprint;
+    }
+}
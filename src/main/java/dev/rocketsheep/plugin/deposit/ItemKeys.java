@@ -0,0 +1,63 @@
+package dev.rocketsheep.plugin.deposit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns item ids as small integers so inventory snapshots and plans can use
+ * primitive arrays. Key 0 is reserved for an empty slot.
+ *
+ * Each item also gets a category: the part of its id before the first underscore
+ * ({@code Ingredient_Bar_Copper} is an {@code Ingredient}), interned the same way.
+ */
+public final class ItemKeys {
+
+    public static final int EMPTY = 0;
+
+    private static final Map<String, Integer> KEYS = new ConcurrentHashMap<>();
+    private static final List<String> IDS = new ArrayList<>(List.of(""));
+    private static final Map<String, Integer> CATEGORY_KEYS = new ConcurrentHashMap<>();
+    private static final List<Integer> CATEGORIES = new ArrayList<>(List.of(0));
+
+    private ItemKeys() {
+    }
+
+    /**
+     * Gets the key for an item id, assigning a new one on first sight.
+     */
+    public static int keyOf(String itemId) {
+        Integer key = KEYS.get(itemId);
+        if (key != null) {
+            return key;
+        }
+        synchronized (IDS) {
+            return KEYS.computeIfAbsent(itemId, id -> {
+                IDS.add(id);
+                int split = id.indexOf('_');
+                String category = split > 0 ? id.substring(0, split) : id;
+                CATEGORIES.add(CATEGORY_KEYS.computeIfAbsent(category, c -> CATEGORY_KEYS.size() + 1));
+                return IDS.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Gets the item id for a key previously returned by {@link #keyOf}.
+     */
+    public static String idOf(int key) {
+        synchronized (IDS) {
+            return IDS.get(key);
+        }
+    }
+
+    /**
+     * Gets the category of an item key, as a small integer (0 for {@link #EMPTY}).
+     */
+    public static int categoryOf(int key) {
+        synchronized (IDS) {
+            return CATEGORIES.get(key);
+        }
+    }
+}
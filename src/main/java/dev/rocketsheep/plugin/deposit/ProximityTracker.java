@@ -0,0 +1,156 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.index.DepositorHash;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Decides when a player has stood near an Area Depositor long enough for an automatic
+ * deposit.
+ *
+ * Players are fed in every tick, but the depositor lookup only runs when a player moves
+ * into another cell of the {@link DepositorHash}, a depositor is added or removed, or
+ * the last answer may no longer hold: the player walked out of range of their
+ * depositor, or, with none in range, moved far enough that the closest one could have
+ * come within range. Otherwise an update is a map lookup and a distance check. The
+ * depositor picked stays the player's depositor while they are in range of it, even if
+ * another one becomes closer. Once the dwell time has passed, a depositor fires once per
+ * visit, and at most {@code maxPerTick} fire per tick, so a crowd arriving together is
+ * spread over the following ticks instead of queueing all its deposits at once.
+ *
+ * Must only be used from the world thread.
+ *
+ * @param <K> The player key
+ */
+public class ProximityTracker<K> {
+
+    // How often players that left the world are dropped
+    private static final long PRUNE_INTERVAL_NANOS = 10_000_000_000L;
+
+    private final DepositorHash depositors;
+    private final double range;
+    private final Predicate<K> isValid;
+    private final Map<K, PlayerState> players = new HashMap<>();
+    private final long dwellNanos;
+    private final int maxPerTick;
+    private int firedThisTick;
+    private long lastPruneNanos;
+
+    /**
+     * @param depositors The world's depositors
+     * @param isValid Tells whether a player is still in the world, for pruning
+     * @param dwellMillis How long a player must stay near a depositor before it fires
+     * @param maxPerTick How many depositors may fire per tick
+     */
+    public ProximityTracker(DepositorHash depositors, Predicate<K> isValid, long dwellMillis, int maxPerTick) {
+        this.depositors = depositors;
+        this.range = depositors.cellSize();
+        this.isValid = isValid;
+        this.dwellNanos = Math.max(0L, dwellMillis) * 1_000_000L;
+        this.maxPerTick = Math.max(1, maxPerTick);
+    }
+
+    /**
+     * Starts a tick: resets the per-tick fire budget and now and then drops players that
+     * are no longer valid.
+     */
+    public void beginTick(long nowNanos) {
+        firedThisTick = 0;
+        if (nowNanos - lastPruneNanos < PRUNE_INTERVAL_NANOS) {
+            return;
+        }
+        lastPruneNanos = nowNanos;
+        for (Iterator<K> it = players.keySet().iterator(); it.hasNext(); ) {
+            if (!isValid.test(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Updates a player's position.
+     *
+     * @return The packed position of the depositor that should deposit for the player
+     *         now, or {@link DepositorHash#NONE}
+     */
+    public long update(K player, double x, double y, double z, long nowNanos) {
+        PlayerState state = players.get(player);
+        if (state == null) {
+            state = new PlayerState();
+            players.put(player, state);
+        }
+
+        long cell = depositors.cellKeyOf((int) Math.floor(x), (int) Math.floor(y), (int) Math.floor(z));
+        int version = depositors.version();
+        if (!state.looked || cell != state.cell || version != state.version || isOutOfDate(state, x, y, z)) {
+            state.looked = true;
+            state.cell = cell;
+            state.version = version;
+            long closest = depositors.closest(x, y, z);
+            double distance = closest == DepositorHash.NONE
+                ? Double.POSITIVE_INFINITY
+                : Math.sqrt(DepositorHash.distanceSq(closest, x, y, z));
+            long nearest = distance <= range ? closest : DepositorHash.NONE;
+            // With none in range, no depositor can come within range before the player moves this far
+            state.slack = nearest == DepositorHash.NONE ? distance - range : 0.0;
+            state.lookX = x;
+            state.lookY = y;
+            state.lookZ = z;
+            if (nearest != state.depositor) {
+                // A different depositor (or none): start the dwell over
+                state.depositor = nearest;
+                state.sinceNanos = nowNanos;
+                state.fired = false;
+            }
+        }
+
+        if (state.depositor == DepositorHash.NONE || state.fired
+                || nowNanos - state.sinceNanos < dwellNanos || firedThisTick >= maxPerTick) {
+            return DepositorHash.NONE;
+        }
+        state.fired = true;
+        firedThisTick++;
+        return state.depositor;
+    }
+
+    /**
+     * Checks whether a player moved within their cell far enough that their last lookup
+     * may be wrong.
+     */
+    private boolean isOutOfDate(PlayerState state, double x, double y, double z) {
+        if (state.depositor != DepositorHash.NONE) {
+            return DepositorHash.distanceSq(state.depositor, x, y, z) > range * range;
+        }
+        double dx = x - state.lookX;
+        double dy = y - state.lookY;
+        double dz = z - state.lookZ;
+        return dx * dx + dy * dy + dz * dz > state.slack * state.slack;
+    }
+
+    /**
+     * Forgets a player, e.g. when they leave the world.
+     */
+    public void remove(K player) {
+        players.remove(player);
+    }
+
+    public void clear() {
+        players.clear();
+    }
+
+    private static final class PlayerState {
+        boolean looked;
+        long cell;
+        int version;
+        double lookX;
+        double lookY;
+        double lookZ;
+        double slack;
+        long depositor = DepositorHash.NONE;
+        long sinceNanos;
+        boolean fired;
+    }
+}
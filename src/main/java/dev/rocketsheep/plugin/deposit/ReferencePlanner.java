@@ -0,0 +1,87 @@
+package dev.rocketsheep.plugin.deposit;
+
+/**
+ * Reference quick stack planner: simulates one vanilla quick stack per container, in
+ * deposit order, slot by slot on a working copy of the snapshot. Slow (every player slot
+ * walks every slot of every container) but simple enough to trust, so it is what
+ * {@link DepositPlanner} is checked against in shadow mode.
+ *
+ * Sort modes have no separate reference and are planned by {@link SortPlanner}.
+ */
+public final class ReferencePlanner {
+
+    private ReferencePlanner() {
+    }
+
+    public static TransferPlan plan(DepositSnapshot snapshot, DepositMode mode) {
+        if (mode != DepositMode.QUICK_STACK) {
+            return DepositPlanner.plan(snapshot, mode);
+        }
+
+        TransferPlan plan = new TransferPlan();
+        InventorySnapshot player = snapshot.playerStorage();
+        int[] remaining = new int[player.size()];
+        for (int slot = 0; slot < player.size(); slot++) {
+            remaining[slot] = player.quantity(slot);
+        }
+
+        for (int target = 0; target < snapshot.containerCount(); target++) {
+            InventorySnapshot container = snapshot.container(target);
+            int size = container.size();
+            int[] keys = new int[size];
+            int[] quantities = new int[size];
+            int[] maxStacks = new int[size];
+            for (int slot = 0; slot < size; slot++) {
+                keys[slot] = container.itemKey(slot);
+                quantities[slot] = container.quantity(slot);
+                maxStacks[slot] = container.maxStack(slot);
+            }
+
+            for (int playerSlot = 0; playerSlot < player.size(); playerSlot++) {
+                int key = player.itemKey(playerSlot);
+                if (key == ItemKeys.EMPTY || remaining[playerSlot] == 0 || !holds(container, key)) {
+                    continue;
+                }
+                int left = remaining[playerSlot];
+
+                // Top up matching stacks, then start new ones in empty slots
+                for (int slot = 0; slot < size && left > 0; slot++) {
+                    if (keys[slot] == key) {
+                        int added = Math.min(left, Math.max(0, maxStacks[slot] - quantities[slot]));
+                        quantities[slot] += added;
+                        left -= added;
+                    }
+                }
+                for (int slot = 0; slot < size && left > 0; slot++) {
+                    if (keys[slot] == ItemKeys.EMPTY) {
+                        int added = Math.min(left, Math.max(1, player.maxStack(playerSlot)));
+                        keys[slot] = key;
+                        quantities[slot] = added;
+                        maxStacks[slot] = Math.max(1, player.maxStack(playerSlot));
+                        left -= added;
+                    }
+                }
+
+                int moved = remaining[playerSlot] - left;
+                if (moved > 0) {
+                    plan.add(playerSlot, target, key, moved);
+                    remaining[playerSlot] = left;
+                }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Checks whether the container held an item before the deposit started; vanilla
+     * quick stack only moves items the container already has.
+     */
+    private static boolean holds(InventorySnapshot container, int key) {
+        for (int slot = 0; slot < container.size(); slot++) {
+            if (container.itemKey(slot) == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
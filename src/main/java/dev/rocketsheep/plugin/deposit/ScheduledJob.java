@@ -0,0 +1,40 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.platform.DepositPlayer;
+
+/**
+ * A resumable per-player job run by the {@link DepositScheduler}: an area deposit or an
+ * undo. Jobs share the scheduler's tick budget and the {@link DepositThrottle}, so a
+ * player has at most one of them running at a time.
+ */
+public interface ScheduledJob {
+
+    DepositPlayer<?> getPlayer();
+
+    int getMergedRequests();
+
+    void addMergedRequests(int count);
+
+    /**
+     * Checks whether another request is a repeat of this one, so the throttle can merge
+     * it into this job instead of queueing it.
+     */
+    boolean coversSameArea(ScheduledJob other);
+
+    /**
+     * Checks whether the job is only waiting for off-thread work, so the scheduler can
+     * skip it without spending budget.
+     */
+    boolean isWaiting();
+
+    /**
+     * Runs the next step of the job. Must be called on the world thread.
+     *
+     * A step that works through a batch of containers checks the deadline as it goes and
+     * stops early once it has passed, leaving the rest of the batch to the next step.
+     *
+     * @param deadlineNanos {@link System#nanoTime()} by which the tick's budget runs out
+     * @return true once the job has finished (or was abandoned)
+     */
+    boolean step(long deadlineNanos);
+}
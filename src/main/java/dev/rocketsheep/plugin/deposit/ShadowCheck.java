@@ -0,0 +1,176 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+import dev.rocketsheep.plugin.search.ContainerHits;
+import dev.rocketsheep.plugin.stats.DepositStats;
+import dev.rocketsheep.plugin.stats.ShadowStats;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shadow verification of the search and planning strategies.
+ *
+ * A sampled deposit runs its container search and its plan through both the active
+ * strategy and the reference one. The deposit itself only uses the active result; the
+ * two are compared, mismatches are logged as warnings with the first differences, and
+ * the timings of both go to the stats (and to the log at FINE). This lets a faster
+ * strategy be checked against live traffic before it is switched on.
+ */
+public final class ShadowCheck {
+
+    private static final Logger LOGGER = Logger.getLogger(ShadowCheck.class.getName());
+
+    /** Differing positions or moves listed in a mismatch warning. */
+    private static final int DETAIL_LIMIT = 4;
+
+    private static final AtomicLong REQUESTS = new AtomicLong();
+
+    private ShadowCheck() {
+    }
+
+    /**
+     * Decides whether a new deposit is shadow-checked.
+     *
+     * @param every Check one deposit in this many; 0 disables shadow checks
+     */
+    static boolean sample(long every) {
+        return every > 0 && REQUESTS.incrementAndGet() % every == 0;
+    }
+
+    /**
+     * Compares the containers found by the active search with those found by the
+     * reference scan of the same sphere. Order doesn't matter. The reference runs a few
+     * steps later, so a block changed in between shows up as a (harmless) mismatch.
+     *
+     * @param active Name of the active search, for the log
+     */
+    public static void compareSearch(String active, double centerX, double centerY, double centerZ, double radius,
+                                     ContainerHits<?> activeHits, ContainerHits<?> referenceHits,
+                                     long activeNanos, long referenceNanos) {
+        long[] found = sortedPositions(activeHits);
+        long[] expected = sortedPositions(referenceHits);
+        boolean matched = Arrays.equals(found, expected);
+
+        ShadowStats stats = DepositStats.forShadowSearch();
+        if (stats != null) {
+            stats.record(matched, activeNanos, referenceNanos);
+        }
+
+        String where = " around (" + (int) Math.floor(centerX) + ", " + (int) Math.floor(centerY) + ", "
+            + (int) Math.floor(centerZ) + ") r=" + (int) radius;
+        String timing = "; " + active + " " + micros(activeNanos) + ", scan " + micros(referenceNanos);
+        if (matched) {
+            LOGGER.fine("Shadow search matched" + where + ": " + found.length + " container(s)" + timing);
+            return;
+        }
+        LOGGER.warning("Shadow search mismatch" + where + ": " + active + " found " + found.length
+            + ", scan found " + expected.length + "; missing " + difference(expected, found)
+            + ", extra " + difference(found, expected) + timing);
+    }
+
+    /**
+     * Plans a deposit with the active executor and the reference one, compares the two
+     * plans move by move and returns the active plan. Runs on the planner thread.
+     */
+    static TransferPlan planAndCompare(DepositExecutor active, ExecutorStrategy activeStrategy,
+                                       DepositExecutor reference, DepositSnapshot snapshot, DepositMode mode) {
+        long start = System.nanoTime();
+        TransferPlan plan = active.plan(snapshot, mode);
+        long activeNanos = System.nanoTime() - start;
+
+        TransferPlan expected;
+        long referenceNanos;
+        try {
+            start = System.nanoTime();
+            expected = reference.plan(snapshot, mode);
+            referenceNanos = System.nanoTime() - start;
+        } catch (RuntimeException e) {
+            // The check must never fail the deposit itself
+            LOGGER.log(Level.WARNING, "Shadow plan failed in the reference executor", e);
+            return plan;
+        }
+
+        int differs = firstDifference(plan, expected);
+        ShadowStats stats = DepositStats.forShadowPlan();
+        if (stats != null) {
+            stats.record(differs < 0, activeNanos, referenceNanos);
+        }
+
+        String name = activeStrategy.name().toLowerCase(Locale.ROOT);
+        String timing = "; " + name + " " + micros(activeNanos) + ", reference " + micros(referenceNanos);
+        if (differs < 0) {
+            LOGGER.fine("Shadow plan matched for " + mode + ": " + plan.size() + " move(s) into "
+                + snapshot.containerCount() + " container(s)" + timing);
+            return plan;
+        }
+        LOGGER.warning("Shadow plan mismatch for " + mode + " over " + snapshot.containerCount()
+            + " container(s): " + name + " planned " + plan.size() + " move(s), reference " + expected.size()
+            + "; first difference at move " + differs + ": " + describe(plan, differs) + " vs "
+            + describe(expected, differs) + timing);
+        return plan;
+    }
+
+    private static long[] sortedPositions(ContainerHits<?> hits) {
+        long[] positions = new long[hits.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = hits.position(i);
+        }
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * Lists up to {@link #DETAIL_LIMIT} positions of a sorted array that are not in another.
+     */
+    private static String difference(long[] from, long[] without) {
+        StringBuilder listed = new StringBuilder();
+        int count = 0;
+        for (long packed : from) {
+            if (Arrays.binarySearch(without, packed) >= 0) {
+                continue;
+            }
+            if (count < DETAIL_LIMIT) {
+                listed.append(count == 0 ? "" : " ").append('(')
+                    .append(ChunkMath.unpackX(packed)).append(", ")
+                    .append(ChunkMath.unpackY(packed)).append(", ")
+                    .append(ChunkMath.unpackZ(packed)).append(')');
+            }
+            count++;
+        }
+        if (count > DETAIL_LIMIT) {
+            listed.append(" and ").append(count - DETAIL_LIMIT).append(" more");
+        }
+        return count == 0 ? "none" : listed.toString();
+    }
+
+    /**
+     * @return The index of the first move that differs, or -1 if the plans are equal
+     */
+    private static int firstDifference(TransferPlan a, TransferPlan b) {
+        int common = Math.min(a.size(), b.size());
+        for (int i = 0; i < common; i++) {
+            if (a.source(i) != b.source(i) || a.slot(i) != b.slot(i) || a.target(i) != b.target(i)
+                    || a.itemKey(i) != b.itemKey(i) || a.quantity(i) != b.quantity(i)) {
+                return i;
+            }
+        }
+        return a.size() == b.size() ? -1 : common;
+    }
+
+    private static String describe(TransferPlan plan, int move) {
+        if (move >= plan.size()) {
+            return "(none)";
+        }
+        String source = plan.source(move) == TransferPlan.PLAYER ? "player" : "container " + plan.source(move);
+        return plan.quantity(move) + " " + ItemKeys.idOf(plan.itemKey(move)) + " from " + source
+            + " slot " + plan.slot(move) + " to container " + plan.target(move);
+    }
+
+    private static String micros(long nanos) {
+        return (nanos / 1000L) + " us";
+    }
+}
@@ -0,0 +1,410 @@
+package dev.rocketsheep.plugin.deposit;
+
+import java.util.Arrays;
+
+/**
+ * Builds sort plans: one batched plan that routes every item in the player's storage
+ * (and, for {@link DepositMode#SORT_ALL}, stacks scattered across the containers) to
+ * the container best suited for it.
+ *
+ * For each item the targets are tried in this order:
+ *   1. containers already holding the item, the one holding most first
+ *   2. containers whose items all share the item's category (see {@link ItemKeys#categoryOf})
+ *   3. empty containers, which then count as holding the item and its category
+ * Within tiers 2 and 3 containers the plan already touches come first, and each source
+ * stack goes out in as few moves as the targets' room allows, so the plan keeps both
+ * slot moves and container touches low.
+ *
+ * The snapshot is read once into primitive tables: per container free slots and
+ * category, and per item key the list of containers holding it with their quantity and
+ * stack room. Slots freed by moving stacks out are not reused by the same plan, so the
+ * moves stay valid whatever order they are applied in.
+ */
+public final class SortPlanner {
+
+    private static final int EMPTY_CATEGORY = 0;
+    private static final int MIXED_CATEGORY = -1;
+
+    private SortPlanner() {
+    }
+
+    /**
+     * Plans a sort synchronously.
+     *
+     * @param gatherContainers Also move stacks of an item from the containers holding
+     *        less of it into those holding more
+     */
+    public static TransferPlan plan(DepositSnapshot snapshot, boolean gatherContainers) {
+        return new Planner(snapshot, gatherContainers).run();
+    }
+
+    /**
+     * Scratch state for one plan.
+     */
+    private static final class Planner {
+        private final DepositSnapshot snapshot;
+        private final InventorySnapshot player;
+        private final boolean gatherContainers;
+        private final int containerCount;
+
+        // Per container
+        private final int[] freeSlots;
+        private final int[] category;
+        private final boolean[] touched;
+
+        // Per item key: holders[holderStart[key] .. holderStart[key + 1]) are the containers
+        // holding it, with their quantity and the room left in their stacks
+        private int[] holderStart;
+        private int[] holders;
+        private int[] holderQuantity;
+        private int[] holderRoom;
+        private int[] maxStack;
+        private int[] categoryOfKey;
+
+        // Room for the key being planned, per container (valid where roomStamp == key),
+        // and containers emptied of it or that took it on as a new item
+        private final int[] room;
+        private final int[] roomStamp;
+        private final int[] emptiedStamp;
+        private int[] extraHolders = new int[8];
+        private int extraCount;
+
+        // Moves in planning order, regrouped by target at the end
+        private int[] moveSource = new int[32];
+        private int[] moveSlot = new int[32];
+        private int[] moveTarget = new int[32];
+        private int[] moveKey = new int[32];
+        private int[] moveQuantity = new int[32];
+        private int moveCount;
+
+        Planner(DepositSnapshot snapshot, boolean gatherContainers) {
+            this.snapshot = snapshot;
+            this.player = snapshot.playerStorage();
+            this.gatherContainers = gatherContainers;
+            this.containerCount = snapshot.containerCount();
+            this.freeSlots = new int[containerCount];
+            this.category = new int[containerCount];
+            this.touched = new boolean[containerCount];
+            this.room = new int[containerCount];
+            this.roomStamp = new int[containerCount];
+            this.emptiedStamp = new int[containerCount];
+        }
+
+        TransferPlan run() {
+            buildTables();
+
+            // Player items, in slot order of their first stack
+            int[] done = new int[maxStack.length];
+            for (int slot = 0; slot < player.size(); slot++) {
+                int key = player.itemKey(slot);
+                if (key != ItemKeys.EMPTY && done[key] == 0) {
+                    done[key] = 1;
+                    planKey(key);
+                }
+            }
+            // Items only found in containers
+            if (gatherContainers) {
+                for (int key = 1; key < maxStack.length; key++) {
+                    if (done[key] == 0 && holderStart[key + 1] - holderStart[key] > 1) {
+                        planKey(key);
+                    }
+                }
+            }
+            return groupByTarget();
+        }
+
+        /**
+         * Reads the snapshot into the per-container and per-key tables.
+         */
+        private void buildTables() {
+            int maxKey = 0;
+            for (int slot = 0; slot < player.size(); slot++) {
+                maxKey = Math.max(maxKey, player.itemKey(slot));
+            }
+            for (int c = 0; c < containerCount; c++) {
+                InventorySnapshot container = snapshot.container(c);
+                for (int slot = 0; slot < container.size(); slot++) {
+                    maxKey = Math.max(maxKey, container.itemKey(slot));
+                }
+            }
+
+            maxStack = new int[maxKey + 1];
+            categoryOfKey = new int[maxKey + 1];
+            for (int slot = 0; slot < player.size(); slot++) {
+                int key = player.itemKey(slot);
+                maxStack[key] = Math.max(maxStack[key], player.maxStack(slot));
+            }
+
+            // Count the distinct holders of each key, and each container's category
+            int[] lastHolder = new int[maxKey + 1];
+            int[] counts = new int[maxKey + 2];
+            for (int c = 0; c < containerCount; c++) {
+                InventorySnapshot container = snapshot.container(c);
+                int containerCategory = EMPTY_CATEGORY;
+                for (int slot = 0; slot < container.size(); slot++) {
+                    int key = container.itemKey(slot);
+                    if (key == ItemKeys.EMPTY) {
+                        freeSlots[c]++;
+                        continue;
+                    }
+                    maxStack[key] = Math.max(maxStack[key], container.maxStack(slot));
+                    if (lastHolder[key] != c + 1) {
+                        lastHolder[key] = c + 1;
+                        counts[key + 1]++;
+                    }
+                    int keyCategory = categoryOf(key);
+                    if (containerCategory == EMPTY_CATEGORY) {
+                        containerCategory = keyCategory;
+                    } else if (containerCategory != keyCategory) {
+                        containerCategory = MIXED_CATEGORY;
+                    }
+                }
+                category[c] = containerCategory;
+            }
+
+            holderStart = new int[maxKey + 2];
+            for (int key = 0; key <= maxKey; key++) {
+                holderStart[key + 1] = holderStart[key] + counts[key + 1];
+            }
+            int total = holderStart[maxKey + 1];
+            holders = new int[total];
+            holderQuantity = new int[total];
+            holderRoom = new int[total];
+
+            // Fill in the holder entries; lastEntry tracks the current container's entry per key
+            int[] next = Arrays.copyOf(holderStart, maxKey + 1);
+            int[] lastEntry = new int[maxKey + 1];
+            Arrays.fill(lastHolder, 0);
+            for (int c = 0; c < containerCount; c++) {
+                InventorySnapshot container = snapshot.container(c);
+                for (int slot = 0; slot < container.size(); slot++) {
+                    int key = container.itemKey(slot);
+                    if (key == ItemKeys.EMPTY) {
+                        continue;
+                    }
+                    if (lastHolder[key] != c + 1) {
+                        lastHolder[key] = c + 1;
+                        lastEntry[key] = next[key]++;
+                        holders[lastEntry[key]] = c;
+                    }
+                    int entry = lastEntry[key];
+                    holderQuantity[entry] += container.quantity(slot);
+                    holderRoom[entry] += Math.max(0, container.maxStack(slot) - container.quantity(slot));
+                }
+            }
+        }
+
+        /**
+         * Plans every move of one item key.
+         */
+        private void planKey(int key) {
+            int start = holderStart[key];
+            int end = holderStart[key + 1];
+            int stack = Math.max(1, maxStack[key]);
+            extraCount = 0;
+
+            // Holders ranked by how much of the item they hold
+            sortHoldersByQuantity(start, end);
+            for (int entry = start; entry < end; entry++) {
+                int c = holders[entry];
+                room[c] = holderRoom[entry];
+                roomStamp[c] = key;
+            }
+
+            // Gather stacks from the lower-ranked holders into the higher-ranked ones
+            if (gatherContainers) {
+                for (int entry = end - 1; entry > start; entry--) {
+                    gatherFrom(holders[entry], entry, key, stack);
+                }
+            }
+
+            for (int slot = 0; slot < player.size(); slot++) {
+                if (player.itemKey(slot) == key) {
+                    routePlayerStack(slot, key, player.quantity(slot), stack);
+                }
+            }
+        }
+
+        /**
+         * Moves a holder's stacks of an item into holders ranked above it.
+         */
+        private void gatherFrom(int source, int sourceEntry, int key, int stack) {
+            InventorySnapshot container = snapshot.container(source);
+            boolean emptied = true;
+            for (int slot = 0; slot < container.size(); slot++) {
+                if (container.itemKey(slot) != key) {
+                    continue;
+                }
+                int left = container.quantity(slot);
+                for (int entry = holderStart[key]; entry < sourceEntry && left > 0; entry++) {
+                    int target = holders[entry];
+                    if (emptiedStamp[target] == key) {
+                        continue;
+                    }
+                    int placed = place(target, key, left, stack);
+                    if (placed > 0) {
+                        addMove(source, slot, target, key, placed);
+                        left -= placed;
+                    }
+                }
+                if (left > 0) {
+                    emptied = false;
+                }
+            }
+            if (emptied) {
+                // Don't route anything back into a holder we are clearing out
+                emptiedStamp[source] = key;
+            }
+        }
+
+        /**
+         * Routes one player stack through the target tiers.
+         */
+        private void routePlayerStack(int slot, int key, int quantity, int stack) {
+            int left = quantity;
+
+            // Tier 1: holders, then containers that took the item on earlier in this plan
+            for (int entry = holderStart[key]; entry < holderStart[key + 1] && left > 0; entry++) {
+                int target = holders[entry];
+                if (emptiedStamp[target] != key) {
+                    left -= placeAndRecord(slot, target, key, left, stack);
+                }
+            }
+            for (int i = 0; i < extraCount && left > 0; i++) {
+                left -= placeAndRecord(slot, extraHolders[i], key, left, stack);
+            }
+
+            // Tier 2: same-category containers; tier 3: empty containers. Touched ones first.
+            int keyCategory = categoryOf(key);
+            for (int tier = 0; tier < 4 && left > 0; tier++) {
+                int wanted = tier < 2 ? keyCategory : EMPTY_CATEGORY;
+                boolean wantTouched = (tier & 1) == 0;
+                for (int target = 0; target < containerCount && left > 0; target++) {
+                    if (category[target] != wanted || touched[target] != wantTouched
+                            || freeSlots[target] == 0 || roomStamp[target] == key) {
+                        continue;
+                    }
+                    room[target] = 0;
+                    roomStamp[target] = key;
+                    int placed = placeAndRecord(slot, target, key, left, stack);
+                    if (placed > 0) {
+                        left -= placed;
+                        category[target] = keyCategory;
+                        addExtraHolder(target);
+                    }
+                }
+            }
+        }
+
+        private int placeAndRecord(int slot, int target, int key, int quantity, int stack) {
+            int placed = place(target, key, quantity, stack);
+            if (placed > 0) {
+                addMove(TransferPlan.PLAYER, slot, target, key, placed);
+            }
+            return placed;
+        }
+
+        /**
+         * Places up to {@code quantity} items into a container the way a quick stack
+         * would: topping up existing stacks first, then starting new ones.
+         *
+         * @return The number of items placed
+         */
+        private int place(int target, int key, int quantity, int stack) {
+            int left = quantity;
+            int topUp = Math.min(left, room[target]);
+            room[target] -= topUp;
+            left -= topUp;
+
+            // A partial new stack leaves room for the next source stack
+            while (left > 0 && freeSlots[target] > 0) {
+                int placed = Math.min(left, stack);
+                freeSlots[target]--;
+                left -= placed;
+                room[target] += stack - placed;
+            }
+            return quantity - left;
+        }
+
+        /**
+         * Sorts a key's holder entries by quantity, most first. Lists are short, so an
+         * insertion sort over the parallel arrays is enough.
+         */
+        private void sortHoldersByQuantity(int start, int end) {
+            for (int i = start + 1; i < end; i++) {
+                int holder = holders[i];
+                int quantity = holderQuantity[i];
+                int holderRoomValue = holderRoom[i];
+                int j = i - 1;
+                while (j >= start && holderQuantity[j] < quantity) {
+                    holders[j + 1] = holders[j];
+                    holderQuantity[j + 1] = holderQuantity[j];
+                    holderRoom[j + 1] = holderRoom[j];
+                    j--;
+                }
+                holders[j + 1] = holder;
+                holderQuantity[j + 1] = quantity;
+                holderRoom[j + 1] = holderRoomValue;
+            }
+        }
+
+        private void addExtraHolder(int container) {
+            if (extraCount == extraHolders.length) {
+                extraHolders = Arrays.copyOf(extraHolders, extraCount * 2);
+            }
+            extraHolders[extraCount++] = container;
+        }
+
+        private void addMove(int source, int slot, int target, int key, int quantity) {
+            if (moveCount == moveSlot.length) {
+                int capacity = moveCount * 2;
+                moveSource = Arrays.copyOf(moveSource, capacity);
+                moveSlot = Arrays.copyOf(moveSlot, capacity);
+                moveTarget = Arrays.copyOf(moveTarget, capacity);
+                moveKey = Arrays.copyOf(moveKey, capacity);
+                moveQuantity = Arrays.copyOf(moveQuantity, capacity);
+            }
+            moveSource[moveCount] = source;
+            moveSlot[moveCount] = slot;
+            moveTarget[moveCount] = target;
+            moveKey[moveCount] = key;
+            moveQuantity[moveCount] = quantity;
+            moveCount++;
+            touched[target] = true;
+            if (source != TransferPlan.PLAYER) {
+                touched[source] = true;
+            }
+        }
+
+        /**
+         * Emits the moves grouped by target container (a counting sort, so moves into the
+         * same container keep their planning order).
+         */
+        private TransferPlan groupByTarget() {
+            int[] offsets = new int[containerCount + 1];
+            for (int i = 0; i < moveCount; i++) {
+                offsets[moveTarget[i] + 1]++;
+            }
+            for (int c = 0; c < containerCount; c++) {
+                offsets[c + 1] += offsets[c];
+            }
+            int[] order = new int[moveCount];
+            for (int i = 0; i < moveCount; i++) {
+                order[offsets[moveTarget[i]]++] = i;
+            }
+
+            TransferPlan plan = new TransferPlan();
+            for (int i : order) {
+                plan.add(moveSource[i], moveSlot[i], moveTarget[i], moveKey[i], moveQuantity[i]);
+            }
+            return plan;
+        }
+
+        private int categoryOf(int key) {
+            if (categoryOfKey[key] == 0) {
+                categoryOfKey[key] = ItemKeys.categoryOf(key);
+            }
+            return categoryOfKey[key];
+        }
+    }
+}
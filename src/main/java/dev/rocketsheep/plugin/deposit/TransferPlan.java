@@ -0,0 +1,75 @@
+package dev.rocketsheep.plugin.deposit;
+
+import java.util.Arrays;
+
+/**
+ * Ordered list of slot moves into candidate containers, grouped by target container
+ * in deposit order. Moves usually come from the player's storage; a sort plan can also
+ * move stacks between candidate containers.
+ *
+ * Stored as parallel primitive arrays: where to take from ({@link #PLAYER} or the index
+ * of a source container in the {@link DepositSnapshot}), the slot to take from, the
+ * index of the target container, the item key expected in the slot, and the quantity
+ * to move.
+ */
+public final class TransferPlan {
+
+    /** Source of a move taken from the player's storage. */
+    public static final int PLAYER = -1;
+
+    private int[] sources = new int[16];
+    private int[] slots = new int[16];
+    private int[] targets = new int[16];
+    private int[] itemKeys = new int[16];
+    private int[] quantities = new int[16];
+    private int size;
+
+    void add(int slot, int target, int itemKey, int quantity) {
+        add(PLAYER, slot, target, itemKey, quantity);
+    }
+
+    void add(int source, int slot, int target, int itemKey, int quantity) {
+        if (size == slots.length) {
+            int capacity = size * 2;
+            sources = Arrays.copyOf(sources, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            itemKeys = Arrays.copyOf(itemKeys, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+        }
+        sources[size] = source;
+        slots[size] = slot;
+        targets[size] = target;
+        itemKeys[size] = itemKey;
+        quantities[size] = quantity;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int source(int index) {
+        return sources[index];
+    }
+
+    public int slot(int index) {
+        return slots[index];
+    }
+
+    public int target(int index) {
+        return targets[index];
+    }
+
+    public int itemKey(int index) {
+        return itemKeys[index];
+    }
+
+    public int quantity(int index) {
+        return quantities[index];
+    }
+}
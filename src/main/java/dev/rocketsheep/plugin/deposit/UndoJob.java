@@ -0,0 +1,193 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.index.ContainerIndex;
+import dev.rocketsheep.plugin.index.ItemIndex;
+import dev.rocketsheep.plugin.platform.ContainerAccess;
+import dev.rocketsheep.plugin.platform.DepositPlayer;
+
+/**
+ * Takes back what a player's last deposit moved, from the {@link DepositJournal}.
+ *
+ * The deposit is taken from the journal on the job's first step rather than when it
+ * is requested, so an undo queued behind a running deposit undoes that deposit. Each
+ * later step returns the moves into one container, newest first. A container is only
+ * touched if the index still has a container at its position and its content version
+ * is the one journaled right after the deposit, so nothing anyone put in or took out
+ * since can be taken. Items are then taken from the journaled slots only, up to the
+ * journaled quantities; whatever doesn't fit back into the player's storage stays
+ * where it is.
+ *
+ * Runs through the {@link DepositScheduler} like a deposit, so it shares the tick
+ * budget, and each step runs inside a change batch.
+ *
+ * @param <C> The container type
+ */
+public class UndoJob<C> implements ScheduledJob {
+
+    private final DepositPlayer<C> player;
+    private final DepositJournal journal;
+    private final ContainerIndex<C> containerIndex;
+    private final ItemIndex<C> itemIndex;
+    private final ContainerAccess<C> access;
+
+    private DepositJournal.Moves moves;
+    private int cursor;
+
+    private int itemsReturned;
+    private int containersReturned;
+    private int containersMissing;
+    private int containersChanged;
+    private int itemsLeft;
+
+    // Repeat requests absorbed by this job (see DepositThrottle)
+    private int mergedRequests;
+
+    public UndoJob(DepositPlayer<C> player, DepositJournal journal, ContainerIndex<C> containerIndex,
+                   ItemIndex<C> itemIndex, ContainerAccess<C> access) {
+        this.player = player;
+        this.journal = journal;
+        this.containerIndex = containerIndex;
+        this.itemIndex = itemIndex;
+        this.access = access;
+    }
+
+    @Override
+    public DepositPlayer<C> getPlayer() {
+        return player;
+    }
+
+    @Override
+    public int getMergedRequests() {
+        return mergedRequests;
+    }
+
+    @Override
+    public void addMergedRequests(int count) {
+        mergedRequests += count;
+    }
+
+    /**
+     * Undos never merge: a second one queued behind this one undoes the deposit before.
+     */
+    @Override
+    public boolean coversSameArea(ScheduledJob other) {
+        return false;
+    }
+
+    @Override
+    public boolean isWaiting() {
+        return false;
+    }
+
+    /**
+     * Returns the moves into one container; the deadline isn't needed at that size.
+     */
+    @Override
+    public boolean step(long deadlineNanos) {
+        access.beginBatch();
+        try {
+            return runStep();
+        } finally {
+            access.endBatch();
+        }
+    }
+
+    private boolean runStep() {
+        if (!player.isValid()) {
+            return true;
+        }
+        C playerStorage = player.getStorage();
+        if (playerStorage == null) {
+            return true;
+        }
+
+        if (moves == null) {
+            moves = journal.takeLast(player);
+            if (moves == null) {
+                player.sendMessage("Nothing to undo.");
+                return true;
+            }
+            return false;
+        }
+
+        // Moves into one container are journaled together, so return them together
+        long position = moves.position(cursor);
+        int version = moves.version(cursor);
+        int end = cursor;
+        while (end < moves.size() && moves.position(end) == position && moves.version(end) == version) {
+            end++;
+        }
+
+        C container = containerIndex.resolve(position);
+        if (container == null) {
+            containersMissing++;
+        } else if (version < 0 || itemIndex.version(position) != version) {
+            // Changed since the deposit (or no longer tracked), so its slots can't be trusted
+            containersChanged++;
+        } else {
+            int returned = 0;
+            for (int i = cursor; i < end; i++) {
+                int taken = takeBack(container, playerStorage, moves.slot(i), moves.itemKey(i), moves.quantity(i));
+                itemsLeft += moves.quantity(i) - taken;
+                returned += taken;
+            }
+            if (returned > 0) {
+                containersReturned++;
+                itemsReturned += returned;
+            }
+        }
+        cursor = end;
+
+        if (cursor < moves.size()) {
+            return false;
+        }
+        finish();
+        return true;
+    }
+
+    /**
+     * Moves up to {@code quantity} items of one type from a container slot back into the
+     * player's storage.
+     *
+     * @return The number of items moved
+     */
+    private int takeBack(C container, C playerStorage, int slot, int itemKey, int quantity) {
+        if (slot >= access.capacity(container)) {
+            return 0;
+        }
+        String itemId = access.itemId(container, slot);
+        if (itemId == null || ItemKeys.keyOf(itemId) != itemKey) {
+            return 0;
+        }
+        return access.moveFromSlot(container, slot, Math.min(quantity, access.quantity(container, slot)), playerStorage);
+    }
+
+    /**
+     * Reports the results to the player.
+     */
+    private void finish() {
+        StringBuilder message = new StringBuilder();
+        if (itemsReturned > 0) {
+            message.append("Took back ").append(itemsReturned).append(" item(s) from ")
+                .append(containersReturned).append(" container(s).");
+        } else {
+            message.append("Nothing could be taken back.");
+        }
+        if (containersMissing > 0) {
+            message.append(' ').append(containersMissing).append(" container(s) are gone.");
+        }
+        if (containersChanged > 0) {
+            message.append(' ').append(containersChanged).append(" container(s) changed since and were left alone.");
+        }
+        if (itemsLeft > 0) {
+            message.append(' ').append(itemsLeft).append(" item(s) didn't fit.");
+        }
+        if (moves.isTruncated()) {
+            message.append(" The deposit was too large to undo completely.");
+        }
+        if (mergedRequests > 0) {
+            message.append(" (merged ").append(mergedRequests).append(" repeated request(s))");
+        }
+        player.sendMessage(message.toString());
+    }
+}
@@ -0,0 +1,83 @@
+package dev.rocketsheep.plugin.index;
+
+import java.util.Arrays;
+
+/**
+ * Container positions recorded for a single chunk column.
+ *
+ * Tracks which 32-block sections have already been scanned, the packed positions of
+ * the containers found in them, and positions touched by block changes that must be
+ * re-checked before the next query.
+ *
+ * {@link #modified} is set by every change so the column can be written back to its
+ * region file, and {@link #unverified} marks a column read back from disk whose
+ * positions haven't been checked against the loaded chunk yet.
+ */
+class ChunkColumn {
+
+    /** Bit N is set once section N of this column has been scanned. */
+    int scannedSections;
+
+    long[] positions = new long[8];
+    int size;
+
+    long[] dirty = new long[4];
+    int dirtySize;
+
+    boolean modified;
+    boolean unverified;
+
+    boolean isScanned(int section) {
+        return (scannedSections & (1 << section)) != 0;
+    }
+
+    void markScanned(int section) {
+        scannedSections |= 1 << section;
+        modified = true;
+    }
+
+    boolean contains(long packed) {
+        for (int i = 0; i < size; i++) {
+            if (positions[i] == packed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void add(long packed) {
+        if (contains(packed)) {
+            return;
+        }
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+        }
+        positions[size++] = packed;
+        modified = true;
+    }
+
+    /**
+     * Removes the entry at an index by swapping in the last entry.
+     */
+    void removeAt(int index) {
+        positions[index] = positions[--size];
+        modified = true;
+    }
+
+    void remove(long packed) {
+        for (int i = 0; i < size; i++) {
+            if (positions[i] == packed) {
+                removeAt(i);
+                return;
+            }
+        }
+    }
+
+    void markDirty(long packed) {
+        if (dirtySize == dirty.length) {
+            dirty = Arrays.copyOf(dirty, dirtySize * 2);
+        }
+        dirty[dirtySize++] = packed;
+        modified = true;
+    }
+}
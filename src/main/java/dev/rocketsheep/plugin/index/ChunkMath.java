@@ -0,0 +1,57 @@
+package dev.rocketsheep.plugin.index;
+
+/**
+ * Chunk layout constants and packing helpers shared by the container search code.
+ *
+ * Block positions are packed into a single long (26 bits X, 26 bits Z, 12 bits Y)
+ * so they can be stored in primitive arrays without allocating a vector per block.
+ */
+public final class ChunkMath {
+
+    /** Number of bits in a chunk/section edge (32 blocks). */
+    public static final int CHUNK_BITS = 5;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    public static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** World height in blocks, and the number of 32-block sections per chunk column. */
+    public static final int WORLD_HEIGHT = 320;
+    public static final int SECTION_COUNT = WORLD_HEIGHT >> CHUNK_BITS;
+
+    private ChunkMath() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | (y & 0xFFFL);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static int chunkKeyX(long chunkKey) {
+        return (int) (chunkKey >> 32);
+    }
+
+    public static int chunkKeyZ(long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    /**
+     * Returns the key of the chunk column containing a packed block position.
+     */
+    public static long chunkKeyOf(long packed) {
+        return chunkKey(unpackX(packed) >> CHUNK_BITS, unpackZ(packed) >> CHUNK_BITS);
+    }
+}
@@ -0,0 +1,608 @@
+package dev.rocketsheep.plugin.index;
+
+import dev.rocketsheep.plugin.search.ContainerHits;
+import dev.rocketsheep.plugin.search.ContainerLocator;
+import dev.rocketsheep.plugin.search.ContainerSearch;
+import dev.rocketsheep.plugin.search.LocatorStrategy;
+import dev.rocketsheep.plugin.search.RoomScanner;
+import dev.rocketsheep.plugin.search.SectionAccess;
+import dev.rocketsheep.plugin.search.SphereScanner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-world spatial index of container block positions, keyed by chunk column.
+ *
+ * Chunk sections are scanned lazily the first time a query overlaps them. After that a
+ * radius query only visits the containers recorded for the chunks overlapping the sphere,
+ * so its cost depends on the number of containers rather than on the search volume.
+ * An {@link OccupancyMap} remembers which sections and columns turned out empty, so large
+ * queries step over them without a column lookup or any block access.
+ *
+ * Block place/break events mark positions dirty so they are re-checked on the next query.
+ * Chunk load/unload events drop the whole column so it is rebuilt from the live chunk, or,
+ * when the index is persistent, reload it from the world's {@link RegionStore}. A column
+ * read from disk has its positions checked against the chunk on its first query, and
+ * changed columns, including those of chunks that unloaded since, are written back by
+ * the periodic {@link #flushIfDue}. Columns of unloaded chunks are left alone by queries,
+ * since nothing can be checked against them.
+ *
+ * Must only be used from the world thread; chunk events are handed over to it.
+ *
+ * @param <C> The container type produced by the section access
+ */
+public class ContainerIndex<C> {
+
+    private final SectionAccess<C> access;
+    private final RegionStore store;
+    private long nextFlushNanos;
+    private final Map<Long, ChunkColumn> columns = new HashMap<>();
+    // Changed columns of unloaded chunks, waiting for the next write-back
+    private final Map<Long, ChunkColumn> unloaded = new HashMap<>();
+    private final OccupancyMap occupancy = new OccupancyMap();
+
+    private final ContainerLocator<C> indexedLocator = IndexedSearch::new;
+    private final ContainerLocator<C> scanLocator = ScanSearch::new;
+
+    // Scratch buffers, reused by every query on the world thread
+    private final ContainerHits<C> hits = new ContainerHits<>();
+    private final ContainerHits<C> sectionHits = new ContainerHits<>();
+
+    public ContainerIndex(SectionAccess<C> access) {
+        this(access, null);
+    }
+
+    /**
+     * @param store Where to persist the index, or null to keep it in memory only
+     */
+    public ContainerIndex(SectionAccess<C> access, RegionStore store) {
+        this.access = access;
+        this.store = store;
+    }
+
+    /**
+     * Marks a block position as changed. The position is re-checked on the next query
+     * that touches its chunk, so this is safe to call before the change is applied.
+     */
+    public void markDirty(int x, int y, int z) {
+        int chunkX = x >> ChunkMath.CHUNK_BITS;
+        int chunkZ = z >> ChunkMath.CHUNK_BITS;
+        occupancy.forget(chunkX, chunkZ);
+        ChunkColumn column = columns.get(ChunkMath.chunkKey(chunkX, chunkZ));
+        if (column != null) {
+            column.markDirty(ChunkMath.pack(x, y, z));
+        }
+    }
+
+    /**
+     * Drops everything recorded for a chunk column.
+     */
+    public void invalidateChunk(int chunkX, int chunkZ) {
+        columns.remove(ChunkMath.chunkKey(chunkX, chunkZ));
+        occupancy.forget(chunkX, chunkZ);
+    }
+
+    /**
+     * Replaces a (re)loaded chunk column with its stored copy, if any: the one still
+     * waiting to be written back, or else the one on disk. The stored positions are
+     * checked against the chunk on the first query that touches it.
+     */
+    public void onChunkLoaded(int chunkX, int chunkZ) {
+        long key = ChunkMath.chunkKey(chunkX, chunkZ);
+        columns.remove(key);
+        occupancy.forget(chunkX, chunkZ);
+        if (store != null) {
+            ChunkColumn column = unloaded.remove(key);
+            if (column != null) {
+                column.unverified = true;
+            } else {
+                column = store.load(chunkX, chunkZ);
+            }
+            if (column != null) {
+                columns.put(key, column);
+            }
+        }
+    }
+
+    /**
+     * Drops a chunk column whose chunk is unloading, keeping it for the next write-back
+     * if it changed.
+     */
+    public void onChunkUnloaded(int chunkX, int chunkZ) {
+        long key = ChunkMath.chunkKey(chunkX, chunkZ);
+        ChunkColumn column = columns.remove(key);
+        occupancy.forget(chunkX, chunkZ);
+        if (store != null && column != null && column.modified) {
+            unloaded.put(key, column);
+        }
+    }
+
+    /**
+     * Writes changed columns back to disk if at least {@code intervalNanos} have passed
+     * since the last periodic write-back. Call from the world thread.
+     *
+     * @return true if a write-back ran
+     */
+    public boolean flushIfDue(long nowNanos, long intervalNanos) {
+        if (store == null) {
+            return false;
+        }
+        if (nextFlushNanos == 0L) {
+            nextFlushNanos = nowNanos + intervalNanos;
+        } else if (nowNanos - nextFlushNanos >= 0) {
+            nextFlushNanos = nowNanos + intervalNanos;
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes every changed column back to disk, including those of chunks that have
+     * unloaded since the last write-back. Call from the world thread.
+     *
+     * @return The number of columns written
+     */
+    public int flush() {
+        if (store == null) {
+            return 0;
+        }
+        int written = 0;
+        for (Map.Entry<Long, ChunkColumn> entry : columns.entrySet()) {
+            ChunkColumn column = entry.getValue();
+            if (column.modified) {
+                column.modified = false;
+                store.save(ChunkMath.chunkKeyX(entry.getKey()), ChunkMath.chunkKeyZ(entry.getKey()), column);
+                written++;
+            }
+        }
+        for (Map.Entry<Long, ChunkColumn> entry : unloaded.entrySet()) {
+            store.save(ChunkMath.chunkKeyX(entry.getKey()), ChunkMath.chunkKeyZ(entry.getKey()), entry.getValue());
+            written++;
+        }
+        unloaded.clear();
+        if (written > 0) {
+            store.force();
+        }
+        return written;
+    }
+
+    /**
+     * Writes back every changed column and closes the index files.
+     */
+    public void close() {
+        if (store != null) {
+            flush();
+            store.close();
+        }
+    }
+
+    /**
+     * Finds all containers within the specified radius of a position using the index.
+     *
+     * The returned buffer is owned by this index and is overwritten by the next query.
+     *
+     * @param centerX The center position to search from
+     * @param radius The search radius in blocks
+     * @return The containers found in range, with their packed positions
+     */
+    public ContainerHits<C> query(double centerX, double centerY, double centerZ, double radius) {
+        beginQuery();
+
+        int radiusInt = (int) Math.ceil(radius);
+        int blockX = (int) Math.floor(centerX);
+        int blockZ = (int) Math.floor(centerZ);
+        int minChunkX = (blockX - radiusInt) >> ChunkMath.CHUNK_BITS;
+        int maxChunkX = (blockX + radiusInt) >> ChunkMath.CHUNK_BITS;
+        int minChunkZ = (blockZ - radiusInt) >> ChunkMath.CHUNK_BITS;
+        int maxChunkZ = (blockZ + radiusInt) >> ChunkMath.CHUNK_BITS;
+        int blockY = (int) Math.floor(centerY);
+        int range = sectionRange(blockY - radiusInt, blockY + radiusInt);
+
+        // Walk region by region so regions known to be empty are skipped in one test
+        int shift = OccupancyMap.REGION_BITS;
+        for (int regionX = minChunkX >> shift; regionX <= maxChunkX >> shift; regionX++) {
+            for (int regionZ = minChunkZ >> shift; regionZ <= maxChunkZ >> shift; regionZ++) {
+                if (occupancy.isRegionKnownEmpty(regionX, regionZ, range)) {
+                    continue;
+                }
+                int fromX = Math.max(minChunkX, regionX << shift);
+                int toX = Math.min(maxChunkX, ((regionX + 1) << shift) - 1);
+                int fromZ = Math.max(minChunkZ, regionZ << shift);
+                int toZ = Math.min(maxChunkZ, ((regionZ + 1) << shift) - 1);
+                for (int chunkX = fromX; chunkX <= toX; chunkX++) {
+                    for (int chunkZ = fromZ; chunkZ <= toZ; chunkZ++) {
+                        queryColumn(chunkX, chunkZ, centerX, centerY, centerZ, radius, hits);
+                    }
+                }
+            }
+        }
+
+        return hits;
+    }
+
+    /**
+     * Checks whether a query can step over a chunk column: the sphere misses it, or every
+     * section the sphere reaches is known to hold no container. Reads only the occupancy
+     * bitmaps, so it is cheap enough to call for every column of a large search.
+     */
+    public boolean canSkipColumn(int chunkX, int chunkZ, double centerX, double centerY, double centerZ,
+                                 double radius) {
+        int range = columnSectionRange(chunkX, chunkZ, centerX, centerY, centerZ, radius);
+        return range == 0 || occupancy.isKnownEmpty(chunkX, chunkZ, range);
+    }
+
+    /**
+     * Appends the containers of one chunk column that lie within the radius. Lets callers
+     * split a large query into per-column slices spread over several ticks.
+     *
+     * Only the sections the sphere reaches within this column are scanned, and a column
+     * known to be empty there is skipped without touching the world. A column whose
+     * chunk isn't loaded is skipped as well, keeping whatever is recorded for it.
+     *
+     * Scans every section not scanned yet, up to 32768 blocks each; a search from
+     * {@link #locator} scans them one per step before calling this.
+     *
+     * @param out The buffer to append to
+     * @return The number of blocks examined: every block of sections scanned for the
+     *         first time, plus each indexed position tested against the sphere
+     */
+    public int queryColumn(int chunkX, int chunkZ, double centerX, double centerY, double centerZ,
+                            double radius, ContainerHits<C> out) {
+        int range = columnSectionRange(chunkX, chunkZ, centerX, centerY, centerZ, radius);
+        if (range == 0 || occupancy.isKnownEmpty(chunkX, chunkZ, range)) {
+            return 0;
+        }
+
+        access.reset();
+        if (!access.isChunkLoaded(chunkX, chunkZ)) {
+            // Can't tell a missing container from an unloaded one
+            return 0;
+        }
+        double radiusSq = radius * radius;
+
+        int examined = 0;
+        ChunkColumn column = columns.computeIfAbsent(ChunkMath.chunkKey(chunkX, chunkZ), key -> new ChunkColumn());
+        if (column.unverified) {
+            examined += verify(column);
+        }
+
+        for (int pending = range & ~column.scannedSections; pending != 0; pending &= pending - 1) {
+            examined += scanSection(column, chunkX, Integer.numberOfTrailingZeros(pending), chunkZ);
+        }
+        resolveDirty(column);
+
+        examined += column.size;
+        int occupied = 0;
+        for (int i = 0; i < column.size; i++) {
+            long packed = column.positions[i];
+            int x = ChunkMath.unpackX(packed);
+            int y = ChunkMath.unpackY(packed);
+            int z = ChunkMath.unpackZ(packed);
+
+            // Same cell-center sphere test as the scan, without the sqrt
+            double dx = x + 0.5 - centerX;
+            double dy = y + 0.5 - centerY;
+            double dz = z + 0.5 - centerZ;
+            if (dx * dx + dy * dy + dz * dz > radiusSq) {
+                occupied |= 1 << (y >> ChunkMath.CHUNK_BITS);
+                continue;
+            }
+
+            C container = containerAt(x, y, z);
+            if (container != null) {
+                out.add(packed, container);
+                occupied |= 1 << (y >> ChunkMath.CHUNK_BITS);
+            } else {
+                // The block changed without an event reaching us; self-heal
+                column.removeAt(i--);
+            }
+        }
+        occupancy.update(chunkX, chunkZ, column.scannedSections, occupied);
+        return examined;
+    }
+
+    /**
+     * Looks up the live container at a packed position.
+     *
+     * @return The container, or null if the block is no longer a container
+     */
+    public C resolve(long packed) {
+        access.reset();
+        return containerAt(ChunkMath.unpackX(packed), ChunkMath.unpackY(packed), ChunkMath.unpackZ(packed));
+    }
+
+    /**
+     * Looks up the live containers at the packed positions {@code from} (inclusive) to
+     * {@code to} (exclusive) of a list, appending those that still hold one to {@code out}.
+     * Cheaper than calling {@link #resolve} for each position, since consecutive positions
+     * in the same chunk share the chunk lookup.
+     *
+     * @return The number of positions that no longer hold a container
+     */
+    public int resolveAll(long[] positions, int from, int to, ContainerHits<C> out) {
+        access.reset();
+        int missing = 0;
+        for (int i = from; i < to; i++) {
+            long packed = positions[i];
+            C container = containerAt(ChunkMath.unpackX(packed), ChunkMath.unpackY(packed), ChunkMath.unpackZ(packed));
+            if (container != null) {
+                out.add(packed, container);
+            } else {
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Finds all containers within the specified radius by scanning every block in the
+     * sphere, bypassing the index. Used as the fallback search path.
+     *
+     * The returned buffer is owned by this index and is overwritten by the next query.
+     */
+    public ContainerHits<C> scan(double centerX, double centerY, double centerZ, double radius) {
+        beginQuery();
+        SphereScanner.scan(access, centerX, centerY, centerZ, radius, hits);
+        return hits;
+    }
+
+    /**
+     * Starts a room-mode search through this index's world: a flood fill from a block
+     * that finds the containers bordering the space reachable from it. The index itself
+     * isn't consulted, since reachability depends on every block in between.
+     */
+    public RoomScanner<C> roomScanner(int startX, int startY, int startZ,
+                                      double centerX, double centerY, double centerZ, double radius) {
+        return new RoomScanner<>(access, startX, startY, startZ, centerX, centerY, centerZ, radius);
+    }
+
+    /**
+     * Gets a resumable sphere search through this index's world, searching one chunk
+     * column per step. {@link LocatorStrategy#INDEXED} goes through the index;
+     * {@link LocatorStrategy#SCAN} scans every block of the sphere and neither reads nor
+     * updates the index, so it can be used to check it.
+     */
+    public ContainerLocator<C> locator(LocatorStrategy strategy) {
+        return strategy == LocatorStrategy.SCAN ? scanLocator : indexedLocator;
+    }
+
+    /**
+     * Scans the lowest section of a chunk column that the sphere reaches and that hasn't
+     * been scanned yet, so a search can spread a column's first scan over several steps.
+     *
+     * @return The number of blocks checked, or -1 if there is no such section (or the
+     *         chunk isn't loaded), so the column can be queried
+     */
+    private int scanNextSection(int chunkX, int chunkZ, double centerX, double centerY, double centerZ,
+                                double radius) {
+        int range = columnSectionRange(chunkX, chunkZ, centerX, centerY, centerZ, radius);
+        if (range == 0 || occupancy.isKnownEmpty(chunkX, chunkZ, range)) {
+            return -1;
+        }
+        access.reset();
+        if (!access.isChunkLoaded(chunkX, chunkZ)) {
+            return -1;
+        }
+        ChunkColumn column = columns.computeIfAbsent(ChunkMath.chunkKey(chunkX, chunkZ), key -> new ChunkColumn());
+        int pending = range & ~column.scannedSections;
+        if (pending == 0) {
+            return -1;
+        }
+        return scanSection(column, chunkX, Integer.numberOfTrailingZeros(pending), chunkZ);
+    }
+
+    private void beginQuery() {
+        hits.clear();
+        access.reset();
+    }
+
+    /**
+     * Records every container in one 32-block section of a chunk column. Nothing is
+     * recorded for a chunk that isn't loaded, so the section is scanned once it is.
+     *
+     * @return The number of blocks checked
+     */
+    private int scanSection(ChunkColumn column, int chunkX, int section, int chunkZ) {
+        if (!access.isChunkLoaded(chunkX, chunkZ)) {
+            return 0;
+        }
+        sectionHits.clear();
+        int checked = SphereScanner.scanSection(access, chunkX, section, chunkZ, sectionHits);
+        for (int i = 0; i < sectionHits.size(); i++) {
+            column.add(sectionHits.position(i));
+        }
+        sectionHits.clear();
+        column.markScanned(section);
+        return checked;
+    }
+
+    /**
+     * Checks the positions of a column read from disk against its chunk, dropping any
+     * that no longer hold a container. Only called once the chunk is known to be loaded.
+     *
+     * @return The number of positions checked
+     */
+    private int verify(ChunkColumn column) {
+        int checked = column.size;
+        for (int i = 0; i < column.size; i++) {
+            long packed = column.positions[i];
+            if (containerAt(ChunkMath.unpackX(packed), ChunkMath.unpackY(packed), ChunkMath.unpackZ(packed)) == null) {
+                column.removeAt(i--);
+            }
+        }
+        column.unverified = false;
+        return checked;
+    }
+
+    /**
+     * Re-checks positions touched by block changes since the last query.
+     */
+    private void resolveDirty(ChunkColumn column) {
+        for (int i = 0; i < column.dirtySize; i++) {
+            long packed = column.dirty[i];
+            int y = ChunkMath.unpackY(packed);
+            if (!column.isScanned(y >> ChunkMath.CHUNK_BITS)) {
+                // The section scan will pick it up
+                continue;
+            }
+            if (containerAt(ChunkMath.unpackX(packed), y, ChunkMath.unpackZ(packed)) != null) {
+                column.add(packed);
+            } else {
+                column.remove(packed);
+            }
+        }
+        column.dirtySize = 0;
+    }
+
+    /**
+     * Gets the sections of a chunk column that the sphere reaches, as a bit per section.
+     * Conservative: a section is included if any block center in it might be in range.
+     *
+     * @return 0 if the sphere misses the column entirely
+     */
+    private static int columnSectionRange(int chunkX, int chunkZ, double centerX, double centerY,
+                                          double centerZ, double radius) {
+        // Distance from the center to the nearest block center in the column, horizontally
+        double minX = (chunkX << ChunkMath.CHUNK_BITS) + 0.5;
+        double minZ = (chunkZ << ChunkMath.CHUNK_BITS) + 0.5;
+        double dx = centerX - Math.max(minX, Math.min(centerX, minX + ChunkMath.CHUNK_SIZE - 1));
+        double dz = centerZ - Math.max(minZ, Math.min(centerZ, minZ + ChunkMath.CHUNK_SIZE - 1));
+        double remaining = radius * radius - dx * dx - dz * dz;
+        if (remaining < 0.0) {
+            return 0;
+        }
+        double reach = Math.sqrt(remaining);
+        return sectionRange((int) Math.floor(centerY - reach), (int) Math.floor(centerY + reach));
+    }
+
+    /**
+     * Gets the sections covering a range of block heights, as a bit per section.
+     */
+    private static int sectionRange(int minY, int maxY) {
+        minY = Math.max(0, minY);
+        maxY = Math.min(ChunkMath.WORLD_HEIGHT - 1, maxY);
+        if (minY > maxY) {
+            return 0;
+        }
+        int low = minY >> ChunkMath.CHUNK_BITS;
+        int high = maxY >> ChunkMath.CHUNK_BITS;
+        return (-1 >>> (31 - high)) & (-1 << low);
+    }
+
+    private C containerAt(int x, int y, int z) {
+        if (!access.loadSection(x >> ChunkMath.CHUNK_BITS, y >> ChunkMath.CHUNK_BITS, z >> ChunkMath.CHUNK_BITS)) {
+            return null;
+        }
+        return access.containerAt(x, y, z);
+    }
+
+    /**
+     * Sphere search that visits the chunk columns overlapping the sphere one per step,
+     * stepping over columns it can skip within the same step. A column may take several
+     * steps, in which case the search stays on it until {@link #columnDone} is set.
+     */
+    private abstract class ColumnSearch implements ContainerSearch<C> {
+
+        final double centerX;
+        final double centerY;
+        final double centerZ;
+        final double radius;
+        private final int minChunkZ;
+        private final int maxChunkX;
+        private final int maxChunkZ;
+        private int chunkX;
+        private int chunkZ;
+        private boolean done;
+        // Cleared by searchColumn when the column needs another step
+        boolean columnDone = true;
+
+        ColumnSearch(double centerX, double centerY, double centerZ, double radius) {
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.centerZ = centerZ;
+            this.radius = radius;
+            int radiusInt = (int) Math.ceil(radius);
+            this.chunkX = ((int) Math.floor(centerX) - radiusInt) >> ChunkMath.CHUNK_BITS;
+            this.maxChunkX = ((int) Math.floor(centerX) + radiusInt) >> ChunkMath.CHUNK_BITS;
+            this.minChunkZ = ((int) Math.floor(centerZ) - radiusInt) >> ChunkMath.CHUNK_BITS;
+            this.maxChunkZ = ((int) Math.floor(centerZ) + radiusInt) >> ChunkMath.CHUNK_BITS;
+            this.chunkZ = minChunkZ;
+        }
+
+        @Override
+        public int step(ContainerHits<C> out) {
+            while (!done && columnDone && canSkip(chunkX, chunkZ)) {
+                advance();
+            }
+            if (done) {
+                return 0;
+            }
+            columnDone = true;
+            int examined = searchColumn(chunkX, chunkZ, out);
+            if (columnDone) {
+                advance();
+            }
+            return examined;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        abstract boolean canSkip(int chunkX, int chunkZ);
+
+        abstract int searchColumn(int chunkX, int chunkZ, ContainerHits<C> out);
+
+        private void advance() {
+            if (++chunkZ > maxChunkZ) {
+                chunkZ = minChunkZ;
+                done = ++chunkX > maxChunkX;
+            }
+        }
+    }
+
+    private final class IndexedSearch extends ColumnSearch {
+
+        IndexedSearch(double centerX, double centerY, double centerZ, double radius) {
+            super(centerX, centerY, centerZ, radius);
+        }
+
+        @Override
+        boolean canSkip(int chunkX, int chunkZ) {
+            // Columns known to be empty cost a bitmap test
+            return canSkipColumn(chunkX, chunkZ, centerX, centerY, centerZ, radius);
+        }
+
+        @Override
+        int searchColumn(int chunkX, int chunkZ, ContainerHits<C> out) {
+            // Sections not scanned yet take a step each, then the column is queried
+            int scanned = scanNextSection(chunkX, chunkZ, centerX, centerY, centerZ, radius);
+            if (scanned >= 0) {
+                columnDone = false;
+                return scanned;
+            }
+            return queryColumn(chunkX, chunkZ, centerX, centerY, centerZ, radius, out);
+        }
+    }
+
+    private final class ScanSearch extends ColumnSearch {
+
+        ScanSearch(double centerX, double centerY, double centerZ, double radius) {
+            super(centerX, centerY, centerZ, radius);
+        }
+
+        @Override
+        boolean canSkip(int chunkX, int chunkZ) {
+            return columnSectionRange(chunkX, chunkZ, centerX, centerY, centerZ, radius) == 0;
+        }
+
+        @Override
+        int searchColumn(int chunkX, int chunkZ, ContainerHits<C> out) {
+            access.reset();
+            return SphereScanner.scanColumn(access, chunkX, chunkZ, centerX, centerY, centerZ, radius, out);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package dev.rocketsheep.plugin.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Spatial hash of the Area Depositor blocks in one world, used to find the depositor a
+ * player is standing near without looking at every depositor.
+ *
+ * The world is cut into cubic cells whose side is the proximity range, and each cell
+ * holds the packed positions of the depositors inside it. Anything within range of a
+ * point is then in the point's cell or one of its 26 neighbors, so a lookup reads at
+ * most 27 small arrays no matter how many depositors the world has.
+ *
+ * Depositors are added when they are placed or used and removed when they are broken
+ * or found missing, so the hash only knows about depositors it has seen. With a storage
+ * file it survives restarts; I/O errors are logged and treated as an empty hash.
+ *
+ * Must only be used from the world thread.
+ */
+public class DepositorHash {
+
+    private static final Logger LOGGER = Logger.getLogger(DepositorHash.class.getName());
+
+    /** Returned by {@link #nearest} when no depositor is close enough. */
+    public static final long NONE = Long.MIN_VALUE;
+
+    // Cell coordinates are packed as three 21-bit fields: x << 42 | y << 21 | z
+    private static final int FIELD_BITS = 21;
+    private static final long FIELD_MASK = (1L << FIELD_BITS) - 1;
+
+    private static final int FILE_VERSION = 1;
+
+    private final int cellSize;
+    private final Path file;
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private int size;
+    private int version;
+    private boolean dirty;
+
+    /**
+     * @param cellSize Side of a cell in blocks, and the furthest a player can be from a
+     *        depositor and still be near it
+     * @param file File the hash is loaded from and saved to, or null to keep it in memory
+     */
+    public DepositorHash(int cellSize, Path file) {
+        this.cellSize = Math.max(1, cellSize);
+        this.file = file;
+    }
+
+    public int cellSize() {
+        return cellSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Counter bumped by every add and remove, so callers holding a lookup result can
+     * tell when it may be out of date.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Gets the key of the cell holding a block.
+     */
+    public long cellKeyOf(int x, int y, int z) {
+        return cellKey(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize), Math.floorDiv(z, cellSize));
+    }
+
+    /**
+     * Adds a depositor. Adding one that is already known does nothing.
+     */
+    public void add(int x, int y, int z) {
+        long position = ChunkMath.pack(x, y, z);
+        Cell cell = cells.computeIfAbsent(cellKeyOf(x, y, z), key -> new Cell());
+        if (cell.indexOf(position) >= 0) {
+            return;
+        }
+        cell.add(position);
+        size++;
+        version++;
+        dirty = true;
+    }
+
+    /**
+     * Removes a depositor if it is known.
+     */
+    public void remove(int x, int y, int z) {
+        long key = cellKeyOf(x, y, z);
+        Cell cell = cells.get(key);
+        if (cell == null || !cell.remove(ChunkMath.pack(x, y, z))) {
+            return;
+        }
+        if (cell.size == 0) {
+            cells.remove(key);
+        }
+        size--;
+        version++;
+        dirty = true;
+    }
+
+    /**
+     * Finds the depositor closest to a point, if it is within the cell size.
+     *
+     * @return The packed position of the closest depositor, or {@link #NONE}
+     */
+    public long nearest(double x, double y, double z) {
+        long closest = closest(x, y, z);
+        if (closest == NONE || distanceSq(closest, x, y, z) > (double) cellSize * cellSize) {
+            return NONE;
+        }
+        return closest;
+    }
+
+    /**
+     * Finds the depositor closest to a point among those in the point's cell and its
+     * neighbors, however far away it is. Every other depositor is further than the cell
+     * size from every point of the point's cell.
+     *
+     * @return The packed position of the closest depositor, or {@link #NONE}
+     */
+    public long closest(double x, double y, double z) {
+        if (size == 0) {
+            return NONE;
+        }
+        int cellX = Math.floorDiv((int) Math.floor(x), cellSize);
+        int cellY = Math.floorDiv((int) Math.floor(y), cellSize);
+        int cellZ = Math.floorDiv((int) Math.floor(z), cellSize);
+
+        long best = NONE;
+        double bestSq = Double.MAX_VALUE;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    Cell cell = cells.get(cellKey(cellX + dx, cellY + dy, cellZ + dz));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size; i++) {
+                        long position = cell.positions[i];
+                        double distanceSq = distanceSq(position, x, y, z);
+                        if (distanceSq < bestSq) {
+                            bestSq = distanceSq;
+                            best = position;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the squared distance from a point to the center of a depositor block.
+     */
+    public static double distanceSq(long position, double x, double y, double z) {
+        double ox = ChunkMath.unpackX(position) + 0.5 - x;
+        double oy = ChunkMath.unpackY(position) + 0.5 - y;
+        double oz = ChunkMath.unpackZ(position) + 0.5 - z;
+        return ox * ox + oy * oy + oz * oz;
+    }
+
+    /**
+     * Reads the depositors saved by {@link #save}, if there is a file.
+     */
+    public void load() {
+        if (file == null) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(file);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != FILE_VERSION) {
+                LOGGER.warning("Ignoring depositor file with unknown version: " + file);
+                return;
+            }
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                long position = data.readLong();
+                add(ChunkMath.unpackX(position), ChunkMath.unpackY(position), ChunkMath.unpackZ(position));
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing saved yet
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read depositor file " + file, e);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Writes the depositors to the file if any were added or removed since the last
+     * load or save.
+     */
+    public void save() {
+        if (file == null || !dirty) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            try (OutputStream out = Files.newOutputStream(file);
+                 DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+                data.writeInt(FILE_VERSION);
+                data.writeInt(size);
+                for (Cell cell : cells.values()) {
+                    for (int i = 0; i < cell.size; i++) {
+                        data.writeLong(cell.positions[i]);
+                    }
+                }
+            }
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write depositor file " + file, e);
+        }
+    }
+
+    private static long cellKey(int cellX, int cellY, int cellZ) {
+        return (cellX & FIELD_MASK) << (2 * FIELD_BITS) | (cellY & FIELD_MASK) << FIELD_BITS | (cellZ & FIELD_MASK);
+    }
+
+    /**
+     * The depositors in one cell, usually one or two.
+     */
+    private static final class Cell {
+        long[] positions = new long[2];
+        int size;
+
+        int indexOf(long position) {
+            for (int i = 0; i < size; i++) {
+                if (positions[i] == position) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void add(long position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        boolean remove(long position) {
+            int index = indexOf(position);
+            if (index < 0) {
+                return false;
+            }
+            positions[index] = positions[--size];
+            return true;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package dev.rocketsheep.plugin.index;
+
+import dev.rocketsheep.plugin.search.ContainerHits;
+import dev.rocketsheep.plugin.search.ContainerSearch;
+import dev.rocketsheep.plugin.search.LocatorStrategy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-world cache of the containers linked to each placed Area Depositor block.
+ *
+ * A depositor's network is every container within its radius of the block's center.
+ * It is built from the container index the first time the depositor is used, a column
+ * or section per step like any other search, and after that a use only resolves the
+ * cached positions, with no chunk or section walking. A block change inside the
+ * network's sphere, or a chunk it reaches into unloading or loading, marks it for
+ * rebuilding on the next use; breaking the depositor or unloading its chunk frees it.
+ *
+ * All methods must be called from the world thread.
+ *
+ * @param <C> The container type
+ */
+public class DepositorNetworks<C> {
+
+    /** Cached positions resolved by one step of a network search. */
+    private static final int RESOLVE_PER_STEP = 128;
+
+    private final ContainerIndex<C> containerIndex;
+    private final Map<Long, Network> byDepositor = new HashMap<>();
+    // Networks overlapping each chunk column, so block changes only test nearby networks
+    private final Map<Long, List<Network>> byChunk = new HashMap<>();
+
+    public DepositorNetworks(ContainerIndex<C> containerIndex) {
+        this.containerIndex = containerIndex;
+    }
+
+    public ContainerIndex<C> getContainerIndex() {
+        return containerIndex;
+    }
+
+    public int size() {
+        return byDepositor.size();
+    }
+
+    /**
+     * Starts a search for the live containers linked to a depositor. Its first steps
+     * resolve the cached network's positions, a batch per step; if there is none, or it
+     * is stale, the network is (re)built through the container index instead.
+     *
+     * @param depositor Packed position of the depositor block
+     * @param radius Network radius around the block's center
+     */
+    public ContainerSearch<C> search(long depositor, double radius) {
+        return new NetworkSearch(depositor, radius);
+    }
+
+    /**
+     * Marks the networks whose sphere contains a changed block for rebuilding, and frees
+     * the network of a depositor at that position (it may be the block being broken).
+     */
+    public void onBlockChanged(int x, int y, int z) {
+        release(ChunkMath.pack(x, y, z));
+
+        List<Network> networks = byChunk.get(ChunkMath.chunkKey(x >> ChunkMath.CHUNK_BITS, z >> ChunkMath.CHUNK_BITS));
+        if (networks == null) {
+            return;
+        }
+        for (int i = 0; i < networks.size(); i++) {
+            Network network = networks.get(i);
+            if (network.contains(x, y, z)) {
+                network.stale = true;
+                network.changes++;
+            }
+        }
+    }
+
+    /**
+     * Frees the networks of depositors in an unloaded chunk and marks networks that
+     * reach into it for rebuilding.
+     */
+    public void onChunkUnloaded(int chunkX, int chunkZ) {
+        Iterator<Network> iterator = byDepositor.values().iterator();
+        while (iterator.hasNext()) {
+            Network network = iterator.next();
+            if (ChunkMath.chunkKeyOf(network.depositor) == ChunkMath.chunkKey(chunkX, chunkZ)) {
+                iterator.remove();
+                unlink(network);
+            }
+        }
+
+        markStale(chunkX, chunkZ);
+    }
+
+    /**
+     * Marks networks that reach into a chunk that has just loaded for rebuilding; any
+     * built while it was unloaded are missing its containers.
+     */
+    public void onChunkLoaded(int chunkX, int chunkZ) {
+        markStale(chunkX, chunkZ);
+    }
+
+    /**
+     * Frees the network of a depositor, if it has one.
+     */
+    public void release(long depositor) {
+        Network network = byDepositor.remove(depositor);
+        if (network != null) {
+            unlink(network);
+        }
+    }
+
+    private void markStale(int chunkX, int chunkZ) {
+        List<Network> networks = byChunk.get(ChunkMath.chunkKey(chunkX, chunkZ));
+        if (networks != null) {
+            for (int i = 0; i < networks.size(); i++) {
+                networks.get(i).stale = true;
+                networks.get(i).changes++;
+            }
+        }
+    }
+
+    private void link(Network network) {
+        for (int chunkX = network.minChunkX; chunkX <= network.maxChunkX; chunkX++) {
+            for (int chunkZ = network.minChunkZ; chunkZ <= network.maxChunkZ; chunkZ++) {
+                byChunk.computeIfAbsent(ChunkMath.chunkKey(chunkX, chunkZ), key -> new ArrayList<>(2)).add(network);
+            }
+        }
+    }
+
+    private void unlink(Network network) {
+        for (int chunkX = network.minChunkX; chunkX <= network.maxChunkX; chunkX++) {
+            for (int chunkZ = network.minChunkZ; chunkZ <= network.maxChunkZ; chunkZ++) {
+                long key = ChunkMath.chunkKey(chunkX, chunkZ);
+                List<Network> networks = byChunk.get(key);
+                if (networks != null) {
+                    networks.remove(network);
+                    if (networks.isEmpty()) {
+                        byChunk.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The cached container positions around one depositor.
+     */
+    private static final class Network {
+        final long depositor;
+        final double radius;
+        final double centerX;
+        final double centerY;
+        final double centerZ;
+        final int minChunkX;
+        final int maxChunkX;
+        final int minChunkZ;
+        final int maxChunkZ;
+
+        long[] positions = new long[0];
+        int size;
+        boolean stale = true;
+        // Counts the changes that made the network stale, so a build that raced one doesn't clear it
+        int changes;
+
+        Network(long depositor, double radius) {
+            this.depositor = depositor;
+            this.radius = radius;
+            this.centerX = ChunkMath.unpackX(depositor) + 0.5;
+            this.centerY = ChunkMath.unpackY(depositor) + 0.5;
+            this.centerZ = ChunkMath.unpackZ(depositor) + 0.5;
+
+            int radiusInt = (int) Math.ceil(radius);
+            this.minChunkX = (ChunkMath.unpackX(depositor) - radiusInt) >> ChunkMath.CHUNK_BITS;
+            this.maxChunkX = (ChunkMath.unpackX(depositor) + radiusInt) >> ChunkMath.CHUNK_BITS;
+            this.minChunkZ = (ChunkMath.unpackZ(depositor) - radiusInt) >> ChunkMath.CHUNK_BITS;
+            this.maxChunkZ = (ChunkMath.unpackZ(depositor) + radiusInt) >> ChunkMath.CHUNK_BITS;
+        }
+
+        /**
+         * Same cell-center sphere test as the container index.
+         */
+        boolean contains(int x, int y, int z) {
+            double dx = x + 0.5 - centerX;
+            double dy = y + 0.5 - centerY;
+            double dz = z + 0.5 - centerZ;
+            return dx * dx + dy * dy + dz * dz <= radius * radius;
+        }
+    }
+
+    /**
+     * Search for one depositor's containers: the cached network if it is fresh, or else
+     * an indexed sphere search whose results replace the cached positions.
+     */
+    private final class NetworkSearch implements ContainerSearch<C> {
+        private final long depositor;
+        private final double radius;
+
+        private Network network;
+        // Cached positions resolved so far, and where they start in the output
+        private int resolved;
+        private int outStart = -1;
+        private ContainerSearch<C> build;
+        private ContainerHits<C> built;
+        private int changesAtStart;
+        private boolean done;
+
+        NetworkSearch(long depositor, double radius) {
+            this.depositor = depositor;
+            this.radius = radius;
+        }
+
+        @Override
+        public int step(ContainerHits<C> out) {
+            if (build == null) {
+                resolveNext(out);
+                return 0;
+            }
+            int examined = build.step(built);
+            if (build.isDone()) {
+                finishBuild(out);
+            }
+            return examined;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        private void resolveNext(ContainerHits<C> out) {
+            if (outStart < 0) {
+                network = byDepositor.get(depositor);
+                if (network != null && network.radius != radius) {
+                    release(depositor);
+                    network = null;
+                }
+                if (network == null) {
+                    network = new Network(depositor, radius);
+                    byDepositor.put(depositor, network);
+                    link(network);
+                }
+                outStart = out.size();
+            }
+
+            // The network may have been freed or gone stale between steps
+            if (!network.stale && byDepositor.get(depositor) == network) {
+                int end = Math.min(resolved + RESOLVE_PER_STEP, network.size);
+                int missing = containerIndex.resolveAll(network.positions, resolved, end, out);
+                resolved = end;
+                if (missing == 0) {
+                    done = resolved == network.size;
+                    return;
+                }
+                // A container vanished without a block event reaching us; rebuild
+                network.stale = true;
+            }
+            out.truncate(outStart);
+            startBuild();
+        }
+
+        private void startBuild() {
+            changesAtStart = network.changes;
+            built = new ContainerHits<>();
+            build = containerIndex.locator(LocatorStrategy.INDEXED)
+                .start(network.centerX, network.centerY, network.centerZ, network.radius);
+        }
+
+        private void finishBuild(ContainerHits<C> out) {
+            // Only cache the result if the network is still in use and nothing changed meanwhile
+            if (byDepositor.get(depositor) == network && network.changes == changesAtStart) {
+                if (network.positions.length < built.size()) {
+                    network.positions = new long[built.size()];
+                }
+                for (int i = 0; i < built.size(); i++) {
+                    network.positions[i] = built.position(i);
+                }
+                network.size = built.size();
+                network.stale = false;
+            }
+            for (int i = 0; i < built.size(); i++) {
+                out.add(built.position(i), built.container(i));
+            }
+            built = null;
+            build = null;
+            done = true;
+        }
+    }
+}
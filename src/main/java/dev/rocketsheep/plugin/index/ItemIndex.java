@@ -0,0 +1,359 @@
+package dev.rocketsheep.plugin.index;
+
+import dev.rocketsheep.plugin.platform.ContainerAccess;
+import dev.rocketsheep.plugin.search.ContainerHits;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-world index of the item types each container holds.
+ *
+ * Containers are tracked the first time a search finds them. Each tracked container
+ * registers a change listener that flags it dirty; its item set is recomputed lazily the
+ * next time a deposit looks at it, so a burst of slot changes costs one rescan.
+ * Selecting quick stack candidates then tests each container's cached item set against
+ * the player's item types, a batch of search results at a time, so a deposit can spread
+ * the selection over several steps and its cost depends only on the containers in range.
+ *
+ * Refreshed item sets are also posted to per-item-type lists of the containers holding
+ * that type. When the player's item types are held by few tracked containers, the lists
+ * are walked once per deposit and each search result costs a single set lookup instead
+ * of a test of every item type the container holds; containers refreshed after the walk
+ * fall back to that test, as does every container when the lists are too long.
+ *
+ * Every tracked container has a content version that changes whenever it does. Versions
+ * are drawn from one counter per index, so a container that stops being tracked and is
+ * tracked again (or a new container at the same position) never repeats an old one.
+ *
+ * A {@link MissCache} remembers containers that had no room for any of a player's item
+ * types, so repeat deposits with the same item types skip them until they change.
+ *
+ * All methods must be called from the world thread.
+ *
+ * @param <C> The container type
+ */
+public class ItemIndex<C> {
+
+    private static final String[] NO_ITEMS = new String[0];
+
+    /** Most containers a player's item types may post before selection stops using the lists. */
+    private static final int POSTING_WALK_LIMIT = 64;
+
+    private final ContainerAccess<C> access;
+    private final Map<Long, Entry<C>> byPosition = new HashMap<>();
+    // Tracked containers holding each item type, as of their last refresh
+    private final Map<String, Set<Entry<C>>> byItem = new HashMap<>();
+    // Counts changes to the posting lists, so a walk can tell which entries changed after it
+    private int postingChanges;
+    // Known quick stack misses, or null if disabled
+    private final MissCache misses;
+    // Set when a container with possible misses stops being tracked
+    private boolean missesStale;
+    // Source of content versions, shared by every entry
+    private int lastVersion;
+
+    // Scratch set, reused by every refresh on the world thread
+    private final Set<String> itemScratch = new HashSet<>();
+
+    public ItemIndex(ContainerAccess<C> access) {
+        this(access, 0);
+    }
+
+    /**
+     * @param missCacheSize Maximum number of known misses to remember; 0 disables the cache
+     */
+    public ItemIndex(ContainerAccess<C> access, int missCacheSize) {
+        this.access = access;
+        this.misses = missCacheSize > 0 ? new MissCache(missCacheSize) : null;
+    }
+
+    /**
+     * Gets the item types in a player's storage, for {@link #selectCandidates}. If few
+     * tracked containers hold any of them, they are collected from the posting lists.
+     */
+    public PlayerItems playerItems(C playerStorage) {
+        Set<String> itemIds = new HashSet<>();
+        collectItemIds(playerStorage, itemIds);
+        long fingerprint = 0L;
+        int posted = 0;
+        for (String itemId : itemIds) {
+            fingerprint += itemHash(itemId);
+            Set<Entry<C>> holders = byItem.get(itemId);
+            posted += holders != null ? holders.size() : 0;
+        }
+        PlayerItems items = new PlayerItems(itemIds, fingerprint);
+
+        if (posted <= POSTING_WALK_LIMIT) {
+            items.holders = new HashSet<>(posted * 2);
+            items.walkedAt = postingChanges;
+            for (String itemId : itemIds) {
+                Set<Entry<C>> holders = byItem.get(itemId);
+                if (holders != null) {
+                    items.holders.addAll(holders);
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Gets the {@link PlayerItems#fingerprint} of the item types currently in a player's
+     * storage, without collecting their holders.
+     */
+    public long fingerprint(C playerStorage) {
+        Set<String> itemIds = new HashSet<>();
+        collectItemIds(playerStorage, itemIds);
+        long fingerprint = 0L;
+        for (String itemId : itemIds) {
+            fingerprint += itemHash(itemId);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Filters the search results {@code from} (inclusive) to {@code to} (exclusive) down
+     * to the containers that hold at least one of the player's item types, preserving the
+     * search order. Containers recorded as misses for those item types are left out.
+     * Call with consecutive ranges to spread a large selection over several steps.
+     *
+     * @param hits The containers in range
+     * @param items The player's item types, from {@link #playerItems}
+     * @param candidates Receives the subset of hits that quick stack could deposit into
+     */
+    public void selectCandidates(ContainerHits<C> hits, int from, int to, PlayerItems items,
+                                 ContainerHits<C> candidates) {
+        if (missesStale) {
+            misses.removeOwners(owner -> ((Entry<?>) owner).released);
+            missesStale = false;
+        }
+        for (int i = from; i < to; i++) {
+            Entry<C> entry = track(hits.position(i), hits.container(i));
+            if (entry.dirty) {
+                refresh(entry);
+            }
+            // The walked holders are only complete for entries whose postings haven't changed since
+            boolean holds = items.holders != null && entry.postedAt - items.walkedAt <= 0
+                ? items.holders.contains(entry)
+                : holdsAny(entry, items.itemIds);
+            if (holds
+                    && (misses == null || !misses.contains(entry, entry.version, items.fingerprint))) {
+                candidates.add(hits.position(i), hits.container(i));
+            }
+        }
+    }
+
+    /**
+     * Records that a container had no room for any of a player's item types, so the
+     * next selection with the same item types skips it. Ignored if the container has
+     * changed since {@code version} was read.
+     *
+     * @param itemSet The player's item types' {@link PlayerItems#fingerprint}
+     */
+    public void recordMiss(long position, int version, long itemSet) {
+        Entry<C> entry = byPosition.get(position);
+        if (misses != null && entry != null && entry.version == version) {
+            misses.add(entry, version, itemSet);
+        }
+    }
+
+    /**
+     * Appends the search results {@code from} (inclusive) to {@code to} (exclusive) to
+     * {@code candidates}, tracking each one so its content version can be checked later.
+     * Used when any container in range may be a target, not only those already holding
+     * one of the player's items.
+     */
+    public void selectAll(ContainerHits<C> hits, int from, int to, ContainerHits<C> candidates) {
+        for (int i = from; i < to; i++) {
+            Entry<C> entry = track(hits.position(i), hits.container(i));
+            if (entry.dirty) {
+                refresh(entry);
+            }
+            candidates.add(hits.position(i), hits.container(i));
+        }
+    }
+
+    /**
+     * Gets the content version of a tracked container. The version changes on every
+     * change to the container, so comparing versions tells whether a snapshot is stale.
+     *
+     * @return The version, or -1 if the position is not tracked
+     */
+    public int version(long position) {
+        Entry<C> entry = byPosition.get(position);
+        return entry != null ? entry.version : -1;
+    }
+
+    /**
+     * Stops tracking the container at a position (e.g. when its block is broken).
+     */
+    public void untrack(long position) {
+        Entry<C> entry = byPosition.remove(position);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    /**
+     * Stops tracking every container in a chunk column (called on chunk unload).
+     */
+    public void untrackChunk(int chunkX, int chunkZ) {
+        long chunkKey = ChunkMath.chunkKey(chunkX, chunkZ);
+        Iterator<Entry<C>> iterator = byPosition.values().iterator();
+        while (iterator.hasNext()) {
+            Entry<C> entry = iterator.next();
+            if (ChunkMath.chunkKeyOf(entry.position) == chunkKey) {
+                iterator.remove();
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * Forgets every tracked container, unregistering all listeners.
+     */
+    public void clear() {
+        for (Entry<C> entry : byPosition.values()) {
+            entry.subscription.cancel();
+        }
+        byPosition.clear();
+        byItem.clear();
+        postingChanges++;
+        if (misses != null) {
+            misses.clear();
+        }
+        missesStale = false;
+    }
+
+    private Entry<C> track(long position, C container) {
+        Entry<C> entry = byPosition.get(position);
+        if (entry != null) {
+            if (entry.container == container) {
+                return entry;
+            }
+            // A different container now sits at this position
+            release(entry);
+        }
+
+        Entry<C> created = new Entry<>(position, container);
+        created.version = ++lastVersion;
+        created.subscription = access.onChange(container, () -> {
+            created.dirty = true;
+            created.version = ++lastVersion;
+        });
+        byPosition.put(position, created);
+        return created;
+    }
+
+    private void release(Entry<C> entry) {
+        entry.subscription.cancel();
+        removePostings(entry);
+        entry.itemIds = NO_ITEMS;
+        entry.released = true;
+        // Drop its misses on the next selection, so the cache doesn't pin the container
+        missesStale |= misses != null && !misses.isEmpty();
+    }
+
+    /**
+     * Recomputes a container's item set and moves it to the posting lists of its new
+     * item types.
+     */
+    private void refresh(Entry<C> entry) {
+        removePostings(entry);
+        collectItemIds(entry.container, itemScratch);
+        entry.itemIds = itemScratch.isEmpty() ? NO_ITEMS : itemScratch.toArray(NO_ITEMS);
+        itemScratch.clear();
+        for (String itemId : entry.itemIds) {
+            byItem.computeIfAbsent(itemId, id -> new HashSet<>()).add(entry);
+        }
+        entry.postedAt = ++postingChanges;
+        entry.dirty = false;
+    }
+
+    private void removePostings(Entry<C> entry) {
+        for (String itemId : entry.itemIds) {
+            Set<Entry<C>> holders = byItem.get(itemId);
+            if (holders != null && holders.remove(entry) && holders.isEmpty()) {
+                byItem.remove(itemId);
+            }
+        }
+    }
+
+    private static boolean holdsAny(Entry<?> entry, Set<String> itemIds) {
+        for (String itemId : entry.itemIds) {
+            if (itemIds.contains(itemId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 64-bit hash of an item id (FNV-1a, then mixed), summed per item type into an
+     * order-independent fingerprint of an item set.
+     */
+    private static long itemHash(String itemId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < itemId.length(); i++) {
+            hash = (hash ^ itemId.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+
+    private void collectItemIds(C container, Set<String> out) {
+        int capacity = access.capacity(container);
+        for (int slot = 0; slot < capacity; slot++) {
+            String itemId = access.itemId(container, slot);
+            if (itemId != null) {
+                out.add(itemId);
+            }
+        }
+    }
+
+    /**
+     * The item types in a player's storage, and an order-independent fingerprint of them
+     * that keys the {@link MissCache}.
+     */
+    public static final class PlayerItems {
+        private final Set<String> itemIds;
+        private final long fingerprint;
+        // Tracked containers holding any of the item types when the posting lists were
+        // walked, and the posting change count then; null if the lists were too long
+        private Set<Entry<?>> holders;
+        private int walkedAt;
+
+        PlayerItems(Set<String> itemIds, long fingerprint) {
+            this.itemIds = itemIds;
+            this.fingerprint = fingerprint;
+        }
+
+        public long fingerprint() {
+            return fingerprint;
+        }
+    }
+
+    /**
+     * A tracked container and the item types it held when last refreshed.
+     */
+    private static final class Entry<C> {
+        final long position;
+        final C container;
+        ContainerAccess.Subscription subscription;
+        String[] itemIds = NO_ITEMS;
+        boolean dirty = true;
+        boolean released;
+        int version;
+        // Posting change count when its item set was last posted
+        int postedAt;
+
+        Entry(long position, C container) {
+            this.position = position;
+            this.container = container;
+        }
+    }
+}
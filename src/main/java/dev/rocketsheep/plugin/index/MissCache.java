@@ -0,0 +1,89 @@
+package dev.rocketsheep.plugin.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Bounded LRU set of known quick stack misses: containers that, at a given content
+ * version, had no room for any item type of a given player item set.
+ *
+ * An entry is keyed by the container's identity (its {@link ItemIndex} entry), the
+ * container's content version and a fingerprint of the player's item types, so any change
+ * to the container or to the set of item types the player carries makes it unreachable.
+ * Unreachable entries are never matched again and age out of the LRU order.
+ *
+ * Must only be used from the world thread.
+ */
+class MissCache {
+
+    private final Map<Key, Boolean> entries;
+
+    // Reused for lookups so checking a candidate allocates nothing
+    private final Key probe = new Key();
+
+    MissCache(int capacity) {
+        this.entries = new LinkedHashMap<>(Math.min(capacity, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    void add(Object owner, int version, long itemSet) {
+        Key key = new Key();
+        key.owner = owner;
+        key.version = version;
+        key.itemSet = itemSet;
+        entries.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * Checks for a known miss, marking it as recently used.
+     */
+    boolean contains(Object owner, int version, long itemSet) {
+        probe.owner = owner;
+        probe.version = version;
+        probe.itemSet = itemSet;
+        boolean found = entries.get(probe) != null;
+        probe.owner = null;
+        return found;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Drops every entry whose owner matches, e.g. containers that are no longer tracked.
+     */
+    void removeOwners(Predicate<Object> filter) {
+        entries.keySet().removeIf(key -> filter.test(key.owner));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    private static final class Key {
+        Object owner;
+        int version;
+        long itemSet;
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key key)) {
+                return false;
+            }
+            return key.owner == owner && key.version == version && key.itemSet == itemSet;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(owner);
+            hash = hash * 31 + version;
+            return hash * 31 + Long.hashCode(itemSet);
+        }
+    }
+}
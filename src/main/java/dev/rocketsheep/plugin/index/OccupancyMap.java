@@ -0,0 +1,129 @@
+package dev.rocketsheep.plugin.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hierarchical occupancy bitmaps for the container index: regions of 32x32 chunk
+ * columns, and per column a bit per section for "scanned" and "holds at least one
+ * container". Each region also counts its scanned and occupied columns, so an empty
+ * region can be skipped in one test.
+ *
+ * Queries use it to skip columns and whole regions that are known to be empty without
+ * touching the column map or the world, so their cost follows the occupied sections
+ * rather than the search volume. A column with no bits set is simply unknown and is
+ * visited normally.
+ *
+ * Not thread-safe: like the {@link ContainerIndex} that owns it, it must only be used
+ * from the world thread.
+ */
+class OccupancyMap {
+
+    /** Chunk columns per region side, as a shift. */
+    static final int REGION_BITS = 5;
+    private static final int REGION_MASK = (1 << REGION_BITS) - 1;
+    private static final int SECTION_MASK_BITS = 16;
+    private static final int SECTION_MASK = (1 << SECTION_MASK_BITS) - 1;
+
+    private final Map<Long, Region> regions = new HashMap<>();
+
+    /**
+     * Records what a column holds after a query has brought it up to date.
+     *
+     * @param scannedSections Bit N set if section N has been scanned
+     * @param occupiedSections Bit N set if section N holds at least one container
+     */
+    void update(int chunkX, int chunkZ, int scannedSections, int occupiedSections) {
+        long key = ChunkMath.chunkKey(chunkX >> REGION_BITS, chunkZ >> REGION_BITS);
+        Region region = regions.computeIfAbsent(key, k -> new Region());
+        region.set(localIndex(chunkX, chunkZ), scannedSections, occupiedSections);
+    }
+
+    /**
+     * Forgets a column, so the next query visits it.
+     */
+    void forget(int chunkX, int chunkZ) {
+        Region region = regions.get(ChunkMath.chunkKey(chunkX >> REGION_BITS, chunkZ >> REGION_BITS));
+        if (region != null) {
+            region.set(localIndex(chunkX, chunkZ), 0, 0);
+        }
+    }
+
+    /**
+     * Checks whether every section in a range is known to hold no container.
+     *
+     * @param sectionRange Bit N set for each section the query covers
+     */
+    boolean isKnownEmpty(int chunkX, int chunkZ, int sectionRange) {
+        Region region = regions.get(ChunkMath.chunkKey(chunkX >> REGION_BITS, chunkZ >> REGION_BITS));
+        if (region == null) {
+            return false;
+        }
+        int state = region.get(localIndex(chunkX, chunkZ));
+        int scanned = state & SECTION_MASK;
+        int occupied = state >>> SECTION_MASK_BITS;
+        return (scanned & sectionRange) == sectionRange && (occupied & sectionRange) == 0;
+    }
+
+    /**
+     * Checks whether a whole region of 32x32 chunk columns is known to hold no container
+     * in a section range, so a query can step over all of its columns at once.
+     */
+    boolean isRegionKnownEmpty(int regionX, int regionZ, int sectionRange) {
+        Region region = regions.get(ChunkMath.chunkKey(regionX, regionZ));
+        return region != null && region.isKnownEmpty(sectionRange);
+    }
+
+    private static int localIndex(int chunkX, int chunkZ) {
+        return ((chunkZ & REGION_MASK) << REGION_BITS) | (chunkX & REGION_MASK);
+    }
+
+    /**
+     * Occupancy for 32x32 chunk columns, with per-section counts so the region as a
+     * whole can be tested without visiting its columns.
+     */
+    private static final class Region {
+        private static final int COLUMNS = 1 << (2 * REGION_BITS);
+
+        // Per column: low 16 bits scanned sections, high 16 bits occupied sections
+        private final int[] columns = new int[COLUMNS];
+        // Columns with section N scanned
+        private final int[] scannedColumns = new int[SECTION_MASK_BITS];
+        // Columns holding at least one container in any section
+        private int occupiedColumns;
+
+        void set(int index, int scannedSections, int occupiedSections) {
+            int previous = columns[index];
+            int previousScanned = previous & SECTION_MASK;
+            int changed = previousScanned ^ scannedSections;
+            while (changed != 0) {
+                int section = Integer.numberOfTrailingZeros(changed);
+                scannedColumns[section] += (scannedSections & (1 << section)) != 0 ? 1 : -1;
+                changed &= changed - 1;
+            }
+            if ((previous >>> SECTION_MASK_BITS) != 0) {
+                occupiedColumns--;
+            }
+            if (occupiedSections != 0) {
+                occupiedColumns++;
+            }
+            columns[index] = (scannedSections & SECTION_MASK) | (occupiedSections << SECTION_MASK_BITS);
+        }
+
+        int get(int index) {
+            return columns[index];
+        }
+
+        boolean isKnownEmpty(int sectionRange) {
+            if (occupiedColumns != 0) {
+                return false;
+            }
+            for (int range = sectionRange; range != 0; range &= range - 1) {
+                if (scannedColumns[Integer.numberOfTrailingZeros(range)] != COLUMNS) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package dev.rocketsheep.plugin.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped file holding the container index for a 32x32 region of chunk columns.
+ *
+ * Layout (all ints big-endian):
+ * <pre>
+ *   header   64 bytes: magic, version, region x, region z, flags, data end, ..., header CRC32
+ *   table    1024 slots of 16 bytes: record offset, capacity, length, record CRC32
+ *   records  per column: scanned-section mask, container count, run stamp (long), local positions
+ * </pre>
+ * A local position packs x and z within the chunk (5 bits each) and y (9 bits).
+ *
+ * The run stamp identifies the {@link RegionStore} that wrote the record. Blocks may
+ * have changed while no store was tracking the world, so a record from an earlier run
+ * is read back with no sections marked scanned: its positions are still checked and
+ * kept, but every section is scanned again the first time a query reaches it.
+ *
+ * Columns are written in place when their record fits its slot's capacity, otherwise
+ * appended with some headroom, so a write-back only touches the columns that changed.
+ * The open flag is set while the file is in use; a file still flagged open (the
+ * server stopped without closing it) or with a bad header is discarded, and a record
+ * with a bad checksum is dropped so its column is rescanned.
+ */
+final class RegionFile implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(RegionFile.class.getName());
+
+    static final int REGION_BITS = 5;
+    static final int REGION_MASK = (1 << REGION_BITS) - 1;
+
+    private static final int MAGIC = 0x41444958; // "ADIX"
+    private static final int VERSION = 2;
+
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_REGION_X = 8;
+    private static final int H_REGION_Z = 12;
+    private static final int H_FLAGS = 16;
+    private static final int H_DATA_END = 20;
+    private static final int H_CRC = 60;
+    private static final int HEADER_SIZE = 64;
+
+    private static final int SLOTS = 1 << (2 * REGION_BITS);
+    private static final int SLOT_SIZE = 16;
+    private static final int TABLE_END = HEADER_SIZE + SLOTS * SLOT_SIZE;
+    private static final int RECORD_HEADER = 16;
+    private static final int INITIAL_DATA = 64 * 1024;
+
+    private static final int FLAG_OPEN = 1;
+
+    private final Path path;
+    private final int regionX;
+    private final int regionZ;
+    private final long run;
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer buffer;
+    private int dataEnd;
+
+    private RegionFile(Path path, int regionX, int regionZ, long run, FileChannel channel) {
+        this.path = path;
+        this.regionX = regionX;
+        this.regionZ = regionZ;
+        this.run = run;
+        this.channel = channel;
+    }
+
+    /**
+     * @param run Stamp of the current run, written with every record
+     */
+    static RegionFile open(Path path, int regionX, int regionZ, long run) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        RegionFile file = new RegionFile(path, regionX, regionZ, run, channel);
+        try {
+            file.init();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return file;
+    }
+
+    private void init() throws IOException {
+        long size = channel.size();
+        if (size >= TABLE_END && size <= Integer.MAX_VALUE) {
+            map((int) size);
+            String problem = checkHeader();
+            if (problem == null) {
+                dataEnd = buffer.getInt(H_DATA_END);
+            } else {
+                LOGGER.info("Discarding container index " + path + ": " + problem);
+                reset();
+            }
+        } else {
+            reset();
+        }
+
+        buffer.putInt(H_FLAGS, FLAG_OPEN);
+        writeHeader();
+        buffer.force();
+    }
+
+    /**
+     * Reads a column's record. A record from an earlier run comes back with no sections
+     * marked scanned.
+     *
+     * @return The column (marked unverified), or null if there is no usable record
+     */
+    synchronized ChunkColumn read(int chunkX, int chunkZ) {
+        int slot = slotOffset(chunkX, chunkZ);
+        int offset = buffer.getInt(slot);
+        if (offset == 0) {
+            return null;
+        }
+        int capacity = buffer.getInt(slot + 4);
+        int length = buffer.getInt(slot + 8);
+        if (offset < TABLE_END || length < RECORD_HEADER || length > capacity || offset + capacity > dataEnd
+                || checksum(offset, length) != buffer.getInt(slot + 12)) {
+            LOGGER.info("Dropping corrupt container index record for chunk " + chunkX + ", " + chunkZ + " in " + path);
+            clearSlot(slot);
+            return null;
+        }
+
+        int count = buffer.getInt(offset + 4);
+        if (count < 0 || RECORD_HEADER + count * 4 != length) {
+            clearSlot(slot);
+            return null;
+        }
+
+        ChunkColumn column = new ChunkColumn();
+        column.scannedSections = buffer.getLong(offset + 8) == run ? buffer.getInt(offset) : 0;
+        int baseX = chunkX << ChunkMath.CHUNK_BITS;
+        int baseZ = chunkZ << ChunkMath.CHUNK_BITS;
+        for (int i = 0; i < count; i++) {
+            int local = buffer.getInt(offset + RECORD_HEADER + i * 4);
+            column.add(ChunkMath.pack(baseX + (local & ChunkMath.CHUNK_MASK), local >>> 10,
+                baseZ + ((local >>> 5) & ChunkMath.CHUNK_MASK)));
+        }
+        column.modified = false;
+        column.unverified = true;
+        return column;
+    }
+
+    /**
+     * Writes a column's record: its scanned sections and its container positions, plus
+     * any positions still waiting to be re-checked (they are verified on the next load).
+     */
+    synchronized void write(int chunkX, int chunkZ, ChunkColumn column) throws IOException {
+        int slot = slotOffset(chunkX, chunkZ);
+        if (column.scannedSections == 0) {
+            clearSlot(slot);
+            return;
+        }
+
+        int count = column.size + column.dirtySize;
+        int length = RECORD_HEADER + count * 4;
+        int offset = buffer.getInt(slot);
+        int capacity = buffer.getInt(slot + 4);
+        if (offset == 0 || capacity < length) {
+            // Leave room to grow so the next write-back can usually stay in place
+            capacity = Math.max(64, (length + length / 2 + 15) & ~15);
+            offset = allocate(capacity);
+        }
+
+        buffer.putInt(offset, column.scannedSections);
+        buffer.putLong(offset + 8, run);
+        int written = 0;
+        for (int i = 0; i < column.size; i++) {
+            buffer.putInt(offset + RECORD_HEADER + 4 * written++, localPosition(column.positions[i]));
+        }
+        for (int i = 0; i < column.dirtySize; i++) {
+            if (column.isScanned(ChunkMath.unpackY(column.dirty[i]) >> ChunkMath.CHUNK_BITS)) {
+                buffer.putInt(offset + RECORD_HEADER + 4 * written++, localPosition(column.dirty[i]));
+            }
+        }
+        buffer.putInt(offset + 4, written);
+        length = RECORD_HEADER + written * 4;
+
+        buffer.putInt(slot, offset);
+        buffer.putInt(slot + 4, capacity);
+        buffer.putInt(slot + 8, length);
+        buffer.putInt(slot + 12, checksum(offset, length));
+    }
+
+    /**
+     * Flushes pending writes to disk.
+     */
+    synchronized void force() {
+        buffer.force();
+    }
+
+    /**
+     * Clears the open flag and flushes, marking the file as cleanly closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.putInt(H_FLAGS, 0);
+        writeHeader();
+        buffer.force();
+        channel.close();
+    }
+
+    private String checkHeader() {
+        if (buffer.getInt(H_MAGIC) != MAGIC) {
+            return "not an index file";
+        }
+        if (buffer.getInt(H_VERSION) != VERSION) {
+            return "version " + buffer.getInt(H_VERSION) + ", expected " + VERSION;
+        }
+        if (buffer.getInt(H_REGION_X) != regionX || buffer.getInt(H_REGION_Z) != regionZ) {
+            return "region mismatch";
+        }
+        if (checksum(0, H_CRC) != buffer.getInt(H_CRC)) {
+            return "header checksum mismatch";
+        }
+        if ((buffer.getInt(H_FLAGS) & FLAG_OPEN) != 0) {
+            return "not closed cleanly";
+        }
+        int end = buffer.getInt(H_DATA_END);
+        if (end < TABLE_END || end > buffer.capacity()) {
+            return "bad data end";
+        }
+        return null;
+    }
+
+    private void reset() throws IOException {
+        // Clear the header and slot table in place; a mapped file can't be truncated on every platform
+        if (buffer == null || buffer.capacity() < TABLE_END + INITIAL_DATA) {
+            map(TABLE_END + INITIAL_DATA);
+        }
+        for (int i = 0; i < TABLE_END; i += 4) {
+            buffer.putInt(i, 0);
+        }
+        dataEnd = TABLE_END;
+        buffer.putInt(H_MAGIC, MAGIC);
+        buffer.putInt(H_VERSION, VERSION);
+        buffer.putInt(H_REGION_X, regionX);
+        buffer.putInt(H_REGION_Z, regionZ);
+    }
+
+    private int allocate(int capacity) throws IOException {
+        long end = (long) dataEnd + capacity;
+        if (end > Integer.MAX_VALUE) {
+            throw new IOException("Container index region file is full: " + path);
+        }
+        if (end > buffer.capacity()) {
+            map((int) Math.min(Integer.MAX_VALUE, Math.max(end, 2L * buffer.capacity())));
+        }
+        int offset = dataEnd;
+        dataEnd = (int) end;
+        writeHeader();
+        return offset;
+    }
+
+    private void map(int size) throws IOException {
+        // Mapping past the end of the file extends it with zeros
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void writeHeader() {
+        buffer.putInt(H_DATA_END, dataEnd);
+        buffer.putInt(H_CRC, checksum(0, H_CRC));
+    }
+
+    private void clearSlot(int slot) {
+        buffer.putInt(slot, 0);
+        buffer.putInt(slot + 4, 0);
+        buffer.putInt(slot + 8, 0);
+        buffer.putInt(slot + 12, 0);
+    }
+
+    private int checksum(int offset, int length) {
+        crc.reset();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static int slotOffset(int chunkX, int chunkZ) {
+        return HEADER_SIZE + (((chunkZ & REGION_MASK) << REGION_BITS) | (chunkX & REGION_MASK)) * SLOT_SIZE;
+    }
+
+    private static int localPosition(long packed) {
+        return (ChunkMath.unpackY(packed) << 10)
+            | ((ChunkMath.unpackZ(packed) & ChunkMath.CHUNK_MASK) << 5)
+            | (ChunkMath.unpackX(packed) & ChunkMath.CHUNK_MASK);
+    }
+}
@@ -0,0 +1,119 @@
+package dev.rocketsheep.plugin.index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * On-disk container index for one world: a directory of {@link RegionFile}s, each
+ * covering 32x32 chunk columns, opened on first use.
+ *
+ * I/O errors are logged and treated as "nothing stored", so the index falls back to
+ * scanning; a region that fails to open is not retried until the store is reopened.
+ *
+ * Each store stamps the records it writes with a random run stamp. Columns it wrote
+ * itself are trusted when their chunks load again, since nothing changes an unloaded
+ * chunk and the index sees every block change of a loaded one. Columns from an earlier
+ * run have their sections scanned again (see {@link RegionFile}).
+ */
+public class RegionStore {
+
+    private static final Logger LOGGER = Logger.getLogger(RegionStore.class.getName());
+
+    private final Path directory;
+    private final long run = ThreadLocalRandom.current().nextLong();
+    private final Map<Long, RegionFile> regions = new ConcurrentHashMap<>();
+    // Regions that failed to open, so they aren't retried for every chunk
+    private final Set<Long> failed = ConcurrentHashMap.newKeySet();
+
+    public RegionStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads a stored chunk column.
+     *
+     * @return The column, marked unverified, or null if none is stored
+     */
+    ChunkColumn load(int chunkX, int chunkZ) {
+        RegionFile region = region(chunkX, chunkZ, false);
+        return region != null ? region.read(chunkX, chunkZ) : null;
+    }
+
+    /**
+     * Writes a chunk column back to its region file.
+     */
+    void save(int chunkX, int chunkZ, ChunkColumn column) {
+        RegionFile region = region(chunkX, chunkZ, column.scannedSections != 0);
+        if (region == null) {
+            return;
+        }
+        try {
+            region.write(chunkX, chunkZ, column);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write container index for chunk " + chunkX + ", " + chunkZ, e);
+        }
+    }
+
+    /**
+     * Flushes every open region file to disk.
+     */
+    void force() {
+        for (RegionFile region : regions.values()) {
+            region.force();
+        }
+    }
+
+    /**
+     * Closes every region file, marking them as cleanly closed.
+     */
+    public void close() {
+        for (RegionFile region : regions.values()) {
+            try {
+                region.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not close container index file", e);
+            }
+        }
+        regions.clear();
+    }
+
+    /**
+     * @param create Whether to create the region file if it doesn't exist yet
+     */
+    private RegionFile region(int chunkX, int chunkZ, boolean create) {
+        int regionX = chunkX >> RegionFile.REGION_BITS;
+        int regionZ = chunkZ >> RegionFile.REGION_BITS;
+        long key = ChunkMath.chunkKey(regionX, regionZ);
+
+        RegionFile region = regions.get(key);
+        if (region != null || failed.contains(key)) {
+            return region;
+        }
+        synchronized (this) {
+            region = regions.get(key);
+            if (region != null || failed.contains(key)) {
+                return region;
+            }
+            Path file = directory.resolve("r." + regionX + "." + regionZ + ".adx");
+            if (!create && !Files.exists(file)) {
+                return null;
+            }
+            try {
+                Files.createDirectories(directory);
+                region = RegionFile.open(file, regionX, regionZ, run);
+                regions.put(key, region);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not open container index file " + file, e);
+                failed.add(key);
+            }
+            return region;
+        }
+    }
+}
@@ -10,6 +10,9 @@ import com.hypixel.hytale.server.core.universe.world.meta.BlockState;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.hypixel.hytale.component.Ref;
 import dev.rocketsheep.plugin.AreaDepositService;
+import dev.rocketsheep.plugin.AreaDepositorBlock;
+import dev.rocketsheep.plugin.config.AreaDepositConfig;
+import dev.rocketsheep.plugin.deposit.DepositTrigger;
 
 /**
  * Listens for player interact events and triggers Area Deposit when the
@@ -17,9 +20,6 @@ import dev.rocketsheep.plugin.AreaDepositService;
  */
 public class BlockUseListener {
 
-    private static final String DEPOSITOR_BLOCK_ID = "RocketSheep_Area_Depositor";
-    private static final double DEFAULT_RADIUS = 8.0;
-
     /**
      * Handles the PlayerInteractEvent.
      * When a player uses the Area Depositor block, triggers the area deposit functionality.
@@ -30,8 +30,10 @@ public class BlockUseListener {
             return;
         }
 
-        // DEBUG: Send chat message to verify event is firing
-        player.sendMessage(Message.raw("[DEBUG] PlayerInteractEvent: " + event.getActionType()));
+        boolean debug = AreaDepositConfig.get().isDebugEnabled();
+        if (debug) {
+            player.sendMessage(Message.raw("[DEBUG] PlayerInteractEvent: " + event.getActionType()));
+        }
 
         // Only handle Use interactions
         if (event.getActionType() != InteractionType.Use) {
@@ -41,7 +43,9 @@ public class BlockUseListener {
         // Get target block position
         Vector3i targetBlock = event.getTargetBlock();
         if (targetBlock == null) {
-            player.sendMessage(Message.raw("[DEBUG] No target block"));
+            if (debug) {
+                player.sendMessage(Message.raw("[DEBUG] No target block"));
+            }
             return;
         }
 
@@ -53,27 +57,32 @@ public class BlockUseListener {
 
         World world = playerRef.getStore().getExternalData().getWorld();
         if (world == null) {
-            player.sendMessage(Message.raw("[DEBUG] No world"));
+            if (debug) {
+                player.sendMessage(Message.raw("[DEBUG] No world"));
+            }
             return;
         }
 
         // Get block state at target position
         BlockState blockState = world.getState(targetBlock.x, targetBlock.y, targetBlock.z, false);
         if (blockState == null) {
-            player.sendMessage(Message.raw("[DEBUG] No block state"));
+            if (debug) {
+                player.sendMessage(Message.raw("[DEBUG] No block state"));
+            }
             return;
         }
 
-        String blockId = blockState.getBlockType().getId();
-        player.sendMessage(Message.raw("[DEBUG] Block: " + blockId));
+        if (debug) {
+            player.sendMessage(Message.raw("[DEBUG] Block: " + blockState.getBlockType().getId()));
+        }
 
         // Check if the interacted block is our Area Depositor
-        if (!DEPOSITOR_BLOCK_ID.equals(blockId)) {
+        if (!AreaDepositorBlock.matches(blockState.getBlockType())) {
             return;
         }
 
         // Execute the deposit logic
-        AreaDepositService.executeDeposit(playerRef, DEFAULT_RADIUS);
+        AreaDepositService.executeDeposit(playerRef, AreaDepositorBlock.RADIUS, DepositTrigger.BLOCK);
 
         // Cancel the default interaction
         event.setCancelled(true);
@@ -0,0 +1,79 @@
+package dev.rocketsheep.plugin.listeners;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+import com.hypixel.hytale.server.core.universe.world.events.AddWorldEvent;
+import com.hypixel.hytale.server.core.universe.world.events.ChunkPreLoadProcessEvent;
+import com.hypixel.hytale.server.core.universe.world.events.ChunkUnloadEvent;
+import com.hypixel.hytale.server.core.universe.world.events.RemoveWorldEvent;
+import dev.rocketsheep.plugin.AreaDepositService;
+
+/**
+ * Listens for chunk and world lifecycle events, creating and closing each world's
+ * deposit service and keeping its indexes in sync.
+ */
+public class WorldIndexListener {
+
+    /**
+     * Creates the deposit service for a world as it is added.
+     */
+    public static void onWorldAdded(AddWorldEvent event) {
+        if (event.getWorld() != null) {
+            AreaDepositService.onWorldAdded(event.getWorld());
+        }
+    }
+
+    /**
+     * Replaces any stale entries for a chunk that is being (re)loaded with the stored
+     * index for it, if there is one, and marks the depositor networks reaching into it
+     * for rebuilding. The indexes belong to the world thread, so the work is handed
+     * over to it.
+     */
+    public static void onChunkLoad(ChunkPreLoadProcessEvent event) {
+        WorldChunk chunk = event.getChunk();
+        if (chunk == null || chunk.getWorld() == null) {
+            return;
+        }
+        World world = chunk.getWorld();
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
+        world.execute(() -> {
+            // Looked up on the world thread, so a service closed in between isn't touched
+            AreaDepositService service = AreaDepositService.getIfPresent(world);
+            if (service != null) {
+                service.getContainerIndex().onChunkLoaded(chunkX, chunkZ);
+                service.getNetworks().onChunkLoaded(chunkX, chunkZ);
+            }
+        });
+    }
+
+    /**
+     * Frees the entries for a chunk that is being unloaded. Changed index entries are
+     * written back by {@link dev.rocketsheep.plugin.systems.IndexWriteBackSystem}.
+     */
+    public static void onChunkUnload(ChunkUnloadEvent event) {
+        WorldChunk chunk = event.getChunk();
+        if (chunk == null || chunk.getWorld() == null) {
+            return;
+        }
+        World world = chunk.getWorld();
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
+        world.execute(() -> {
+            AreaDepositService service = AreaDepositService.getIfPresent(world);
+            if (service != null) {
+                service.getContainerIndex().onChunkUnloaded(chunkX, chunkZ);
+                service.getItemIndex().untrackChunk(chunkX, chunkZ);
+                service.getNetworks().onChunkUnloaded(chunkX, chunkZ);
+            }
+        });
+    }
+
+    /**
+     * Closes the world's deposit service, writing back its index and dropping its
+     * caches and pending jobs.
+     */
+    public static void onWorldRemoved(RemoveWorldEvent event) {
+        AreaDepositService.onWorldRemoved(event.getWorld());
+    }
+}
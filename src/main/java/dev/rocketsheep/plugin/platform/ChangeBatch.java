@@ -0,0 +1,87 @@
+package dev.rocketsheep.plugin.platform;
+
+import java.util.Arrays;
+
+/**
+ * Defers and merges container change notifications while a batch is open.
+ *
+ * A deposit step can move many stacks into the same container, and every move fires
+ * the container's change event. Inside a batch each {@link Listener} is queued at most
+ * once, and runs when the outermost batch ends, so a step notifies each listener once
+ * per changed container instead of once per move. Outside a batch listeners run
+ * immediately.
+ *
+ * Not thread-safe: use one batch per thread (the thread that changes the containers).
+ */
+public final class ChangeBatch {
+
+    private int depth;
+    private Listener[] pending = new Listener[16];
+    private int pendingCount;
+
+    /**
+     * Opens a batch. Batches nest; notifications are delivered when the outermost one ends.
+     */
+    public void begin() {
+        depth++;
+    }
+
+    /**
+     * Closes a batch, delivering the queued notifications if it was the outermost one.
+     * If a listener throws, the notifications after it are dropped and the exception
+     * propagates, leaving the batch closed and empty.
+     */
+    public void end() {
+        if (--depth > 0) {
+            return;
+        }
+        depth = 0;
+        try {
+            // Listeners may change containers themselves; those notifications run immediately
+            for (int i = 0; i < pendingCount; i++) {
+                Listener listener = pending[i];
+                pending[i] = null;
+                listener.queued = false;
+                listener.target.run();
+            }
+        } finally {
+            for (int i = 0; i < pendingCount; i++) {
+                if (pending[i] != null) {
+                    pending[i].queued = false;
+                    pending[i] = null;
+                }
+            }
+            pendingCount = 0;
+        }
+    }
+
+    /**
+     * Delivers a change notification now, or queues it if a batch is open.
+     */
+    public void fire(Listener listener) {
+        if (depth == 0) {
+            listener.target.run();
+            return;
+        }
+        if (listener.queued) {
+            return;
+        }
+        listener.queued = true;
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        }
+        pending[pendingCount++] = listener;
+    }
+
+    /**
+     * A change listener registered on one container, with its queued flag.
+     */
+    public static final class Listener {
+        final Runnable target;
+        boolean queued;
+
+        public Listener(Runnable target) {
+            this.target = target;
+        }
+    }
+}
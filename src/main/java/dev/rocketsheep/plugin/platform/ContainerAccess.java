@@ -0,0 +1,62 @@
+package dev.rocketsheep.plugin.platform;
+
+/**
+ * The item container operations the deposit code needs, abstracted so the same
+ * engine runs against live server containers and against simulated ones.
+ *
+ * @param <C> The container type
+ */
+public interface ContainerAccess<C> {
+
+    /**
+     * Handle returned by {@link #onChange}, used to stop listening.
+     */
+    interface Subscription {
+        void cancel();
+    }
+
+    int capacity(C container);
+
+    /**
+     * @return The item id in a slot, or null if the slot is empty
+     */
+    String itemId(C container, int slot);
+
+    int quantity(C container, int slot);
+
+    int maxStack(C container, int slot);
+
+    /**
+     * Moves up to {@code quantity} items out of a slot into another container, which
+     * places them the way a quick stack would (existing stacks first, then empty slots).
+     *
+     * @return The number of items actually moved
+     */
+    int moveFromSlot(C from, int slot, int quantity, C to);
+
+    /**
+     * Runs a vanilla quick stack from one container into another.
+     *
+     * @return The number of transfer operations performed
+     */
+    int quickStack(C from, C to);
+
+    /**
+     * Calls {@code listener} whenever the container's contents change. While a batch is
+     * open on the calling thread the call is deferred to the end of the batch, and
+     * repeated changes to the same container are merged into one call.
+     */
+    Subscription onChange(C container, Runnable listener);
+
+    /**
+     * Opens a change batch on the calling thread (see {@link ChangeBatch}). Every call
+     * must be paired with {@link #endBatch}, normally in a finally block.
+     */
+    void beginBatch();
+
+    /**
+     * Closes the change batch opened by {@link #beginBatch}, delivering the merged
+     * change notifications.
+     */
+    void endBatch();
+}
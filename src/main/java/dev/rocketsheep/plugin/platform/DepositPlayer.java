@@ -0,0 +1,22 @@
+package dev.rocketsheep.plugin.platform;
+
+/**
+ * The player operations the deposit code needs. Implementations must define
+ * equals/hashCode by player identity, since they are used as throttle keys.
+ *
+ * @param <C> The container type of the player's storage
+ */
+public interface DepositPlayer<C> {
+
+    /**
+     * @return false once the player has left or their entity was removed
+     */
+    boolean isValid();
+
+    /**
+     * @return The player's storage container, or null if it can't be accessed
+     */
+    C getStorage();
+
+    void sendMessage(String message);
+}
@@ -0,0 +1,79 @@
+package dev.rocketsheep.plugin.platform;
+
+import com.hypixel.hytale.event.EventRegistration;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.inventory.transaction.ListTransaction;
+
+/**
+ * {@link ContainerAccess} for live server item containers. Must be used on the
+ * world thread that owns the containers.
+ *
+ * The instance is shared by every world, so change batches are kept per thread: a
+ * container's change events fire on the thread of the world that owns it.
+ */
+public final class HytaleContainerAccess implements ContainerAccess<ItemContainer> {
+
+    public static final HytaleContainerAccess INSTANCE = new HytaleContainerAccess();
+
+    private static final ThreadLocal<ChangeBatch> BATCHES = ThreadLocal.withInitial(ChangeBatch::new);
+
+    private HytaleContainerAccess() {
+    }
+
+    @Override
+    public int capacity(ItemContainer container) {
+        return container.getCapacity();
+    }
+
+    @Override
+    public String itemId(ItemContainer container, int slot) {
+        ItemStack stack = container.getItemStack((short) slot);
+        return stack == null || stack.isEmpty() ? null : stack.getItemId();
+    }
+
+    @Override
+    public int quantity(ItemContainer container, int slot) {
+        ItemStack stack = container.getItemStack((short) slot);
+        return stack == null || stack.isEmpty() ? 0 : stack.getQuantity();
+    }
+
+    @Override
+    public int maxStack(ItemContainer container, int slot) {
+        ItemStack stack = container.getItemStack((short) slot);
+        return stack == null || stack.isEmpty() ? 0 : stack.getItem().getMaxStack();
+    }
+
+    @Override
+    public int moveFromSlot(ItemContainer from, int slot, int quantity, ItemContainer to) {
+        int before = quantity(from, slot);
+        if (before == 0) {
+            return 0;
+        }
+        from.moveItemStackFromSlot((short) slot, Math.min(before, quantity), to);
+        return before - quantity(from, slot);
+    }
+
+    @Override
+    public int quickStack(ItemContainer from, ItemContainer to) {
+        ListTransaction<?> transaction = from.quickStackTo(to);
+        return transaction.succeeded() ? transaction.size() : 0;
+    }
+
+    @Override
+    public Subscription onChange(ItemContainer container, Runnable listener) {
+        ChangeBatch.Listener batched = new ChangeBatch.Listener(listener);
+        EventRegistration registration = container.registerChangeEvent(event -> BATCHES.get().fire(batched));
+        return registration::unregister;
+    }
+
+    @Override
+    public void beginBatch() {
+        BATCHES.get().begin();
+    }
+
+    @Override
+    public void endBatch() {
+        BATCHES.get().end();
+    }
+}
@@ -0,0 +1,65 @@
+package dev.rocketsheep.plugin.platform;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.inventory.Inventory;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+/**
+ * {@link DepositPlayer} backed by a player entity reference. The Player component is
+ * looked up on every call, so a long-running deposit never holds a stale component.
+ */
+public final class HytaleDepositPlayer implements DepositPlayer<ItemContainer> {
+
+    private final Ref<EntityStore> entityRef;
+
+    public HytaleDepositPlayer(Ref<EntityStore> entityRef) {
+        this.entityRef = entityRef;
+    }
+
+    public Ref<EntityStore> getEntityRef() {
+        return entityRef;
+    }
+
+    @Override
+    public boolean isValid() {
+        return entityRef.isValid();
+    }
+
+    @Override
+    public ItemContainer getStorage() {
+        Player player = getPlayer();
+        if (player == null) {
+            return null;
+        }
+        Inventory playerInventory = player.getInventory();
+        return playerInventory != null ? playerInventory.getStorage() : null;
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        Player player = getPlayer();
+        if (player != null) {
+            player.sendMessage(Message.raw(message));
+        }
+    }
+
+    private Player getPlayer() {
+        if (!entityRef.isValid()) {
+            return null;
+        }
+        return entityRef.getStore().getComponent(entityRef, Player.getComponentType());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof HytaleDepositPlayer && ((HytaleDepositPlayer) other).entityRef.equals(entityRef);
+    }
+
+    @Override
+    public int hashCode() {
+        return entityRef.hashCode();
+    }
+}
@@ -0,0 +1,69 @@
+package dev.rocketsheep.plugin.search;
+
+import java.util.Arrays;
+
+/**
+ * Reusable result buffer for container searches: parallel arrays of packed block
+ * positions and containers. Grows as needed and is cleared, not reallocated, between
+ * queries, so a steady-state search allocates nothing.
+ *
+ * @param <C> The container type
+ */
+public class ContainerHits<C> {
+
+    private long[] positions;
+    private Object[] containers;
+    private int size;
+
+    public ContainerHits() {
+        this(32);
+    }
+
+    public ContainerHits(int initialCapacity) {
+        this.positions = new long[initialCapacity];
+        this.containers = new Object[initialCapacity];
+    }
+
+    public void clear() {
+        // Drop container references so the buffer doesn't pin them
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Drops every entry from {@code newSize} on.
+     */
+    public void truncate(int newSize) {
+        if (newSize < size) {
+            Arrays.fill(containers, newSize, size, null);
+            size = newSize;
+        }
+    }
+
+    public void add(long packedPosition, C container) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        positions[size] = packedPosition;
+        containers[size] = container;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long position(int index) {
+        return positions[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public C container(int index) {
+        return (C) containers[index];
+    }
+}
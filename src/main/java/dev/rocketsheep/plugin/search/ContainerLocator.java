@@ -0,0 +1,16 @@
+package dev.rocketsheep.plugin.search;
+
+/**
+ * Strategy for finding the containers within a radius of a point. Every locator must
+ * report the same set of containers for the same world; they differ only in cost.
+ *
+ * @param <C> The container type
+ */
+public interface ContainerLocator<C> {
+
+    /**
+     * Starts a search of the sphere around a center position. Containers are reported
+     * once each, by cell-center distance, in no particular order.
+     */
+    ContainerSearch<C> start(double centerX, double centerY, double centerZ, double radius);
+}
@@ -0,0 +1,21 @@
+package dev.rocketsheep.plugin.search;
+
+/**
+ * A container search in progress, run a bounded slice at a time so a deposit job can
+ * spread a large search over several ticks.
+ *
+ * Must only be used from the world thread.
+ *
+ * @param <C> The container type
+ */
+public interface ContainerSearch<C> {
+
+    /**
+     * Runs the next slice of the search, appending the containers it finds to {@code out}.
+     *
+     * @return The number of blocks examined
+     */
+    int step(ContainerHits<C> out);
+
+    boolean isDone();
+}
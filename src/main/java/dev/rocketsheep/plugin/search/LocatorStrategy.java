@@ -0,0 +1,11 @@
+package dev.rocketsheep.plugin.search;
+
+/**
+ * Which {@link ContainerLocator} sphere searches use.
+ */
+public enum LocatorStrategy {
+    /** Look up the per-chunk container index, scanning each section only the first time. */
+    INDEXED,
+    /** Scan every block in the sphere. The reference the index is checked against. */
+    SCAN
+}
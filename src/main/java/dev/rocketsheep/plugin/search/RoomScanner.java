@@ -0,0 +1,198 @@
+package dev.rocketsheep.plugin.search;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+
+/**
+ * Reachability-bounded container search: a breadth-first flood fill from a start block
+ * through passable blocks, up to a radius, that collects the containers bordering the
+ * space it reaches. Unlike the sphere it doesn't reach through walls and floors, and in
+ * an enclosed base it only touches the air inside.
+ *
+ * The fill is resumable, so a deposit job can spread it over several steps. Cells are
+ * tracked as offsets from the start in a bitset covering the radius's bounding cube,
+ * and the frontier is a ring buffer of packed offsets, so the fill does no boxing and
+ * allocates nothing per cell.
+ *
+ * Must only be used from the world thread.
+ *
+ * @param <C> The container type produced by the section access
+ */
+public class RoomScanner<C> implements ContainerSearch<C> {
+
+    /** Largest radius the fill accepts; larger requests are clamped to it. */
+    public static final int MAX_RADIUS = 64;
+
+    /** Cells {@link #step(ContainerHits)} expands per call. */
+    public static final int CELLS_PER_STEP = 1024;
+
+    // Offsets are packed as three 10-bit fields: x | z << 10 | y << 20
+    private static final int FIELD_BITS = 10;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    private static final int[] DX = {1, -1, 0, 0, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 0, 0, 1, -1};
+
+    private final SectionAccess<C> access;
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+    private final double centerX;
+    private final double centerY;
+    private final double centerZ;
+    private final double radiusSq;
+    private final int radiusInt;
+    private final int side;
+
+    // One bit per cell of the bounding cube, set once the cell has been examined
+    private final long[] seen;
+
+    // Frontier of reached cells whose neighbors haven't been examined yet
+    private int[] queue = new int[256];
+    private int head;
+    private int tail;
+
+    /**
+     * Starts a fill at a block. The start block counts as reached even if it is solid,
+     * so a fill from an Area Depositor block or a player standing in a slab still runs.
+     *
+     * @param startX The block to start from
+     * @param centerX The center of the radius, usually the start block's center
+     */
+    public RoomScanner(SectionAccess<C> access, int startX, int startY, int startZ,
+                       double centerX, double centerY, double centerZ, double radius) {
+        radius = Math.min(radius, MAX_RADIUS);
+        this.access = access;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+        this.radiusSq = radius * radius;
+        this.radiusInt = (int) Math.ceil(radius) + 1;
+        this.side = 2 * radiusInt + 1;
+        this.originX = startX - radiusInt;
+        this.originY = startY - radiusInt;
+        this.originZ = startZ - radiusInt;
+        this.seen = new long[(int) (((long) side * side * side + 63) >>> 6)];
+
+        if (startY >= 0 && startY < ChunkMath.WORLD_HEIGHT) {
+            int start = pack(radiusInt, radiusInt, radiusInt);
+            mark(start);
+            enqueue(start);
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        return head == tail;
+    }
+
+    /**
+     * Expands the fill by {@link #CELLS_PER_STEP} reached cells.
+     */
+    @Override
+    public int step(ContainerHits<C> out) {
+        return step(CELLS_PER_STEP, out);
+    }
+
+    /**
+     * Expands the fill by up to {@code maxCells} reached cells, appending the containers
+     * found next to them to {@code out}. Each container is reported once.
+     *
+     * @return The number of blocks examined
+     */
+    public int step(int maxCells, ContainerHits<C> out) {
+        access.reset();
+        int examined = 0;
+        int mask = queue.length - 1;
+
+        for (int processed = 0; processed < maxCells && head != tail; processed++) {
+            int cell = queue[head];
+            head = (head + 1) & mask;
+            int cellX = cell & FIELD_MASK;
+            int cellZ = (cell >>> FIELD_BITS) & FIELD_MASK;
+            int cellY = cell >>> (2 * FIELD_BITS);
+
+            for (int direction = 0; direction < DX.length; direction++) {
+                int nx = cellX + DX[direction];
+                int ny = cellY + DY[direction];
+                int nz = cellZ + DZ[direction];
+                if (nx < 0 || ny < 0 || nz < 0 || nx >= side || ny >= side || nz >= side) {
+                    continue;
+                }
+                int neighbor = pack(nx, ny, nz);
+                if (!mark(neighbor)) {
+                    continue;
+                }
+
+                int x = originX + nx;
+                int y = originY + ny;
+                int z = originZ + nz;
+                if (y < 0 || y >= ChunkMath.WORLD_HEIGHT) {
+                    continue;
+                }
+                // Same cell-center sphere test as the sphere search
+                double dx = x + 0.5 - centerX;
+                double dy = y + 0.5 - centerY;
+                double dz = z + 0.5 - centerZ;
+                if (dx * dx + dy * dy + dz * dz > radiusSq) {
+                    continue;
+                }
+
+                examined++;
+                if (access.isPassable(x, y, z)) {
+                    enqueue(neighbor);
+                    mask = queue.length - 1;
+                } else if (access.loadSection(x >> ChunkMath.CHUNK_BITS, y >> ChunkMath.CHUNK_BITS,
+                                              z >> ChunkMath.CHUNK_BITS)) {
+                    C container = access.containerAt(x, y, z);
+                    if (container != null) {
+                        out.add(ChunkMath.pack(x, y, z), container);
+                    }
+                }
+            }
+        }
+        return examined;
+    }
+
+    private int pack(int x, int y, int z) {
+        return x | (z << FIELD_BITS) | (y << (2 * FIELD_BITS));
+    }
+
+    /**
+     * Marks a cell as seen.
+     *
+     * @return false if it had already been seen
+     */
+    private boolean mark(int cell) {
+        int x = cell & FIELD_MASK;
+        int z = (cell >>> FIELD_BITS) & FIELD_MASK;
+        int y = cell >>> (2 * FIELD_BITS);
+        int bit = (y * side + z) * side + x;
+        long word = seen[bit >>> 6];
+        long flag = 1L << bit;
+        if ((word & flag) != 0) {
+            return false;
+        }
+        seen[bit >>> 6] = word | flag;
+        return true;
+    }
+
+    private void enqueue(int cell) {
+        int mask = queue.length - 1;
+        int next = (tail + 1) & mask;
+        if (next == head) {
+            // Full: unroll the ring into a buffer twice the size
+            int[] grown = new int[queue.length * 2];
+            int count = queue.length - 1;
+            for (int i = 0; i < count; i++) {
+                grown[i] = queue[(head + i) & mask];
+            }
+            queue = grown;
+            head = 0;
+            tail = count;
+            next = tail + 1;
+        }
+        queue[tail] = cell;
+        tail = next;
+    }
+}
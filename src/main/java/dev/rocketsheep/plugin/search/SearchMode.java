@@ -0,0 +1,11 @@
+package dev.rocketsheep.plugin.search;
+
+/**
+ * Which containers a deposit considers.
+ */
+public enum SearchMode {
+    /** Every container within the radius (see {@link SphereScanner}). */
+    SPHERE,
+    /** Containers bordering the space reachable through open blocks (see {@link RoomScanner}). */
+    ROOM
+}
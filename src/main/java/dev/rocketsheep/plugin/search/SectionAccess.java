@@ -0,0 +1,51 @@
+package dev.rocketsheep.plugin.search;
+
+/**
+ * Section-at-a-time block access used by the container search code.
+ *
+ * Callers select a 32-block chunk section with {@link #loadSection} and then look up
+ * containers inside it, so the chunk and section only have to be resolved once per
+ * section instead of once per block.
+ *
+ * @param <C> The container type produced by this access
+ */
+public interface SectionAccess<C> {
+
+    /**
+     * Called at the start of each query. Implementations that cache chunk references
+     * drop them here so nothing is held across ticks.
+     */
+    default void reset() {
+    }
+
+    /**
+     * Selects a chunk section for subsequent {@link #containerAt} calls.
+     *
+     * @return false if the section is unloaded or contains no blocks, in which case it
+     *         can be skipped entirely
+     */
+    boolean loadSection(int chunkX, int section, int chunkZ);
+
+    /**
+     * Checks whether a chunk is loaded. {@link #loadSection} returns false both for an
+     * unloaded chunk and for an empty section; this tells the two apart, so callers
+     * don't take an unloaded chunk for one without containers.
+     */
+    default boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return true;
+    }
+
+    /**
+     * Gets the container at a block inside the currently loaded section.
+     *
+     * @return The container, or null if the block is not a container
+     */
+    C containerAt(int x, int y, int z);
+
+    /**
+     * Checks whether a block can be moved through: air and other non-solid blocks.
+     * Unlike {@link #containerAt} this works on any block, since a flood fill crosses
+     * sections in no particular order. Blocks in unloaded chunks count as solid.
+     */
+    boolean isPassable(int x, int y, int z);
+}
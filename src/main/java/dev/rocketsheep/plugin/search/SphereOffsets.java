@@ -0,0 +1,65 @@
+package dev.rocketsheep.plugin.search;
+
+/**
+ * Precomputed integer sphere table for one radius.
+ *
+ * For every (dx, dz) column offset from the center block it stores the largest |dy|
+ * that can still reach a block within the radius, for any center inside the center
+ * block. The table is conservative; the exact squared-distance test is still applied
+ * per block, but the table lets the scan skip whole columns and clip the Y range.
+ */
+public final class SphereOffsets {
+
+    private static final int MAX_CACHED_RADIUS = 256;
+    private static final SphereOffsets[] CACHE = new SphereOffsets[MAX_CACHED_RADIUS + 1];
+
+    private final int radius;
+    private final int width;
+    private final int[] halfHeights;
+
+    private SphereOffsets(int radius) {
+        this.radius = radius;
+        this.width = 2 * radius + 1;
+        this.halfHeights = new int[width * width];
+
+        double radiusSq = (double) radius * radius;
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                // Nearest a block center in this column can get to a center in the origin block
+                double nearX = Math.max(0.0, Math.abs(dx) - 0.5);
+                double nearZ = Math.max(0.0, Math.abs(dz) - 0.5);
+                double remaining = radiusSq - nearX * nearX - nearZ * nearZ;
+
+                int halfHeight = remaining < 0.0 ? -1 : Math.min(radius, (int) Math.floor(Math.sqrt(remaining) + 0.5));
+                halfHeights[(dx + radius) * width + (dz + radius)] = halfHeight;
+            }
+        }
+    }
+
+    /**
+     * Gets the table for a radius, building and caching it on first use.
+     */
+    public static SphereOffsets forRadius(int radius) {
+        if (radius > MAX_CACHED_RADIUS) {
+            return new SphereOffsets(radius);
+        }
+        SphereOffsets offsets = CACHE[radius];
+        if (offsets == null) {
+            // Benign race: concurrent builders produce identical tables
+            offsets = new SphereOffsets(radius);
+            CACHE[radius] = offsets;
+        }
+        return offsets;
+    }
+
+    public int radius() {
+        return radius;
+    }
+
+    /**
+     * Gets the largest |dy| to visit for a column offset, or -1 if the column can be skipped.
+     */
+    public int halfHeight(int dx, int dz) {
+        return halfHeights[(dx + radius) * width + (dz + radius)];
+    }
+}
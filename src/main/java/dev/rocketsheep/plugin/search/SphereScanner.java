@@ -0,0 +1,136 @@
+package dev.rocketsheep.plugin.search;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+
+/**
+ * Brute-force container scan over a sphere, walked chunk section by chunk section.
+ *
+ * Each overlapping section is resolved once through {@link SectionAccess}; unloaded or
+ * empty sections are skipped. Inside a section the {@link SphereOffsets} table clips each
+ * column's Y range and the exact cell-center test compares squared distances, so the
+ * scan does no square roots and no allocation.
+ */
+public final class SphereScanner {
+
+    private SphereScanner() {
+    }
+
+    /**
+     * Appends every container within the radius of a center position to {@code out}.
+     *
+     * @return The number of blocks examined
+     */
+    public static <C> int scan(SectionAccess<C> access, double centerX, double centerY, double centerZ,
+                               double radius, ContainerHits<C> out) {
+        int radiusInt = (int) Math.ceil(radius);
+        int blockX = (int) Math.floor(centerX);
+        int blockZ = (int) Math.floor(centerZ);
+        int scanned = 0;
+
+        for (int chunkX = (blockX - radiusInt) >> ChunkMath.CHUNK_BITS;
+             chunkX <= (blockX + radiusInt) >> ChunkMath.CHUNK_BITS; chunkX++) {
+            for (int chunkZ = (blockZ - radiusInt) >> ChunkMath.CHUNK_BITS;
+                 chunkZ <= (blockZ + radiusInt) >> ChunkMath.CHUNK_BITS; chunkZ++) {
+                scanned += scanColumn(access, chunkX, chunkZ, centerX, centerY, centerZ, radius, out);
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Appends every container of one chunk column that lies within the radius of a center
+     * position to {@code out}, so a scan can be split into per-column slices.
+     *
+     * @return The number of blocks examined
+     */
+    public static <C> int scanColumn(SectionAccess<C> access, int chunkX, int chunkZ,
+                                     double centerX, double centerY, double centerZ,
+                                     double radius, ContainerHits<C> out) {
+        int blockX = (int) Math.floor(centerX);
+        int blockY = (int) Math.floor(centerY);
+        int blockZ = (int) Math.floor(centerZ);
+        int radiusInt = (int) Math.ceil(radius);
+        double radiusSq = radius * radius;
+
+        int minY = Math.max(0, blockY - radiusInt);
+        int maxY = Math.min(ChunkMath.WORLD_HEIGHT - 1, blockY + radiusInt);
+        int x0 = Math.max(blockX - radiusInt, chunkX << ChunkMath.CHUNK_BITS);
+        int x1 = Math.min(blockX + radiusInt, (chunkX << ChunkMath.CHUNK_BITS) + ChunkMath.CHUNK_MASK);
+        int z0 = Math.max(blockZ - radiusInt, chunkZ << ChunkMath.CHUNK_BITS);
+        int z1 = Math.min(blockZ + radiusInt, (chunkZ << ChunkMath.CHUNK_BITS) + ChunkMath.CHUNK_MASK);
+        if (minY > maxY || x0 > x1 || z0 > z1) {
+            return 0;
+        }
+
+        SphereOffsets offsets = SphereOffsets.forRadius(radiusInt);
+        int scanned = 0;
+
+        for (int section = minY >> ChunkMath.CHUNK_BITS; section <= maxY >> ChunkMath.CHUNK_BITS; section++) {
+            if (!access.loadSection(chunkX, section, chunkZ)) {
+                continue;
+            }
+            int sectionY0 = Math.max(minY, section << ChunkMath.CHUNK_BITS);
+            int sectionY1 = Math.min(maxY, (section << ChunkMath.CHUNK_BITS) + ChunkMath.CHUNK_MASK);
+
+            for (int x = x0; x <= x1; x++) {
+                double dx = x + 0.5 - centerX;
+                double dxSq = dx * dx;
+
+                for (int z = z0; z <= z1; z++) {
+                    int halfHeight = offsets.halfHeight(x - blockX, z - blockZ);
+                    if (halfHeight < 0) {
+                        continue;
+                    }
+                    double dz = z + 0.5 - centerZ;
+                    double dxzSq = dxSq + dz * dz;
+                    if (dxzSq > radiusSq) {
+                        continue;
+                    }
+
+                    int y0 = Math.max(sectionY0, blockY - halfHeight);
+                    int y1 = Math.min(sectionY1, blockY + halfHeight);
+                    for (int y = y0; y <= y1; y++) {
+                        double dy = y + 0.5 - centerY;
+                        if (dxzSq + dy * dy > radiusSq) {
+                            continue;
+                        }
+                        scanned++;
+                        C container = access.containerAt(x, y, z);
+                        if (container != null) {
+                            out.add(ChunkMath.pack(x, y, z), container);
+                        }
+                    }
+                }
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Appends every container in one whole chunk section to {@code out}.
+     * Unloaded and empty sections contribute nothing.
+     *
+     * @return The number of blocks checked (0 if the section was skipped)
+     */
+    public static <C> int scanSection(SectionAccess<C> access, int chunkX, int section, int chunkZ,
+                                         ContainerHits<C> out) {
+        if (!access.loadSection(chunkX, section, chunkZ)) {
+            return 0;
+        }
+        int baseX = chunkX << ChunkMath.CHUNK_BITS;
+        int baseY = section << ChunkMath.CHUNK_BITS;
+        int baseZ = chunkZ << ChunkMath.CHUNK_BITS;
+
+        for (int x = baseX; x < baseX + ChunkMath.CHUNK_SIZE; x++) {
+            for (int z = baseZ; z < baseZ + ChunkMath.CHUNK_SIZE; z++) {
+                for (int y = baseY; y < baseY + ChunkMath.CHUNK_SIZE; y++) {
+                    C container = access.containerAt(x, y, z);
+                    if (container != null) {
+                        out.add(ChunkMath.pack(x, y, z), container);
+                    }
+                }
+            }
+        }
+        return ChunkMath.CHUNK_SIZE * ChunkMath.CHUNK_SIZE * ChunkMath.CHUNK_SIZE;
+    }
+}
@@ -0,0 +1,102 @@
+package dev.rocketsheep.plugin.search;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.protocol.BlockMaterial;
+import com.hypixel.hytale.server.core.asset.type.blocktype.config.BlockType;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+import com.hypixel.hytale.server.core.universe.world.chunk.section.BlockSection;
+import com.hypixel.hytale.server.core.universe.world.meta.BlockState;
+import com.hypixel.hytale.server.core.universe.world.meta.state.ItemContainerBlockState;
+import dev.rocketsheep.plugin.index.ChunkMath;
+
+import java.util.Arrays;
+
+/**
+ * {@link SectionAccess} backed by a live world. Never loads chunks: unloaded chunks
+ * and all-air sections are reported as absent so the scan can skip them.
+ *
+ * Must only be used from the world thread.
+ */
+public class WorldSectionAccess implements SectionAccess<ItemContainer> {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte PASSABLE = 1;
+    private static final byte SOLID = 2;
+
+    private final World world;
+
+    private WorldChunk chunk;
+    private long chunkIndex;
+
+    // Passability by block id, filled in as ids are first seen
+    private byte[] passability = new byte[256];
+
+    public WorldSectionAccess(World world) {
+        this.world = world;
+    }
+
+    @Override
+    public void reset() {
+        this.chunk = null;
+    }
+
+    @Override
+    public boolean loadSection(int chunkX, int section, int chunkZ) {
+        if (!selectChunk(chunkX, chunkZ)) {
+            return false;
+        }
+
+        BlockSection blockSection = chunk.getBlockChunk().getSection(section);
+        return blockSection != null && !blockSection.isSolidAir();
+    }
+
+    @Override
+    public boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return selectChunk(chunkX, chunkZ);
+    }
+
+    @Override
+    public ItemContainer containerAt(int x, int y, int z) {
+        BlockState blockState = chunk.getState(x, y, z);
+        if (blockState instanceof ItemContainerBlockState) {
+            return ((ItemContainerBlockState) blockState).getItemContainer();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isPassable(int x, int y, int z) {
+        if (!selectChunk(x >> ChunkMath.CHUNK_BITS, z >> ChunkMath.CHUNK_BITS)) {
+            return false;
+        }
+        BlockSection blockSection = chunk.getBlockChunk().getSection(y >> ChunkMath.CHUNK_BITS);
+        if (blockSection == null || blockSection.isSolidAir()) {
+            return true;
+        }
+        return !isSolid(chunk.getBlock(x, y, z));
+    }
+
+    private boolean selectChunk(int chunkX, int chunkZ) {
+        long index = ChunkUtil.indexChunk(chunkX, chunkZ);
+        if (chunk == null || index != chunkIndex) {
+            chunk = world.getChunkIfLoaded(index);
+            chunkIndex = index;
+        }
+        return chunk != null;
+    }
+
+    private boolean isSolid(int blockId) {
+        if (blockId >= passability.length) {
+            passability = Arrays.copyOf(passability, Math.max(blockId + 1, passability.length * 2));
+        }
+        byte known = passability[blockId];
+        if (known == UNKNOWN) {
+            BlockType type = BlockType.getAssetMap().getAsset(blockId);
+            known = type != null && type.getMaterial() == BlockMaterial.Empty ? PASSABLE : SOLID;
+            passability[blockId] = known;
+        }
+        return known == SOLID;
+    }
+}
@@ -0,0 +1,146 @@
+package dev.rocketsheep.plugin.stats;
+
+import dev.rocketsheep.plugin.deposit.DepositTrigger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Plugin-wide deposit counters and timings, split by trigger.
+ *
+ * Recording is lock-free and allocation-free. When stats are disabled, {@link #forTrigger}
+ * returns null and callers skip timing entirely, so the only remaining cost is one
+ * volatile read per request.
+ */
+public final class DepositStats {
+
+    private static final Logger LOGGER = Logger.getLogger(DepositStats.class.getName());
+
+    private static final TriggerStats[] BY_TRIGGER = new TriggerStats[DepositTrigger.values().length];
+
+    static {
+        for (DepositTrigger trigger : DepositTrigger.values()) {
+            BY_TRIGGER[trigger.ordinal()] = new TriggerStats(trigger.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static final ShadowStats SHADOW_SEARCH = new ShadowStats("shadow search");
+    private static final ShadowStats SHADOW_PLAN = new ShadowStats("shadow plan");
+
+    private static volatile boolean enabled = true;
+    private static volatile long resetAtMillis = System.currentTimeMillis();
+    private static ScheduledExecutorService logger;
+    private static long lastLoggedRequests;
+
+    private DepositStats() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Gets the stats to record a request into.
+     *
+     * @return The stats for the trigger, or null while stats are disabled
+     */
+    public static TriggerStats forTrigger(DepositTrigger trigger) {
+        return enabled ? BY_TRIGGER[trigger.ordinal()] : null;
+    }
+
+    /**
+     * Gets the stats to record a shadow-checked container search into.
+     *
+     * @return The stats, or null while stats are disabled
+     */
+    public static ShadowStats forShadowSearch() {
+        return enabled ? SHADOW_SEARCH : null;
+    }
+
+    /**
+     * Gets the stats to record a shadow-checked deposit plan into.
+     *
+     * @return The stats, or null while stats are disabled
+     */
+    public static ShadowStats forShadowPlan() {
+        return enabled ? SHADOW_PLAN : null;
+    }
+
+    /**
+     * Clears every counter and histogram.
+     */
+    public static void reset() {
+        for (TriggerStats stats : BY_TRIGGER) {
+            stats.reset();
+        }
+        SHADOW_SEARCH.reset();
+        SHADOW_PLAN.reset();
+        resetAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Formats the current stats, one line per entry.
+     */
+    public static List<String> report() {
+        List<String> lines = new ArrayList<>();
+        long seconds = (System.currentTimeMillis() - resetAtMillis) / 1000L;
+        lines.add("AreaDeposit stats (" + (enabled ? "enabled" : "disabled") + ", last "
+            + (seconds / 60) + "m " + (seconds % 60) + "s):");
+        for (TriggerStats stats : BY_TRIGGER) {
+            lines.addAll(stats.report());
+        }
+        // Shadow checks only run when sampling is configured
+        for (ShadowStats stats : new ShadowStats[] {SHADOW_SEARCH, SHADOW_PLAN}) {
+            if (stats.checks() > 0) {
+                lines.addAll(stats.report());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Starts writing the stats to the server log at a fixed interval. Intervals with no
+     * new requests are skipped.
+     *
+     * @param intervalSeconds Seconds between dumps; 0 disables the log dump
+     */
+    public static synchronized void startLogging(long intervalSeconds) {
+        stopLogging();
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+            .name("AreaDeposit-stats")
+            .daemon(true)
+            .factory());
+        logger.scheduleAtFixedRate(DepositStats::logReport, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopLogging() {
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+
+    private static void logReport() {
+        long requests = 0;
+        for (TriggerStats stats : BY_TRIGGER) {
+            requests += stats.requests();
+        }
+        if (!enabled || requests == lastLoggedRequests) {
+            return;
+        }
+        lastLoggedRequests = requests;
+        LOGGER.info(String.join(System.lineSeparator(), report()));
+    }
+}
@@ -0,0 +1,100 @@
+package dev.rocketsheep.plugin.stats;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram with power-of-two microsecond buckets.
+ *
+ * Bucket 0 holds times under 1 us and bucket {@code i} holds times in
+ * [2^(i-1), 2^i) us, with the last bucket open-ended (about 8 s and up). Recording
+ * only touches striped adders, so it never allocates and rarely contends.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 25;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0L, nanos) / 1000L;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    public long meanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / n;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket it falls in, capped at the
+     * recorded maximum.
+     *
+     * @param fraction The percentile as a fraction, e.g. 0.99
+     */
+    public long percentileNanos(double fraction) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return Math.min(maxNanos.get(), (1L << i) * 1000L);
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    /**
+     * Formats as "p50 128us, p99 2.0ms, max 3.1ms (n=42)".
+     */
+    public String summary() {
+        return "p50 " + formatNanos(percentileNanos(0.50))
+            + ", p99 " + formatNanos(percentileNanos(0.99))
+            + ", max " + formatNanos(maxNanos())
+            + " (n=" + count() + ")";
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000_000L) {
+            return (nanos / 1000L) + "us";
+        }
+        if (nanos < 1_000_000_000L) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
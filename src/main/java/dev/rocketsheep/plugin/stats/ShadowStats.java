@@ -0,0 +1,58 @@
+package dev.rocketsheep.plugin.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings for the shadow checks of one strategy (container search or
+ * deposit planning): how many sampled requests ran both the active and the reference
+ * strategy, how many disagreed, and what each strategy cost.
+ */
+public final class ShadowStats {
+
+    private final String name;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+
+    /** Time the active strategy took, per check. */
+    private final LatencyHistogram activeTime = new LatencyHistogram();
+    /** Time the reference strategy took, per check. */
+    private final LatencyHistogram referenceTime = new LatencyHistogram();
+
+    ShadowStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records one request that ran through both strategies.
+     */
+    public void record(boolean matched, long activeNanos, long referenceNanos) {
+        checks.increment();
+        if (!matched) {
+            mismatches.increment();
+        }
+        activeTime.record(activeNanos);
+        referenceTime.record(referenceNanos);
+    }
+
+    public long checks() {
+        return checks.sum();
+    }
+
+    void reset() {
+        checks.reset();
+        mismatches.reset();
+        activeTime.reset();
+        referenceTime.reset();
+    }
+
+    List<String> report() {
+        List<String> lines = new ArrayList<>();
+        lines.add(name + ": " + checks.sum() + " check(s), " + mismatches.sum() + " mismatch(es)");
+        lines.add("  active " + activeTime.summary());
+        lines.add("  reference " + referenceTime.summary());
+        return lines;
+    }
+}
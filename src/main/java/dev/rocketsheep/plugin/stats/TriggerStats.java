@@ -0,0 +1,116 @@
+package dev.rocketsheep.plugin.stats;
+
+import dev.rocketsheep.plugin.deposit.DepositThrottle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the deposits started by one trigger.
+ */
+public final class TriggerStats {
+
+    private final String name;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private final LongAdder blocksScanned = new LongAdder();
+    private final LongAdder containersFound = new LongAdder();
+    private final LongAdder containersWithDeposits = new LongAdder();
+    private final LongAdder transactions = new LongAdder();
+
+    /** Time spent handling the request itself (validation and queueing). */
+    private final LatencyHistogram requestTime = new LatencyHistogram();
+    /** World-thread time spent searching for containers, per deposit. */
+    private final LatencyHistogram scanTime = new LatencyHistogram();
+    /** World-thread time spent moving items, per deposit. */
+    private final LatencyHistogram transferTime = new LatencyHistogram();
+    /** Total world-thread time across every step of a deposit. */
+    private final LatencyHistogram worldTime = new LatencyHistogram();
+    /** Wall time from request to result message. */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    TriggerStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a handled request and what the throttle did with it.
+     */
+    public void recordRequest(DepositThrottle.Result result, long nanos) {
+        requests.increment();
+        if (result == DepositThrottle.Result.COALESCED || result == DepositThrottle.Result.DEFERRED) {
+            merged.increment();
+        } else if (result == DepositThrottle.Result.DROPPED) {
+            dropped.increment();
+        }
+        requestTime.record(nanos);
+    }
+
+    /**
+     * Records a finished deposit.
+     *
+     * @param blocks Blocks examined by the container search
+     * @param found Containers found in range
+     * @param used Containers that received items
+     * @param transfers Items moved (or quick stack operations on the fallback path)
+     */
+    public void recordDeposit(long blocks, int found, int used, int transfers,
+                              long scanNanos, long transferNanos, long worldNanos, long latencyNanos) {
+        completed.increment();
+        blocksScanned.add(blocks);
+        containersFound.add(found);
+        containersWithDeposits.add(used);
+        transactions.add(transfers);
+        scanTime.record(scanNanos);
+        transferTime.record(transferNanos);
+        worldTime.record(worldNanos);
+        latency.record(latencyNanos);
+    }
+
+    /**
+     * Records a deposit that stopped because the player went away.
+     */
+    public void recordAbandoned() {
+        abandoned.increment();
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    void reset() {
+        requests.reset();
+        merged.reset();
+        dropped.reset();
+        completed.reset();
+        abandoned.reset();
+        blocksScanned.reset();
+        containersFound.reset();
+        containersWithDeposits.reset();
+        transactions.reset();
+        requestTime.reset();
+        scanTime.reset();
+        transferTime.reset();
+        worldTime.reset();
+        latency.reset();
+    }
+
+    List<String> report() {
+        List<String> lines = new ArrayList<>();
+        lines.add(name + ": " + requests.sum() + " request(s) (" + merged.sum() + " merged, " + dropped.sum()
+            + " dropped), " + completed.sum() + " deposit(s), " + abandoned.sum() + " abandoned");
+        lines.add("  " + blocksScanned.sum() + " blocks scanned, " + containersFound.sum() + " containers found, "
+            + containersWithDeposits.sum() + " with deposits, " + transactions.sum() + " transfers");
+        lines.add("  request " + requestTime.summary());
+        lines.add("  scan " + scanTime.summary());
+        lines.add("  transfer " + transferTime.summary());
+        lines.add("  world thread " + worldTime.summary());
+        lines.add("  latency " + latency.summary());
+        return lines;
+    }
+}
@@ -5,37 +5,36 @@ import com.hypixel.hytale.component.CommandBuffer;
 import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.component.query.Query;
 import com.hypixel.hytale.component.system.EntityEventSystem;
+import com.hypixel.hytale.math.vector.Vector3i;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.event.events.ecs.UseBlockEvent;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import dev.rocketsheep.plugin.AreaDepositService;
+import dev.rocketsheep.plugin.AreaDepositorBlock;
+import dev.rocketsheep.plugin.deposit.DepositTrigger;
 
 /**
  * ECS Event System that handles UseBlockEvent.Pre for the Area Depositor block.
  */
 public class AreaDepositorEventSystem extends EntityEventSystem<EntityStore, UseBlockEvent.Pre> {
 
-    private static final String DEPOSITOR_BLOCK_ID = "RocketSheep_Area_Depositor";
-    private static final double DEFAULT_RADIUS = 8.0;
-
     public AreaDepositorEventSystem() {
         super(UseBlockEvent.Pre.class);
     }
 
     @Override
     public Query<EntityStore> getQuery() {
-        // Match any entity - we filter by block type in handle()
-        return Query.any();
+        // Only players use the depositor, so skip block uses by every other entity
+        return Player.getComponentType();
     }
 
     @Override
     public void handle(int entityIndex, ArchetypeChunk<EntityStore> chunk, Store<EntityStore> store,
                        CommandBuffer<EntityStore> commandBuffer, UseBlockEvent.Pre event) {
 
-        // Check if it's our Area Depositor block
-        String blockId = event.getBlockType().getId();
-        if (!DEPOSITOR_BLOCK_ID.equals(blockId)) {
+        // Check if it's our Area Depositor block (identity check, no string compare)
+        if (!AreaDepositorBlock.matches(event.getBlockType())) {
             return;
         }
 
@@ -45,7 +44,7 @@ public class AreaDepositorEventSystem extends EntityEventSystem<EntityStore, Use
             return;
         }
 
-        Player player = (Player) store.getComponent(entityRef, Player.getComponentType());
+        Player player = store.getComponent(entityRef, Player.getComponentType());
         if (player == null) {
             return;
         }
@@ -56,8 +55,15 @@ public class AreaDepositorEventSystem extends EntityEventSystem<EntityStore, Use
             return;
         }
 
-        // Execute the deposit logic with chat output
-        AreaDepositService.executeDepositWithStore(entityRef, store, world, DEFAULT_RADIUS);
+        // Deposit into the containers around the block (its cached network), with chat output
+        Vector3i target = event.getTargetBlock();
+        AreaDepositService service = AreaDepositService.forWorld(world);
+        service.executeDepositWithStore(entityRef, store, AreaDepositorBlock.RADIUS, DepositTrigger.BLOCK, target);
+
+        // Depositors placed before automatic deposits were tracked are learned on use
+        if (target != null) {
+            service.getDepositors().add(target.x, target.y, target.z);
+        }
 
         // Cancel the default interaction (prevents container UI from opening)
         event.setCancelled(true);
@@ -0,0 +1,56 @@
+package dev.rocketsheep.plugin.systems;
+
+import com.hypixel.hytale.component.ArchetypeChunk;
+import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.EntityEventSystem;
+import com.hypixel.hytale.math.vector.Vector3i;
+import com.hypixel.hytale.server.core.event.events.ecs.BreakBlockEvent;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import dev.rocketsheep.plugin.AreaDepositService;
+import dev.rocketsheep.plugin.AreaDepositorBlock;
+import dev.rocketsheep.plugin.index.ChunkMath;
+
+/**
+ * ECS Event System that keeps the container index, depositor networks and known
+ * depositors current when blocks are broken.
+ */
+public class ContainerBreakEventSystem extends EntityEventSystem<EntityStore, BreakBlockEvent> {
+
+    public ContainerBreakEventSystem() {
+        super(BreakBlockEvent.class);
+    }
+
+    @Override
+    public Query<EntityStore> getQuery() {
+        return Query.any();
+    }
+
+    @Override
+    public void handle(int entityIndex, ArchetypeChunk<EntityStore> chunk, Store<EntityStore> store,
+                       CommandBuffer<EntityStore> commandBuffer, BreakBlockEvent event) {
+
+        Vector3i target = event.getTargetBlock();
+        World world = store.getExternalData().getWorld();
+        if (target == null || world == null) {
+            return;
+        }
+
+        // No service means the world is being removed or has nothing indexed yet
+        AreaDepositService service = AreaDepositService.getIfPresent(world);
+        if (service == null) {
+            return;
+        }
+
+        // The block isn't removed yet, so just flag the position for re-checking
+        service.getContainerIndex().markDirty(target.x, target.y, target.z);
+        service.getItemIndex().untrack(ChunkMath.pack(target.x, target.y, target.z));
+        // Also frees the network if the broken block is an Area Depositor
+        service.getNetworks().onBlockChanged(target.x, target.y, target.z);
+        if (AreaDepositorBlock.matches(event.getBlockType())) {
+            service.getDepositors().remove(target.x, target.y, target.z);
+        }
+    }
+}
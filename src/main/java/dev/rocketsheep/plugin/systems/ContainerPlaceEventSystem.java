@@ -0,0 +1,60 @@
+package dev.rocketsheep.plugin.systems;
+
+import com.hypixel.hytale.component.ArchetypeChunk;
+import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.EntityEventSystem;
+import com.hypixel.hytale.math.vector.Vector3i;
+import com.hypixel.hytale.server.core.event.events.ecs.PlaceBlockEvent;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import dev.rocketsheep.plugin.AreaDepositService;
+import dev.rocketsheep.plugin.AreaDepositorBlock;
+
+/**
+ * ECS Event System that keeps the container index, depositor networks and known
+ * depositors current when blocks are placed.
+ */
+public class ContainerPlaceEventSystem extends EntityEventSystem<EntityStore, PlaceBlockEvent> {
+
+    public ContainerPlaceEventSystem() {
+        super(PlaceBlockEvent.class);
+    }
+
+    @Override
+    public Query<EntityStore> getQuery() {
+        return Query.any();
+    }
+
+    @Override
+    public void handle(int entityIndex, ArchetypeChunk<EntityStore> chunk, Store<EntityStore> store,
+                       CommandBuffer<EntityStore> commandBuffer, PlaceBlockEvent event) {
+
+        Vector3i target = event.getTargetBlock();
+        World world = store.getExternalData().getWorld();
+        if (target == null || world == null) {
+            return;
+        }
+
+        // No service means the world is being removed or has nothing indexed yet
+        AreaDepositService service = AreaDepositService.getIfPresent(world);
+        if (service == null) {
+            return;
+        }
+
+        // The block isn't placed yet, so just flag the position for re-checking
+        service.getContainerIndex().markDirty(target.x, target.y, target.z);
+        service.getNetworks().onBlockChanged(target.x, target.y, target.z);
+
+        // Look at the block once it is placed, to learn new Area Depositors
+        int x = target.x;
+        int y = target.y;
+        int z = target.z;
+        world.execute(() -> {
+            if (AreaDepositorBlock.isAt(world, x, y, z)) {
+                service.getDepositors().add(x, y, z);
+            }
+        });
+    }
+}
@@ -0,0 +1,33 @@
+package dev.rocketsheep.plugin.systems;
+
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.system.tick.TickingSystem;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import dev.rocketsheep.plugin.AreaDepositService;
+import dev.rocketsheep.plugin.config.AreaDepositConfig;
+
+/**
+ * ECS Ticking System that drains the world's deposit scheduler every tick, opens a new
+ * tick's automatic deposit budget and now and then drops expired undo journals.
+ */
+public class DepositSchedulerSystem extends TickingSystem<EntityStore> {
+
+    @Override
+    public void tick(float dt, int systemIndex, Store<EntityStore> store) {
+        World world = store.getExternalData().getWorld();
+        if (world == null) {
+            return;
+        }
+
+        AreaDepositService service = AreaDepositService.getIfPresent(world);
+        if (service == null) {
+            return;
+        }
+        if (AreaDepositConfig.get().isAutoDepositEnabled()) {
+            service.getProximity().beginTick(System.nanoTime());
+        }
+        service.getScheduler().tick();
+        service.getJournal().prune();
+    }
+}
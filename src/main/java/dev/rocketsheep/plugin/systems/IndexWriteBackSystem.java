@@ -0,0 +1,31 @@
+package dev.rocketsheep.plugin.systems;
+
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.system.tick.TickingSystem;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import dev.rocketsheep.plugin.AreaDepositService;
+import dev.rocketsheep.plugin.config.AreaDepositConfig;
+
+/**
+ * ECS Ticking System that periodically writes changed container index columns, and the
+ * known Area Depositors, back to the world's index files.
+ */
+public class IndexWriteBackSystem extends TickingSystem<EntityStore> {
+
+    @Override
+    public void tick(float dt, int systemIndex, Store<EntityStore> store) {
+        World world = store.getExternalData().getWorld();
+        if (world == null) {
+            return;
+        }
+
+        AreaDepositService service = AreaDepositService.getIfPresent(world);
+        if (service != null) {
+            long interval = AreaDepositConfig.get().getIndexFlushIntervalSeconds() * 1_000_000_000L;
+            if (service.getContainerIndex().flushIfDue(System.nanoTime(), interval)) {
+                service.getDepositors().save();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package dev.rocketsheep.plugin.systems;
+
+import com.hypixel.hytale.component.ArchetypeChunk;
+import com.hypixel.hytale.component.CommandBuffer;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.query.Query;
+import com.hypixel.hytale.component.system.tick.EntityTickingSystem;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.math.vector.Vector3i;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import dev.rocketsheep.plugin.AreaDepositService;
+import dev.rocketsheep.plugin.AreaDepositorBlock;
+import dev.rocketsheep.plugin.deposit.DepositTrigger;
+import dev.rocketsheep.plugin.index.ChunkMath;
+import dev.rocketsheep.plugin.index.DepositorHash;
+
+/**
+ * ECS Ticking System that deposits for players standing next to an Area Depositor.
+ *
+ * Each player's position goes through the world's proximity tracker, which only looks
+ * up depositors when the player crosses a cell boundary and limits how many deposits
+ * start per tick. Deposits it fires run like a click on the depositor: through the
+ * block's container network and the world's deposit scheduler.
+ */
+public class ProximityDepositSystem extends EntityTickingSystem<EntityStore> {
+
+    @Override
+    public Query<EntityStore> getQuery() {
+        return Player.getComponentType();
+    }
+
+    @Override
+    public void tick(float dt, int index, ArchetypeChunk<EntityStore> archetypeChunk, Store<EntityStore> store,
+                     CommandBuffer<EntityStore> commandBuffer) {
+
+        World world = store.getExternalData().getWorld();
+        if (world == null) {
+            return;
+        }
+
+        // No service means the world is being removed or has nothing indexed yet
+        AreaDepositService service = AreaDepositService.getIfPresent(world);
+        if (service == null || service.getDepositors().size() == 0) {
+            return;
+        }
+
+        Ref<EntityStore> ref = archetypeChunk.getReferenceTo(index);
+        Player player = archetypeChunk.getComponent(index, Player.getComponentType());
+        if (ref == null || player == null) {
+            return;
+        }
+
+        Vector3d position = player.getTransformComponent().getPosition();
+        long depositor = service.getProximity().update(ref, position.x, position.y, position.z, System.nanoTime());
+        if (depositor == DepositorHash.NONE) {
+            return;
+        }
+
+        // The hash only learns about breaks it sees, so check the block is still there
+        int x = ChunkMath.unpackX(depositor);
+        int y = ChunkMath.unpackY(depositor);
+        int z = ChunkMath.unpackZ(depositor);
+        if (!AreaDepositorBlock.isAt(world, x, y, z)) {
+            service.getDepositors().remove(x, y, z);
+            return;
+        }
+
+        service.executeDepositWithStore(ref, store, AreaDepositorBlock.RADIUS, DepositTrigger.AUTO, new Vector3i(x, y, z));
+    }
+}
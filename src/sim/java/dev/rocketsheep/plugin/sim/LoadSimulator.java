@@ -0,0 +1,449 @@
+package dev.rocketsheep.plugin.sim;
+
+import dev.rocketsheep.plugin.config.AreaDepositConfig;
+import dev.rocketsheep.plugin.deposit.DepositJob;
+import dev.rocketsheep.plugin.deposit.DepositJournal;
+import dev.rocketsheep.plugin.deposit.DepositMode;
+import dev.rocketsheep.plugin.deposit.DepositPlanner;
+import dev.rocketsheep.plugin.deposit.DepositScheduler;
+import dev.rocketsheep.plugin.deposit.DepositStrategy;
+import dev.rocketsheep.plugin.deposit.DepositThrottle;
+import dev.rocketsheep.plugin.deposit.DepositTrigger;
+import dev.rocketsheep.plugin.index.ChunkMath;
+import dev.rocketsheep.plugin.index.ContainerIndex;
+import dev.rocketsheep.plugin.index.DepositorNetworks;
+import dev.rocketsheep.plugin.index.ItemIndex;
+import dev.rocketsheep.plugin.search.SearchMode;
+import dev.rocketsheep.plugin.stats.DepositStats;
+import dev.rocketsheep.plugin.stats.TriggerStats;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Headless load simulator: runs the real deposit engine (index, scheduler, throttle,
+ * planner) against a generated storage hall with many simulated players, and reports
+ * per-tick scheduler cost, throughput and memory.
+ *
+ * Requests come from a generated script (each player issues requests at a given rate,
+ * sometimes spam-clicking) or from a recorded CSV script (see {@link SimEvent}).
+ * Cooldowns run on a virtual clock of 50 ms per tick; ticks are run back to back
+ * unless {@code --realtime} is given.
+ *
+ * Tick times are reported both as wall time and as the tick thread's CPU time. Wall time
+ * also counts time other threads (the planner, JIT compilers, GC) held the CPU, which
+ * dominates on machines with few cores; CPU time shows what the scheduler itself spent.
+ * Before measuring, generated requests are run through a separate world for
+ * {@code --warmup} ticks, so the report shows the compiled engine rather than the
+ * interpreter's first runs through it.
+ *
+ * Options are {@code --name=value}, and on/off options can also be given bare
+ * ({@code --stats}); run with {@code --help} to list them.
+ */
+public class LoadSimulator {
+
+    private static final long TICK_NANOS = 50_000_000L;
+    private static final int TICKS_PER_SECOND = 20;
+    private static final int MAX_STACK = 100;
+    private static final int PLAYER_SLOTS = 36;
+    private static final int MEMORY_SAMPLE_TICKS = 20;
+    private static final long DRAIN_LIMIT_NANOS = 30_000_000_000L;
+
+    private static final String[][] OPTIONS = {
+        {"players", "20", "Simulated players"},
+        {"ticks", "1200", "Ticks of generated requests (20 per second)"},
+        {"rate", "0.2", "Requests per player per second"},
+        {"spam", "0.1", "Chance a request is followed by repeat clicks"},
+        {"depositorShare", "0.5", "Share of requests made at an Area Depositor instead of /ad"},
+        {"radius", "16", "Radius of generated requests"},
+        {"depositMode", "quick_stack", "What /ad requests do: quick_stack, sort or sort_all"},
+        {"halls", "2", "Storage halls"},
+        {"rows", "8", "Chest walls per hall"},
+        {"length", "48", "Chests per wall"},
+        {"stack", "3", "Chests stacked per column"},
+        {"slots", "27", "Slots per chest"},
+        {"fill", "0.5", "Fraction of chest slots holding items"},
+        {"items", "400", "Distinct item types"},
+        {"seed", "1", "Random seed"},
+        {"warmup", "600", "Ticks of generated requests run on a separate world before measuring"},
+        {"events", "", "Replay this CSV script instead of generating requests"},
+        {"record", "", "Write the requests that were run to this CSV script"},
+        {"config", "", "Load config.properties from this directory"},
+        {"realtime", "false", "Sleep so each tick takes at least 50 ms"},
+        {"stats", "false", "Record and print the plugin's deposit stats"},
+    };
+
+    private final Map<String, String> options;
+    private final SplittableRandom random;
+    private final SplittableRandom eventRandom;
+    private final StorageHall hall;
+    private final SimContainerAccess access = new SimContainerAccess(MAX_STACK);
+    private final ContainerIndex<SimContainer> containerIndex;
+    private final DepositorNetworks<SimContainer> networks;
+    private final ItemIndex<SimContainer> itemIndex;
+    private final List<SimPlayer> players = new ArrayList<>();
+    private final int[] playerAisles;
+    private final DepositMode commandMode;
+
+    private long virtualNanos;
+    private final DepositScheduler scheduler = new DepositScheduler(() -> virtualNanos);
+    private final DepositPlanner planner = new DepositPlanner();
+    private final DepositJournal journal = new DepositJournal(AreaDepositConfig.get().getUndoMaxEntries(),
+        AreaDepositConfig.get().getUndoExpirySeconds(), () -> virtualNanos);
+    private final Map<DepositThrottle.Result, Integer> results = new HashMap<>();
+
+    private LoadSimulator(Map<String, String> options) {
+        this.options = options;
+        this.random = new SplittableRandom(longOption("seed"));
+        this.hall = new StorageHall(intOption("halls"), intOption("rows"), intOption("length"), intOption("stack"),
+            intOption("slots"), doubleOption("fill"), intOption("items"), MAX_STACK, random);
+        this.containerIndex = new ContainerIndex<>(hall);
+        this.networks = new DepositorNetworks<>(containerIndex);
+        this.itemIndex = new ItemIndex<>(access, AreaDepositConfig.get().getIndexMissCacheSize());
+        this.commandMode = DepositMode.valueOf(options.get("depositMode").toUpperCase(Locale.ROOT));
+
+        // Spread players over the aisles, standing somewhere along each one
+        int playerCount = intOption("players");
+        this.playerAisles = new int[playerCount];
+        for (int id = 0; id < playerCount; id++) {
+            int aisle = id % hall.aisleCount();
+            int x = hall.aisleMinX(aisle) + random.nextInt(hall.aisleMaxX(aisle) - hall.aisleMinX(aisle) + 1);
+            playerAisles[id] = aisle;
+            players.add(new SimPlayer(id, new SimContainer(PLAYER_SLOTS),
+                x + 0.5, StorageHall.FLOOR_Y, hall.aisleZ(aisle) + 0.5));
+        }
+        // Separate stream, so a recorded script replays against the same world and refills
+        this.eventRandom = random.split();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String[] option : OPTIONS) {
+            options.put(option[0], option[1]);
+        }
+        for (String arg : args) {
+            if (arg.equals("--help")) {
+                for (String[] option : OPTIONS) {
+                    String usage = isFlag(option[0]) ? option[0] + "[=true|false]" : option[0] + "=...";
+                    System.out.printf("  --%-22s %s (default: %s)%n", usage, option[2],
+                        option[1].isEmpty() ? "none" : option[1]);
+                }
+                return;
+            }
+            int equals = arg.indexOf('=');
+            String name = !arg.startsWith("--") ? null : arg.substring(2, equals >= 0 ? equals : arg.length());
+            if (name == null || !options.containsKey(name)) {
+                System.err.println("Unknown option " + arg + " (try --help)");
+                System.exit(2);
+            }
+            if (equals >= 0) {
+                options.put(name, arg.substring(equals + 1));
+            } else if (isFlag(name)) {
+                // A bare flag such as --stats turns it on
+                options.put(name, "true");
+            } else {
+                System.err.println("Option " + arg + " needs a value, e.g. " + arg + "=" + defaultOf(name));
+                System.exit(2);
+            }
+        }
+
+        if (!options.get("config").isEmpty()) {
+            AreaDepositConfig.load(Path.of(options.get("config")));
+        }
+        warmUp(options, Integer.parseInt(options.get("warmup")));
+        boolean stats = Boolean.parseBoolean(options.get("stats"));
+        DepositStats.setEnabled(stats);
+
+        LoadSimulator simulator = new LoadSimulator(options);
+        try {
+            simulator.run(true);
+            if (stats) {
+                DepositStats.report().forEach(System.out::println);
+            }
+        } finally {
+            simulator.planner.close();
+        }
+    }
+
+    /**
+     * Runs generated requests through a throwaway world and engine, without stats or a
+     * report, so the JIT has compiled the deposit code before the measured run starts.
+     */
+    private static void warmUp(Map<String, String> options, int ticks) throws IOException, InterruptedException {
+        if (ticks <= 0) {
+            return;
+        }
+        Map<String, String> warmup = new HashMap<>(options);
+        warmup.put("ticks", Integer.toString(ticks));
+        warmup.put("seed", Long.toString(Long.parseLong(options.get("seed")) + 1));
+        warmup.put("events", "");
+        warmup.put("record", "");
+        warmup.put("realtime", "false");
+        DepositStats.setEnabled(false);
+
+        LoadSimulator simulator = new LoadSimulator(warmup);
+        try {
+            simulator.run(false);
+        } finally {
+            simulator.planner.close();
+        }
+    }
+
+    /**
+     * Checks whether an option is an on/off flag, i.e. defaults to true or false.
+     */
+    private static boolean isFlag(String name) {
+        String value = defaultOf(name);
+        return value.equals("true") || value.equals("false");
+    }
+
+    private static String defaultOf(String name) {
+        for (String[] option : OPTIONS) {
+            if (option[0].equals(name)) {
+                return option[1];
+            }
+        }
+        return "";
+    }
+
+    /**
+     * @param report Whether to print the report (false for the warm-up run)
+     */
+    private void run(boolean report) throws IOException, InterruptedException {
+        List<SimEvent> events = options.get("events").isEmpty()
+            ? generateEvents()
+            : SimEvent.read(Path.of(options.get("events")));
+        if (!options.get("record").isEmpty()) {
+            SimEvent.write(Path.of(options.get("record")), events);
+        }
+        for (SimEvent event : events) {
+            if (event.player() < 0 || event.player() >= players.size()) {
+                throw new IllegalArgumentException("Event for unknown player " + event.player()
+                    + " (simulating " + players.size() + ")");
+            }
+        }
+
+        int lastTick = events.isEmpty() ? 0 : events.get(events.size() - 1).tick();
+        boolean realtime = Boolean.parseBoolean(options.get("realtime"));
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Runtime runtime = Runtime.getRuntime();
+
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long heapPeak = heapBefore;
+        long allocatedBefore = allocatedBytes(threads);
+
+        long[] tickNanos = new long[lastTick + 1];
+        long[] tickCpuNanos = new long[lastTick + 1];
+        boolean cpuTime = threads.isCurrentThreadCpuTimeSupported();
+        int ticks = 0;
+        int next = 0;
+        long drainStart = 0;
+        long wallStart = System.nanoTime();
+
+        // Run every scripted tick, then keep ticking until queued deposits have finished
+        for (int tick = 0; tick <= lastTick || scheduler.pendingJobs() > 0; tick++) {
+            virtualNanos = tick * TICK_NANOS;
+            long tickStart = System.nanoTime();
+            if (tick > lastTick) {
+                if (drainStart == 0) {
+                    drainStart = tickStart;
+                } else if (tickStart - drainStart > DRAIN_LIMIT_NANOS) {
+                    System.err.println("Gave up waiting for " + scheduler.pendingJobs() + " deposit(s) to finish");
+                    break;
+                }
+            }
+
+            while (next < events.size() && events.get(next).tick() == tick) {
+                request(events.get(next++));
+            }
+
+            long cpuStart = cpuTime ? threads.getCurrentThreadCpuTime() : 0L;
+            long start = System.nanoTime();
+            scheduler.tick();
+            journal.prune();
+            long elapsed = System.nanoTime() - start;
+            long cpuElapsed = cpuTime ? threads.getCurrentThreadCpuTime() - cpuStart : -1L;
+
+            if (ticks == tickNanos.length) {
+                tickNanos = Arrays.copyOf(tickNanos, ticks * 2);
+                tickCpuNanos = Arrays.copyOf(tickCpuNanos, ticks * 2);
+            }
+            tickCpuNanos[ticks] = cpuElapsed;
+            tickNanos[ticks++] = elapsed;
+
+            if (tick % MEMORY_SAMPLE_TICKS == 0) {
+                heapPeak = Math.max(heapPeak, runtime.totalMemory() - runtime.freeMemory());
+            }
+            if (realtime) {
+                long sleepNanos = TICK_NANOS - (System.nanoTime() - tickStart);
+                if (sleepNanos > 0) {
+                    Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+                }
+            }
+        }
+
+        if (!report) {
+            return;
+        }
+        long wallNanos = System.nanoTime() - wallStart;
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes(threads) - allocatedBefore;
+        report(events.size(), Arrays.copyOf(tickNanos, ticks), cpuTime ? Arrays.copyOf(tickCpuNanos, ticks) : null,
+            wallNanos, heapBefore, heapPeak, allocated);
+    }
+
+    /**
+     * Refills the player's inventory (as if they had been out collecting) and submits their request.
+     */
+    private void request(SimEvent event) {
+        SimPlayer player = players.get(event.player());
+        refill(player.getStorage());
+
+        DepositTrigger trigger = event.trigger() == SimEvent.Trigger.DEPOSITOR
+            ? DepositTrigger.BLOCK : DepositTrigger.COMMAND;
+        TriggerStats stats = DepositStats.forTrigger(trigger);
+        long start = stats != null ? System.nanoTime() : 0L;
+        SearchMode mode = AreaDepositConfig.get().getSearchMode();
+        DepositStrategy strategy = DepositStrategy.fromConfig();
+
+        DepositJob<SimContainer> job;
+        if (trigger == DepositTrigger.BLOCK) {
+            // Use the Area Depositor at the start of the player's aisle
+            int aisle = playerAisles[event.player()];
+            long depositor = ChunkMath.pack(hall.depositorX(aisle), StorageHall.FLOOR_Y, hall.aisleZ(aisle));
+            job = new DepositJob<>(player, trigger, DepositMode.QUICK_STACK, mode, strategy, planner, networks, depositor,
+                itemIndex, access, journal, event.radius());
+        } else {
+            job = new DepositJob<>(player, trigger, commandMode, mode, strategy, planner, containerIndex, itemIndex,
+                access, journal, player.x(), player.y(), player.z(), event.radius());
+        }
+        DepositThrottle.Result result = scheduler.request(job);
+        if (stats != null) {
+            stats.recordRequest(result, System.nanoTime() - start);
+        }
+        results.merge(result, 1, Integer::sum);
+    }
+
+    private void refill(SimContainer storage) {
+        int itemTypes = intOption("items");
+        for (int slot = 0; slot < storage.capacity(); slot++) {
+            if (storage.isEmpty(slot) && random.nextDouble() < 0.75) {
+                storage.set(slot, StorageHall.itemId(random.nextInt(itemTypes)), 1 + random.nextInt(MAX_STACK));
+            }
+        }
+        storage.changed();
+    }
+
+    private List<SimEvent> generateEvents() {
+        int ticks = intOption("ticks");
+        int radius = intOption("radius");
+        double chancePerTick = doubleOption("rate") / TICKS_PER_SECOND;
+        double spam = doubleOption("spam");
+        double depositorShare = doubleOption("depositorShare");
+
+        List<SimEvent> events = new ArrayList<>();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int player = 0; player < players.size(); player++) {
+                if (eventRandom.nextDouble() >= chancePerTick) {
+                    continue;
+                }
+                SimEvent.Trigger trigger = eventRandom.nextDouble() < depositorShare
+                    ? SimEvent.Trigger.DEPOSITOR : SimEvent.Trigger.COMMAND;
+                events.add(new SimEvent(tick, player, trigger, radius));
+                if (eventRandom.nextDouble() < spam) {
+                    // A burst of repeat clicks a few ticks apart
+                    int repeats = 1 + eventRandom.nextInt(4);
+                    for (int i = 1; i <= repeats; i++) {
+                        events.add(new SimEvent(tick + i * 2, player, trigger, radius));
+                    }
+                }
+            }
+        }
+        events.sort((a, b) -> Integer.compare(a.tick(), b.tick()));
+        return events;
+    }
+
+    /**
+     * @param tickCpuNanos The tick thread's CPU time per tick, or null if it can't be measured
+     */
+    private void report(int requests, long[] tickNanos, long[] tickCpuNanos, long wallNanos, long heapBefore,
+                        long heapPeak, long allocated) {
+        long total = 0;
+        for (long nanos : tickNanos) {
+            total += nanos;
+        }
+        long[] sorted = tickNanos.clone();
+        Arrays.sort(sorted);
+        double simulatedSeconds = tickNanos.length / (double) TICKS_PER_SECOND;
+        int completed = 0;
+        for (SimPlayer player : players) {
+            completed += player.messages();
+        }
+
+        System.out.printf("World:      %d containers, %d aisles, %d players%n",
+            hall.containerCount(), hall.aisleCount(), players.size());
+        System.out.printf("Requests:   %d (started %d, coalesced %d, deferred %d, dropped %d), %d deposits completed%n",
+            requests, count(DepositThrottle.Result.STARTED), count(DepositThrottle.Result.COALESCED),
+            count(DepositThrottle.Result.DEFERRED), count(DepositThrottle.Result.DROPPED), completed);
+        System.out.printf("Ticks:      %d (%.1f s simulated, %.1f s wall)%n",
+            tickNanos.length, simulatedSeconds, wallNanos / 1e9);
+        System.out.printf("Tick time:  p50 %.1f us, p99 %.1f us, max %.1f us, mean %.1f us%n",
+            percentile(sorted, 0.50) / 1e3, percentile(sorted, 0.99) / 1e3,
+            sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e3,
+            sorted.length == 0 ? 0.0 : total / 1e3 / sorted.length);
+        if (tickCpuNanos != null) {
+            long[] sortedCpu = tickCpuNanos.clone();
+            Arrays.sort(sortedCpu);
+            System.out.printf("Tick CPU:   p50 %.1f us, p99 %.1f us, max %.1f us (tick thread only)%n",
+                percentile(sortedCpu, 0.50) / 1e3, percentile(sortedCpu, 0.99) / 1e3,
+                sortedCpu.length == 0 ? 0.0 : sortedCpu[sortedCpu.length - 1] / 1e3);
+        }
+        System.out.printf("Transfers:  %d moves, %d items (%.0f moves/s simulated, %.0f moves/s of tick time)%n",
+            access.moves(), access.itemsMoved(), access.moves() / simulatedSeconds,
+            total == 0 ? 0.0 : access.moves() / (total / 1e9));
+        System.out.printf("Changes:    %d container changes, %d change notifications%n",
+            access.changes(), access.notifications());
+        System.out.printf("Memory:     heap %.1f MB before, %.1f MB peak; %s allocated on the tick thread%n",
+            heapBefore / 1e6, heapPeak / 1e6, allocated < 0 ? "n/a" : String.format("%.1f MB", allocated / 1e6));
+    }
+
+    private int count(DepositThrottle.Result result) {
+        return results.getOrDefault(result, 0);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemorySupported()) {
+            return hotspot.getThreadAllocatedBytes(Thread.currentThread().threadId());
+        }
+        return -1;
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private long longOption(String name) {
+        return Long.parseLong(options.get(name));
+    }
+
+    private double doubleOption(String name) {
+        return Double.parseDouble(options.get(name));
+    }
+}
@@ -0,0 +1,42 @@
+package dev.rocketsheep.plugin.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulated item container: item ids and quantities in parallel arrays, plus the
+ * change listeners registered by the item index.
+ */
+public class SimContainer {
+
+    final String[] itemIds;
+    final int[] quantities;
+    final List<Runnable> listeners = new ArrayList<>(1);
+
+    public SimContainer(int capacity) {
+        this.itemIds = new String[capacity];
+        this.quantities = new int[capacity];
+    }
+
+    public int capacity() {
+        return itemIds.length;
+    }
+
+    /**
+     * Puts items into an empty slot, without notifying listeners (used while building a scenario).
+     */
+    public void set(int slot, String itemId, int quantity) {
+        itemIds[slot] = quantity > 0 ? itemId : null;
+        quantities[slot] = quantity;
+    }
+
+    public boolean isEmpty(int slot) {
+        return itemIds[slot] == null;
+    }
+
+    void changed() {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).run();
+        }
+    }
+}
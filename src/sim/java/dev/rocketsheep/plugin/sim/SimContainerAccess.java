@@ -0,0 +1,154 @@
+package dev.rocketsheep.plugin.sim;
+
+import dev.rocketsheep.plugin.platform.ChangeBatch;
+import dev.rocketsheep.plugin.platform.ContainerAccess;
+
+/**
+ * {@link ContainerAccess} for simulated containers. Moves follow the vanilla quick stack
+ * rules: existing stacks of the same item are topped up first, then empty slots are used.
+ * Every item has the same max stack size.
+ *
+ * Counts moves and moved items so the simulator can report throughput, and container
+ * changes against the change notifications actually delivered through the batch.
+ */
+public class SimContainerAccess implements ContainerAccess<SimContainer> {
+
+    private final int maxStack;
+    private final ChangeBatch batch = new ChangeBatch();
+
+    private long moves;
+    private long itemsMoved;
+    private long changes;
+    private long notifications;
+
+    public SimContainerAccess(int maxStack) {
+        this.maxStack = maxStack;
+    }
+
+    public long moves() {
+        return moves;
+    }
+
+    public long itemsMoved() {
+        return itemsMoved;
+    }
+
+    /**
+     * Number of times a container's contents changed.
+     */
+    public long changes() {
+        return changes;
+    }
+
+    /**
+     * Number of change listener calls, after batching.
+     */
+    public long notifications() {
+        return notifications;
+    }
+
+    @Override
+    public int capacity(SimContainer container) {
+        return container.capacity();
+    }
+
+    @Override
+    public String itemId(SimContainer container, int slot) {
+        return container.itemIds[slot];
+    }
+
+    @Override
+    public int quantity(SimContainer container, int slot) {
+        return container.quantities[slot];
+    }
+
+    @Override
+    public int maxStack(SimContainer container, int slot) {
+        return container.isEmpty(slot) ? 0 : maxStack;
+    }
+
+    @Override
+    public int moveFromSlot(SimContainer from, int slot, int quantity, SimContainer to) {
+        String itemId = from.itemIds[slot];
+        int remaining = Math.min(quantity, from.quantities[slot]);
+        if (itemId == null || remaining <= 0) {
+            return 0;
+        }
+
+        int requested = remaining;
+        // Top up existing stacks first
+        for (int i = 0; i < to.capacity() && remaining > 0; i++) {
+            if (itemId.equals(to.itemIds[i])) {
+                int added = Math.min(remaining, maxStack - to.quantities[i]);
+                to.quantities[i] += added;
+                remaining -= added;
+            }
+        }
+        // Then fill empty slots
+        for (int i = 0; i < to.capacity() && remaining > 0; i++) {
+            if (to.itemIds[i] == null) {
+                int added = Math.min(remaining, maxStack);
+                to.itemIds[i] = itemId;
+                to.quantities[i] = added;
+                remaining -= added;
+            }
+        }
+
+        int moved = requested - remaining;
+        if (moved == 0) {
+            return 0;
+        }
+        from.quantities[slot] -= moved;
+        if (from.quantities[slot] == 0) {
+            from.itemIds[slot] = null;
+        }
+        moves++;
+        itemsMoved += moved;
+        changes += 2;
+        from.changed();
+        to.changed();
+        return moved;
+    }
+
+    @Override
+    public int quickStack(SimContainer from, SimContainer to) {
+        int operations = 0;
+        for (int slot = 0; slot < from.capacity(); slot++) {
+            String itemId = from.itemIds[slot];
+            if (itemId != null && holds(to, itemId) && moveFromSlot(from, slot, from.quantities[slot], to) > 0) {
+                operations++;
+            }
+        }
+        return operations;
+    }
+
+    @Override
+    public Subscription onChange(SimContainer container, Runnable listener) {
+        ChangeBatch.Listener batched = new ChangeBatch.Listener(() -> {
+            notifications++;
+            listener.run();
+        });
+        Runnable fire = () -> batch.fire(batched);
+        container.listeners.add(fire);
+        return () -> container.listeners.remove(fire);
+    }
+
+    @Override
+    public void beginBatch() {
+        batch.begin();
+    }
+
+    @Override
+    public void endBatch() {
+        batch.end();
+    }
+
+    private static boolean holds(SimContainer container, String itemId) {
+        for (int i = 0; i < container.capacity(); i++) {
+            if (itemId.equals(container.itemIds[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,74 @@
+package dev.rocketsheep.plugin.sim;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One deposit request in a simulation script.
+ *
+ * Scripts are CSV files with the columns {@code tick,player,trigger,radius}, where
+ * trigger is {@code command} (an /ad from where the player stands) or {@code depositor}
+ * (the player uses the Area Depositor at the start of their aisle). Blank lines and
+ * lines starting with {@code #} are ignored.
+ */
+public record SimEvent(int tick, int player, Trigger trigger, int radius) {
+
+    public enum Trigger { COMMAND, DEPOSITOR }
+
+    private static final String HEADER = "tick,player,trigger,radius";
+
+    /**
+     * Reads a script, sorted by tick.
+     */
+    public static List<SimEvent> read(Path file) throws IOException {
+        List<SimEvent> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.equals(HEADER)) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length != 4) {
+                    throw new IOException(file + ":" + lineNumber + ": expected " + HEADER);
+                }
+                try {
+                    events.add(new SimEvent(
+                        Integer.parseInt(fields[0].trim()),
+                        Integer.parseInt(fields[1].trim()),
+                        Trigger.valueOf(fields[2].trim().toUpperCase(Locale.ROOT)),
+                        Integer.parseInt(fields[3].trim())
+                    ));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        events.sort((a, b) -> Integer.compare(a.tick, b.tick));
+        return events;
+    }
+
+    /**
+     * Writes a script that {@link #read} can replay.
+     */
+    public static void write(Path file, List<SimEvent> events) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (SimEvent event : events) {
+                writer.write(event.tick + "," + event.player + ","
+                    + event.trigger.name().toLowerCase(Locale.ROOT) + "," + event.radius);
+                writer.newLine();
+            }
+        }
+    }
+}
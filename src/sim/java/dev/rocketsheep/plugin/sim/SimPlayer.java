@@ -0,0 +1,61 @@
+package dev.rocketsheep.plugin.sim;
+
+import dev.rocketsheep.plugin.platform.DepositPlayer;
+
+/**
+ * Simulated player standing at a fixed spot in the storage hall. Result messages are
+ * counted rather than sent. Uses identity equality, like a real player reference.
+ */
+public class SimPlayer implements DepositPlayer<SimContainer> {
+
+    private final int id;
+    private final SimContainer storage;
+    private final double x;
+    private final double y;
+    private final double z;
+
+    private int messages;
+
+    public SimPlayer(int id, SimContainer storage, double x, double y, double z) {
+        this.id = id;
+        this.storage = storage;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public double x() {
+        return x;
+    }
+
+    public double y() {
+        return y;
+    }
+
+    public double z() {
+        return z;
+    }
+
+    public int messages() {
+        return messages;
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    @Override
+    public SimContainer getStorage() {
+        return storage;
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        messages++;
+    }
+}
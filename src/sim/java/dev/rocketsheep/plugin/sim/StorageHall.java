@@ -0,0 +1,126 @@
+package dev.rocketsheep.plugin.sim;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+import dev.rocketsheep.plugin.search.SectionAccess;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Generated storage-hall world for the load simulator.
+ *
+ * Each hall is a set of parallel chest walls running along X, {@code stack} chests
+ * high, with a two-block aisle in front of each wall and an Area Depositor block at
+ * the start of every aisle. Halls are placed {@link #HALL_SPACING} blocks apart on X.
+ * Chests are partly filled, each mostly with one item type, the way sorted storage
+ * usually ends up.
+ */
+public class StorageHall implements SectionAccess<SimContainer> {
+
+    public static final int HALL_SPACING = 160;
+    public static final int FLOOR_Y = 64;
+
+    private final Map<Long, SimContainer> containers = new HashMap<>();
+    private final Set<Long> occupiedSections = new HashSet<>();
+    private final List<long[]> aisles = new ArrayList<>();
+
+    /**
+     * @param halls Number of halls
+     * @param rows Chest walls per hall
+     * @param length Chests per wall along X
+     * @param stack Chests stacked per column
+     * @param slots Slots per chest
+     * @param fill Fraction of chest slots holding items
+     * @param itemTypes Number of distinct item ids
+     * @param maxStack Max stack size of every item
+     */
+    public StorageHall(int halls, int rows, int length, int stack, int slots, double fill,
+                       int itemTypes, int maxStack, SplittableRandom random) {
+        for (int hall = 0; hall < halls; hall++) {
+            int originX = hall * HALL_SPACING;
+            for (int row = 0; row < rows; row++) {
+                int wallZ = row * 3;
+                for (int x = originX; x < originX + length; x++) {
+                    for (int y = FLOOR_Y; y < FLOOR_Y + stack; y++) {
+                        SimContainer chest = new SimContainer(slots);
+                        int baseItem = random.nextInt(itemTypes);
+                        for (int slot = 0; slot < slots; slot++) {
+                            if (random.nextDouble() < fill) {
+                                // Mostly the chest's own item, sometimes a neighbor's
+                                int item = random.nextDouble() < 0.8 ? baseItem : random.nextInt(itemTypes);
+                                chest.set(slot, itemId(item), 1 + random.nextInt(maxStack));
+                            }
+                        }
+                        add(x, y, wallZ, chest);
+                    }
+                }
+                // Aisle in front of the wall: {minX, maxX, z, depositorX}
+                aisles.add(new long[] {originX, originX + length - 1, wallZ + 1, originX - 1});
+            }
+        }
+    }
+
+    public static String itemId(int item) {
+        return "Sim_Item_" + item;
+    }
+
+    public int containerCount() {
+        return containers.size();
+    }
+
+    public int aisleCount() {
+        return aisles.size();
+    }
+
+    public int aisleMinX(int aisle) {
+        return (int) aisles.get(aisle)[0];
+    }
+
+    public int aisleMaxX(int aisle) {
+        return (int) aisles.get(aisle)[1];
+    }
+
+    public int aisleZ(int aisle) {
+        return (int) aisles.get(aisle)[2];
+    }
+
+    /**
+     * X of the Area Depositor block at the start of an aisle (at {@link #FLOOR_Y}, {@link #aisleZ}).
+     */
+    public int depositorX(int aisle) {
+        return (int) aisles.get(aisle)[3];
+    }
+
+    @Override
+    public boolean loadSection(int chunkX, int section, int chunkZ) {
+        return occupiedSections.contains(sectionKey(chunkX, section, chunkZ));
+    }
+
+    @Override
+    public SimContainer containerAt(int x, int y, int z) {
+        return containers.get(ChunkMath.pack(x, y, z));
+    }
+
+    /**
+     * Everything above the floor is open air apart from the chests.
+     */
+    @Override
+    public boolean isPassable(int x, int y, int z) {
+        return y >= FLOOR_Y && !containers.containsKey(ChunkMath.pack(x, y, z));
+    }
+
+    private void add(int x, int y, int z, SimContainer chest) {
+        containers.put(ChunkMath.pack(x, y, z), chest);
+        occupiedSections.add(sectionKey(x >> ChunkMath.CHUNK_BITS, y >> ChunkMath.CHUNK_BITS, z >> ChunkMath.CHUNK_BITS));
+    }
+
+    private static long sectionKey(int chunkX, int section, int chunkZ) {
+        // Packed position of the section's lowest corner
+        return ChunkMath.pack(chunkX << ChunkMath.CHUNK_BITS, section << ChunkMath.CHUNK_BITS, chunkZ << ChunkMath.CHUNK_BITS);
+    }
+}
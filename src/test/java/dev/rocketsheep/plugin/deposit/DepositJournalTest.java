@@ -0,0 +1,166 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.platform.DepositPlayer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DepositJournalTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private long now;
+    private final TestPlayer player = new TestPlayer();
+
+    @Test
+    void undoesDepositsNewestFirst() {
+        DepositJournal journal = new DepositJournal(64, 300, () -> now);
+        deposit(journal, 1, 2);
+        deposit(journal, 10, 3);
+
+        DepositJournal.Moves newest = journal.takeLast(player);
+        assertEquals(3, newest.size());
+        assertEquals(12, newest.position(0));
+        assertEquals(10, newest.position(2));
+        assertFalse(newest.isTruncated());
+
+        DepositJournal.Moves older = journal.takeLast(player);
+        assertEquals(2, older.size());
+        assertEquals(2, older.position(0));
+        assertNull(journal.takeLast(player));
+    }
+
+    @Test
+    void keepsEveryFieldOfAMove() {
+        DepositJournal journal = new DepositJournal(64, 300, () -> now);
+        journal.begin(player);
+        journal.record(player, 42L, 7, 3, 16, 99);
+
+        DepositJournal.Moves moves = journal.takeLast(player);
+        assertEquals(42L, moves.position(0));
+        assertEquals(7, moves.slot(0));
+        assertEquals(3, moves.itemKey(0));
+        assertEquals(16, moves.quantity(0));
+        assertEquals(99, moves.version(0));
+    }
+
+    @Test
+    void growingTheRingKeepsTheOrder() {
+        DepositJournal journal = new DepositJournal(64, 300, () -> now);
+        deposit(journal, 0, 40);
+
+        DepositJournal.Moves moves = journal.takeLast(player);
+        assertEquals(40, moves.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(39 - i, moves.position(i));
+        }
+    }
+
+    @Test
+    void aFullRingOverwritesTheOldestMoves() {
+        DepositJournal journal = new DepositJournal(4, 300, () -> now);
+        deposit(journal, 0, 6);
+
+        DepositJournal.Moves moves = journal.takeLast(player);
+        assertEquals(4, moves.size());
+        assertEquals(5, moves.position(0));
+        assertEquals(2, moves.position(3));
+        assertTrue(moves.isTruncated());
+        assertNull(journal.takeLast(player));
+    }
+
+    @Test
+    void depositsWhoseMovesWereAllOverwrittenAreForgotten() {
+        DepositJournal journal = new DepositJournal(4, 300, () -> now);
+        deposit(journal, 0, 2);
+        deposit(journal, 10, 4);
+
+        DepositJournal.Moves moves = journal.takeLast(player);
+        assertEquals(4, moves.size());
+        assertFalse(moves.isTruncated());
+        assertNull(journal.takeLast(player));
+    }
+
+    @Test
+    void remembersALimitedNumberOfDeposits() {
+        DepositJournal journal = new DepositJournal(64, 300, () -> now);
+        for (int i = 0; i < 10; i++) {
+            deposit(journal, i * 10, 1);
+        }
+
+        int undone = 0;
+        while (journal.takeLast(player) != null) {
+            undone++;
+        }
+        assertEquals(8, undone);
+    }
+
+    @Test
+    void expiredDepositsCanNotBeUndone() {
+        DepositJournal journal = new DepositJournal(64, 300, () -> now);
+        deposit(journal, 0, 1);
+        now += 200 * SECOND;
+        deposit(journal, 10, 1);
+        now += 200 * SECOND;
+
+        assertEquals(10, journal.takeLast(player).position(0));
+        assertNull(journal.takeLast(player));
+    }
+
+    @Test
+    void pruneDropsExpiredAndDeparted() {
+        DepositJournal journal = new DepositJournal(64, 30, () -> now);
+        TestPlayer departed = new TestPlayer();
+        deposit(journal, 0, 1);
+        journal.begin(departed);
+        journal.record(departed, 5, 0, 1, 1, 1);
+        departed.valid = false;
+
+        now += 60 * SECOND;
+        journal.prune();
+
+        assertNull(journal.takeLast(player));
+        assertNull(journal.takeLast(departed));
+    }
+
+    @Test
+    void aDisabledJournalRecordsNothing() {
+        DepositJournal journal = new DepositJournal(0, 300, () -> now);
+        deposit(journal, 0, 3);
+
+        assertFalse(journal.isEnabled());
+        assertNull(journal.takeLast(player));
+    }
+
+    /**
+     * Records a deposit of {@code count} moves into positions {@code first},
+     * {@code first + 1}, ...
+     */
+    private void deposit(DepositJournal journal, long first, int count) {
+        journal.begin(player);
+        for (int i = 0; i < count; i++) {
+            journal.record(player, first + i, i, 1, 1, 1);
+        }
+    }
+
+    private static final class TestPlayer implements DepositPlayer<Object> {
+        boolean valid = true;
+
+        @Override
+        public boolean isValid() {
+            return valid;
+        }
+
+        @Override
+        public Object getStorage() {
+            return null;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+        }
+    }
+}
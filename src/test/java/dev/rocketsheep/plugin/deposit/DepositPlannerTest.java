@@ -0,0 +1,94 @@
+package dev.rocketsheep.plugin.deposit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DepositPlannerTest {
+
+    private static final int MAX_STACK = 64;
+
+    @Test
+    void onlyDepositsItemsTheContainerAlreadyHolds() {
+        TransferPlan plan = DepositPlanner.plan(snapshot(
+            storage("Stone:10", "Dirt:5"),
+            storage("Stone:1", null, null)));
+
+        assertEquals(1, plan.size());
+        assertMove(plan, 0, 0, 0, "Stone", 10);
+    }
+
+    @Test
+    void topsUpStacksWithinTheStackLimit() {
+        TransferPlan plan = DepositPlanner.plan(snapshot(
+            storage("Stone:10"),
+            storage("Stone:60")));
+
+        assertEquals(1, plan.size());
+        assertMove(plan, 0, 0, 0, "Stone", 4);
+    }
+
+    @Test
+    void startsNewStacksInEmptySlots() {
+        TransferPlan plan = DepositPlanner.plan(snapshot(
+            storage("Stone:64", "Stone:36", "Stone:64"),
+            storage("Stone:64", null, null)));
+
+        // Two empty slots take the first two stacks, and the third tops up the second
+        assertEquals(3, plan.size());
+        assertMove(plan, 0, 0, 0, "Stone", 64);
+        assertMove(plan, 1, 1, 0, "Stone", 36);
+        assertMove(plan, 2, 2, 0, "Stone", 28);
+    }
+
+    @Test
+    void fillsContainersInDepositOrder() {
+        TransferPlan plan = DepositPlanner.plan(snapshot(
+            storage("Stone:10", "Dirt:3"),
+            storage("Stone:60"),
+            storage("Dirt:1", null),
+            storage("Stone:1", null)));
+
+        assertEquals(3, plan.size());
+        assertMove(plan, 0, 0, 0, "Stone", 4);
+        assertMove(plan, 1, 1, 1, "Dirt", 3);
+        assertMove(plan, 2, 0, 2, "Stone", 6);
+    }
+
+    @Test
+    void emptyStorageOrNoMatchesPlanNothing() {
+        assertTrue(DepositPlanner.plan(snapshot(storage(null, null), storage("Stone:1"))).isEmpty());
+        assertTrue(DepositPlanner.plan(snapshot(storage("Dirt:4"), storage("Stone:1", null))).isEmpty());
+    }
+
+    private static void assertMove(TransferPlan plan, int move, int slot, int target, String itemId, int quantity) {
+        assertEquals(TransferPlan.PLAYER, plan.source(move));
+        assertEquals(slot, plan.slot(move));
+        assertEquals(target, plan.target(move));
+        assertEquals(ItemKeys.keyOf(itemId), plan.itemKey(move));
+        assertEquals(quantity, plan.quantity(move));
+    }
+
+    static DepositSnapshot snapshot(InventorySnapshot player, InventorySnapshot... containers) {
+        return new DepositSnapshot(player, new long[containers.length], containers, new int[containers.length]);
+    }
+
+    /**
+     * Builds a snapshot from slots written as "ItemId:quantity", or null for an empty slot.
+     */
+    static InventorySnapshot storage(String... slots) {
+        int[] keys = new int[slots.length];
+        int[] quantities = new int[slots.length];
+        int[] maxStacks = new int[slots.length];
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (slots[slot] != null) {
+                String[] parts = slots[slot].split(":");
+                keys[slot] = ItemKeys.keyOf(parts[0]);
+                quantities[slot] = Integer.parseInt(parts[1]);
+                maxStacks[slot] = MAX_STACK;
+            }
+        }
+        return new InventorySnapshot(keys, quantities, maxStacks);
+    }
+}
@@ -0,0 +1,118 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.platform.DepositPlayer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DepositSchedulerTest {
+
+    private long now;
+    private final DepositScheduler scheduler = new DepositScheduler(() -> now);
+
+    @Test
+    void failingStepReleasesThePlayerAndOtherJobsKeepRunning() {
+        TestPlayer failing = new TestPlayer();
+        TestPlayer other = new TestPlayer();
+        TestJob broken = new TestJob(failing, 1, true);
+        TestJob healthy = new TestJob(other, 1, false);
+        assertEquals(DepositThrottle.Result.STARTED, scheduler.request(broken));
+        assertEquals(DepositThrottle.Result.STARTED, scheduler.request(healthy));
+
+        // The tick budget is wall-clock time and logging the failure may use it up, so
+        // the healthy job may only run on a later tick
+        for (int tick = 0; tick < 10 && scheduler.pendingJobs() > 0; tick++) {
+            scheduler.tick();
+        }
+
+        assertEquals(0, scheduler.pendingJobs());
+        assertEquals(1, healthy.steps);
+        assertEquals(1, failing.messages.size());
+
+        // Past the cooldown the player can deposit again instead of being stuck in flight
+        now += 60_000_000_000L;
+        assertEquals(DepositThrottle.Result.STARTED, scheduler.request(new TestJob(failing, 1, false)));
+    }
+
+    @Test
+    void unfinishedJobsResumeOnTheNextTick() {
+        TestJob job = new TestJob(new TestPlayer(), 3, false);
+        scheduler.request(job);
+
+        for (int tick = 0; tick < 3; tick++) {
+            scheduler.tick();
+        }
+
+        assertEquals(3, job.steps);
+        assertEquals(0, scheduler.pendingJobs());
+    }
+
+    private static final class TestJob implements ScheduledJob {
+        private final TestPlayer player;
+        private final int totalSteps;
+        private final boolean fail;
+        int steps;
+        private int merged;
+
+        TestJob(TestPlayer player, int totalSteps, boolean fail) {
+            this.player = player;
+            this.totalSteps = totalSteps;
+            this.fail = fail;
+        }
+
+        @Override
+        public DepositPlayer<?> getPlayer() {
+            return player;
+        }
+
+        @Override
+        public int getMergedRequests() {
+            return merged;
+        }
+
+        @Override
+        public void addMergedRequests(int count) {
+            merged += count;
+        }
+
+        @Override
+        public boolean coversSameArea(ScheduledJob other) {
+            return false;
+        }
+
+        @Override
+        public boolean isWaiting() {
+            return false;
+        }
+
+        @Override
+        public boolean step(long deadlineNanos) {
+            if (fail) {
+                throw new IllegalStateException("broken job");
+            }
+            return ++steps >= totalSteps;
+        }
+    }
+
+    private static final class TestPlayer implements DepositPlayer<Object> {
+        final List<String> messages = new ArrayList<>();
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+
+        @Override
+        public Object getStorage() {
+            return null;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+            messages.add(message);
+        }
+    }
+}
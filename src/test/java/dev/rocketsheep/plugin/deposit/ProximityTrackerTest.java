@@ -0,0 +1,64 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+import dev.rocketsheep.plugin.index.DepositorHash;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProximityTrackerTest {
+
+    private static final long MILLIS = 1_000_000L;
+    private static final long DEPOSITOR = ChunkMath.pack(0, 0, 0);
+
+    private final DepositorHash depositors = new DepositorHash(8, null);
+    private final ProximityTracker<String> tracker = new ProximityTracker<>(depositors, player -> true, 1000, 4);
+
+    @Test
+    void firesOnceAfterTheDwellTime() {
+        depositors.add(0, 0, 0);
+
+        assertEquals(DepositorHash.NONE, update(1.5, 0.5, 0.5, 0));
+        assertEquals(DepositorHash.NONE, update(1.5, 0.5, 0.5, 999));
+        assertEquals(DEPOSITOR, update(1.5, 0.5, 0.5, 1000));
+        assertEquals(DepositorHash.NONE, update(1.5, 0.5, 0.5, 5000));
+    }
+
+    @Test
+    void walkingOutOfRangeWithinACellCancelsTheDwell() {
+        depositors.add(0, 0, 0);
+        update(1.5, 0.5, 0.5, 0);
+
+        // Same cell, but about 12 blocks from the depositor
+        assertEquals(DepositorHash.NONE, update(7.5, 7.5, 7.5, 500));
+        assertEquals(DepositorHash.NONE, update(7.5, 7.5, 7.5, 2000));
+    }
+
+    @Test
+    void walkingIntoRangeWithinACellStartsTheDwell() {
+        depositors.add(0, 0, 0);
+        assertEquals(DepositorHash.NONE, update(7.5, 7.5, 7.5, 0));
+
+        assertEquals(DepositorHash.NONE, update(1.5, 0.5, 0.5, 500));
+        assertEquals(DepositorHash.NONE, update(1.5, 0.5, 0.5, 1499));
+        assertEquals(DEPOSITOR, update(1.5, 0.5, 0.5, 1500));
+    }
+
+    @Test
+    void limitsHowManyFirePerTick() {
+        depositors.add(0, 0, 0);
+        ProximityTracker<String> limited = new ProximityTracker<>(depositors, player -> true, 0, 1);
+
+        limited.beginTick(0);
+        assertEquals(DEPOSITOR, limited.update("a", 1.5, 0.5, 0.5, 0));
+        assertEquals(DepositorHash.NONE, limited.update("b", 1.5, 0.5, 0.5, 0));
+
+        limited.beginTick(50 * MILLIS);
+        assertEquals(DEPOSITOR, limited.update("b", 1.5, 0.5, 0.5, 50 * MILLIS));
+    }
+
+    private long update(double x, double y, double z, long millis) {
+        tracker.beginTick(millis * MILLIS);
+        return tracker.update("player", x, y, z, millis * MILLIS);
+    }
+}
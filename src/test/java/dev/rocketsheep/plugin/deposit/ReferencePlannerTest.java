@@ -0,0 +1,70 @@
+package dev.rocketsheep.plugin.deposit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReferencePlannerTest {
+
+    private static final String[] ITEMS = {"Stone", "Dirt", "Wood_Oak", "Wood_Birch", "Ore_Iron", "Arrow"};
+    private static final int[] MAX_STACKS = {64, 64, 32, 32, 16, 1};
+
+    @Test
+    void plannerMatchesTheReferenceMoveForMove() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int round = 0; round < 500; round++) {
+            DepositSnapshot snapshot = randomSnapshot(random);
+            TransferPlan expected = ReferencePlanner.plan(snapshot, DepositMode.QUICK_STACK);
+            TransferPlan actual = DepositPlanner.plan(snapshot, DepositMode.QUICK_STACK);
+
+            assertEquals(expected.size(), actual.size(), "moves in round " + round);
+            for (int move = 0; move < expected.size(); move++) {
+                String where = "move " + move + " in round " + round;
+                assertEquals(expected.source(move), actual.source(move), where);
+                assertEquals(expected.slot(move), actual.slot(move), where);
+                assertEquals(expected.target(move), actual.target(move), where);
+                assertEquals(expected.itemKey(move), actual.itemKey(move), where);
+                assertEquals(expected.quantity(move), actual.quantity(move), where);
+            }
+        }
+    }
+
+    @Test
+    void sortModesUseTheSortPlanner() {
+        DepositSnapshot snapshot = DepositPlannerTest.snapshot(
+            DepositPlannerTest.storage("Stone:10"),
+            DepositPlannerTest.storage("Dirt:1", null),
+            DepositPlannerTest.storage("Stone:1", null));
+
+        TransferPlan plan = ReferencePlanner.plan(snapshot, DepositMode.SORT);
+        assertEquals(1, plan.size());
+        assertEquals(1, plan.target(0));
+    }
+
+    private static DepositSnapshot randomSnapshot(SplittableRandom random) {
+        InventorySnapshot player = randomStorage(random, 1 + random.nextInt(12), 0.8);
+        InventorySnapshot[] containers = new InventorySnapshot[random.nextInt(7)];
+        for (int i = 0; i < containers.length; i++) {
+            containers[i] = randomStorage(random, 1 + random.nextInt(9), random.nextDouble());
+        }
+        return new DepositSnapshot(player, new long[containers.length], containers, new int[containers.length]);
+    }
+
+    private static InventorySnapshot randomStorage(SplittableRandom random, int size, double fill) {
+        int[] keys = new int[size];
+        int[] quantities = new int[size];
+        int[] maxStacks = new int[size];
+        for (int slot = 0; slot < size; slot++) {
+            if (random.nextDouble() >= fill) {
+                continue;
+            }
+            int item = random.nextInt(ITEMS.length);
+            keys[slot] = ItemKeys.keyOf(ITEMS[item]);
+            maxStacks[slot] = MAX_STACKS[item];
+            quantities[slot] = 1 + random.nextInt(MAX_STACKS[item]);
+        }
+        return new InventorySnapshot(keys, quantities, maxStacks);
+    }
+}
@@ -0,0 +1,92 @@
+package dev.rocketsheep.plugin.deposit;
+
+import org.junit.jupiter.api.Test;
+
+import static dev.rocketsheep.plugin.deposit.DepositPlannerTest.snapshot;
+import static dev.rocketsheep.plugin.deposit.DepositPlannerTest.storage;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SortPlannerTest {
+
+    @Test
+    void prefersTheContainerHoldingMostOfTheItem() {
+        TransferPlan plan = SortPlanner.plan(snapshot(
+            storage("Stone:10"),
+            storage("Stone:1", null),
+            storage("Stone:30", null)), false);
+
+        assertEquals(1, plan.size());
+        assertMove(plan, 0, TransferPlan.PLAYER, 0, 1, "Stone", 10);
+    }
+
+    @Test
+    void prefersSameCategoryContainersOverEmptyOnes() {
+        TransferPlan plan = SortPlanner.plan(snapshot(
+            storage("Wood_Oak:5"),
+            storage(null, null),
+            storage("Wood_Birch:3", null)), false);
+
+        assertEquals(1, plan.size());
+        assertMove(plan, 0, TransferPlan.PLAYER, 0, 1, "Wood_Oak", 5);
+    }
+
+    @Test
+    void anEmptyContainerTakesOnTheCategoryOfWhatItIsGiven() {
+        TransferPlan plan = SortPlanner.plan(snapshot(
+            storage("Ore_Iron:5", "Ore_Copper:5"),
+            storage(null, null),
+            storage(null, null)), false);
+
+        // Once the first ore starts the empty container, the second follows it there
+        assertEquals(2, plan.size());
+        assertMove(plan, 0, TransferPlan.PLAYER, 0, 0, "Ore_Iron", 5);
+        assertMove(plan, 1, TransferPlan.PLAYER, 1, 0, "Ore_Copper", 5);
+    }
+
+    @Test
+    void leavesMixedContainersAlone() {
+        TransferPlan plan = SortPlanner.plan(snapshot(
+            storage("Wood_Oak:5"),
+            storage("Stone:1", "Wood_Birch:1", null)), false);
+
+        assertTrue(plan.isEmpty());
+    }
+
+    @Test
+    void overflowsIntoAnEmptyContainerGroupedByTarget() {
+        TransferPlan plan = SortPlanner.plan(snapshot(
+            storage("Stone:64", "Stone:64"),
+            storage("Stone:60"),
+            storage((String) null)), false);
+
+        // The holder's last 4, then one new stack with room for 4 more; the rest stays
+        assertEquals(3, plan.size());
+        assertMove(plan, 0, TransferPlan.PLAYER, 0, 0, "Stone", 4);
+        assertMove(plan, 1, TransferPlan.PLAYER, 0, 1, "Stone", 60);
+        assertMove(plan, 2, TransferPlan.PLAYER, 1, 1, "Stone", 4);
+    }
+
+    @Test
+    void gathersScatteredStacksOnlyWhenAsked() {
+        DepositSnapshot snapshot = snapshot(
+            storage("Dirt:1"),
+            storage("Stone:5", null),
+            storage("Stone:20", null));
+
+        assertTrue(SortPlanner.plan(snapshot, false).isEmpty());
+
+        TransferPlan plan = SortPlanner.plan(snapshot, true);
+        assertEquals(1, plan.size());
+        assertMove(plan, 0, 0, 0, 1, "Stone", 5);
+    }
+
+    private static void assertMove(TransferPlan plan, int move, int source, int slot, int target, String itemId,
+                                   int quantity) {
+        assertEquals(source, plan.source(move));
+        assertEquals(slot, plan.slot(move));
+        assertEquals(target, plan.target(move));
+        assertEquals(ItemKeys.keyOf(itemId), plan.itemKey(move));
+        assertEquals(quantity, plan.quantity(move));
+    }
+}
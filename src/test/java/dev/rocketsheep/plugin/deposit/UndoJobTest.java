@@ -0,0 +1,320 @@
+package dev.rocketsheep.plugin.deposit;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+import dev.rocketsheep.plugin.index.ContainerIndex;
+import dev.rocketsheep.plugin.index.ItemIndex;
+import dev.rocketsheep.plugin.platform.ChangeBatch;
+import dev.rocketsheep.plugin.platform.ContainerAccess;
+import dev.rocketsheep.plugin.platform.DepositPlayer;
+import dev.rocketsheep.plugin.search.LocatorStrategy;
+import dev.rocketsheep.plugin.search.SearchMode;
+import dev.rocketsheep.plugin.search.SectionAccess;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UndoJobTest {
+
+    private static final int MAX_STACK = 64;
+
+    private final TestAccess access = new TestAccess();
+    private final TestWorld world = new TestWorld();
+    private final ContainerIndex<TestContainer> containerIndex = new ContainerIndex<>(world);
+    private final ItemIndex<TestContainer> itemIndex = new ItemIndex<>(access);
+    private final DepositJournal journal = new DepositJournal(256, 300);
+    private final DepositPlanner planner = new DepositPlanner();
+    private final TestPlayer player = new TestPlayer(new TestContainer(9));
+
+    @AfterEach
+    void closePlanner() {
+        planner.close();
+    }
+
+    @Test
+    void undoTakesBackOnlyWhatTheDepositMoved() {
+        TestContainer chest = world.place(0, 64, 0, 9);
+        chest.set(3, "Stone", 10);
+        player.storage.set(0, "Stone", 20);
+        player.storage.set(1, "Dirt", 5);
+
+        deposit();
+        assertEquals(30, chest.quantities[3]);
+        assertNull(player.storage.itemIds[0]);
+
+        undo();
+        assertEquals(10, chest.quantities[3]);
+        assertEquals(20, total(player.storage, "Stone"));
+        assertEquals(5, total(player.storage, "Dirt"));
+    }
+
+    @Test
+    void undoLeavesAChangedContainerAlone() {
+        TestContainer chest = world.place(0, 64, 0, 9);
+        TestContainer other = world.place(2, 64, 0, 9);
+        chest.set(0, "Stone", 10);
+        other.set(0, "Dirt", 1);
+        player.storage.set(0, "Stone", 20);
+        player.storage.set(1, "Dirt", 5);
+
+        deposit();
+        assertEquals(30, chest.quantities[0]);
+        assertEquals(6, other.quantities[0]);
+
+        // Someone takes the stone out and stores their own in another slot
+        chest.set(0, null, 0);
+        chest.set(5, "Stone", 64);
+        chest.changed();
+
+        undo();
+        assertEquals(64, chest.quantities[5]);
+        assertEquals(0, total(player.storage, "Stone"));
+        assertEquals(1, other.quantities[0]);
+        assertEquals(5, total(player.storage, "Dirt"));
+        assertTrue(player.messages.get(player.messages.size() - 1).contains("changed since"));
+    }
+
+    @Test
+    void undoSkipsBrokenContainers() {
+        TestContainer chest = world.place(0, 64, 0, 9);
+        chest.set(0, "Stone", 10);
+        player.storage.set(0, "Stone", 20);
+
+        deposit();
+        world.remove(0, 64, 0);
+
+        undo();
+        assertEquals(0, total(player.storage, "Stone"));
+        assertTrue(player.messages.get(player.messages.size() - 1).contains("gone"));
+    }
+
+    @Test
+    void stepsStartedPastTheDeadlineStillFinishTheDeposit() {
+        // More candidates than one step handles, with every step's budget already spent
+        for (int i = 0; i < 40; i++) {
+            world.place(i % 8 - 4, 64, i / 8, 9).set(0, "Stone", 1);
+        }
+        player.storage.set(0, "Stone", 40);
+
+        deposit(Long.MIN_VALUE);
+        assertEquals(0, total(player.storage, "Stone"));
+
+        undo();
+        assertEquals(40, total(player.storage, "Stone"));
+    }
+
+    private void deposit() {
+        deposit(Long.MAX_VALUE);
+    }
+
+    private void deposit(long deadlineNanos) {
+        DepositJob<TestContainer> job = new DepositJob<>(player, DepositTrigger.COMMAND, DepositMode.QUICK_STACK,
+            SearchMode.SPHERE, new DepositStrategy(LocatorStrategy.SCAN, ExecutorStrategy.PLANNED, false), planner,
+            containerIndex, itemIndex, access, journal, 0.5, 64.5, 2.5, 8);
+        run(job, deadlineNanos);
+    }
+
+    private void undo() {
+        run(new UndoJob<>(player, journal, containerIndex, itemIndex, access), Long.MAX_VALUE);
+    }
+
+    private static void run(ScheduledJob job, long deadlineNanos) {
+        for (int step = 0; step < 100_000; step++) {
+            while (job.isWaiting()) {
+                Thread.onSpinWait();
+            }
+            if (job.step(deadlineNanos)) {
+                return;
+            }
+        }
+        throw new AssertionError("Job did not finish");
+    }
+
+    private static int total(TestContainer container, String itemId) {
+        int total = 0;
+        for (int slot = 0; slot < container.capacity(); slot++) {
+            if (itemId.equals(container.itemIds[slot])) {
+                total += container.quantities[slot];
+            }
+        }
+        return total;
+    }
+
+    private static final class TestContainer {
+        final String[] itemIds;
+        final int[] quantities;
+        final List<Runnable> listeners = new ArrayList<>();
+
+        TestContainer(int capacity) {
+            itemIds = new String[capacity];
+            quantities = new int[capacity];
+        }
+
+        int capacity() {
+            return itemIds.length;
+        }
+
+        void set(int slot, String itemId, int quantity) {
+            itemIds[slot] = quantity > 0 ? itemId : null;
+            quantities[slot] = quantity;
+        }
+
+        void changed() {
+            for (Runnable listener : new ArrayList<>(listeners)) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Containers at block positions; every section counts as loaded and every other
+     * block as open.
+     */
+    private static final class TestWorld implements SectionAccess<TestContainer> {
+        private final Map<Long, TestContainer> containers = new HashMap<>();
+
+        TestContainer place(int x, int y, int z, int capacity) {
+            TestContainer container = new TestContainer(capacity);
+            containers.put(ChunkMath.pack(x, y, z), container);
+            return container;
+        }
+
+        void remove(int x, int y, int z) {
+            containers.remove(ChunkMath.pack(x, y, z));
+        }
+
+        @Override
+        public boolean loadSection(int chunkX, int section, int chunkZ) {
+            return true;
+        }
+
+        @Override
+        public TestContainer containerAt(int x, int y, int z) {
+            return containers.get(ChunkMath.pack(x, y, z));
+        }
+
+        @Override
+        public boolean isPassable(int x, int y, int z) {
+            return !containers.containsKey(ChunkMath.pack(x, y, z));
+        }
+    }
+
+    /**
+     * Moves the way a quick stack does: existing stacks first, then empty slots.
+     */
+    private static final class TestAccess implements ContainerAccess<TestContainer> {
+        private final ChangeBatch batch = new ChangeBatch();
+
+        @Override
+        public int capacity(TestContainer container) {
+            return container.capacity();
+        }
+
+        @Override
+        public String itemId(TestContainer container, int slot) {
+            return container.itemIds[slot];
+        }
+
+        @Override
+        public int quantity(TestContainer container, int slot) {
+            return container.quantities[slot];
+        }
+
+        @Override
+        public int maxStack(TestContainer container, int slot) {
+            return container.itemIds[slot] == null ? 0 : MAX_STACK;
+        }
+
+        @Override
+        public int moveFromSlot(TestContainer from, int slot, int quantity, TestContainer to) {
+            String itemId = from.itemIds[slot];
+            int remaining = Math.min(quantity, from.quantities[slot]);
+            if (itemId == null || remaining <= 0) {
+                return 0;
+            }
+            int requested = remaining;
+            for (int i = 0; i < to.capacity() && remaining > 0; i++) {
+                if (itemId.equals(to.itemIds[i])) {
+                    int added = Math.min(remaining, MAX_STACK - to.quantities[i]);
+                    to.quantities[i] += added;
+                    remaining -= added;
+                }
+            }
+            for (int i = 0; i < to.capacity() && remaining > 0; i++) {
+                if (to.itemIds[i] == null) {
+                    int added = Math.min(remaining, MAX_STACK);
+                    to.set(i, itemId, added);
+                    remaining -= added;
+                }
+            }
+            int moved = requested - remaining;
+            if (moved > 0) {
+                from.set(slot, itemId, from.quantities[slot] - moved);
+                from.changed();
+                to.changed();
+            }
+            return moved;
+        }
+
+        @Override
+        public int quickStack(TestContainer from, TestContainer to) {
+            int operations = 0;
+            for (int slot = 0; slot < from.capacity(); slot++) {
+                String itemId = from.itemIds[slot];
+                if (itemId != null && total(to, itemId) > 0 && moveFromSlot(from, slot, from.quantities[slot], to) > 0) {
+                    operations++;
+                }
+            }
+            return operations;
+        }
+
+        @Override
+        public Subscription onChange(TestContainer container, Runnable listener) {
+            ChangeBatch.Listener batched = new ChangeBatch.Listener(listener);
+            Runnable fire = () -> batch.fire(batched);
+            container.listeners.add(fire);
+            return () -> container.listeners.remove(fire);
+        }
+
+        @Override
+        public void beginBatch() {
+            batch.begin();
+        }
+
+        @Override
+        public void endBatch() {
+            batch.end();
+        }
+    }
+
+    private static final class TestPlayer implements DepositPlayer<TestContainer> {
+        final TestContainer storage;
+        final List<String> messages = new ArrayList<>();
+
+        TestPlayer(TestContainer storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+
+        @Override
+        public TestContainer getStorage() {
+            return storage;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+            messages.add(message);
+        }
+    }
+}
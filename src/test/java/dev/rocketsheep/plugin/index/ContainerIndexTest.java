@@ -0,0 +1,188 @@
+package dev.rocketsheep.plugin.index;
+
+import dev.rocketsheep.plugin.search.ContainerHits;
+import dev.rocketsheep.plugin.search.SectionAccess;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContainerIndexTest {
+
+    private final TestWorld world = new TestWorld();
+    private final ContainerIndex<Long> index = new ContainerIndex<>(world);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void queriesMatchAFullScan() {
+        SplittableRandom random = new SplittableRandom(5);
+        for (int i = 0; i < 300; i++) {
+            world.container(random.nextInt(-50, 50), random.nextInt(0, 120), random.nextInt(-50, 50));
+        }
+
+        for (int round = 0; round < 40; round++) {
+            double x = random.nextDouble(-30, 30);
+            double y = random.nextDouble(20, 100);
+            double z = random.nextDouble(-30, 30);
+            double radius = random.nextDouble(1, 20);
+            Set<Long> expected = positions(index.scan(x, y, z, radius));
+            assertEquals(expected, positions(index.query(x, y, z, radius)), "round " + round);
+        }
+    }
+
+    @Test
+    void scansEachSectionOnlyOnce() {
+        world.container(3, 64, 3);
+        index.query(3.5, 64.5, 3.5, 8);
+        int firstLookups = world.lookups;
+
+        world.lookups = 0;
+        index.query(3.5, 64.5, 3.5, 8);
+        assertTrue(firstLookups >= ChunkMath.CHUNK_SIZE * ChunkMath.CHUNK_SIZE * ChunkMath.CHUNK_SIZE);
+        assertEquals(1, world.lookups);
+    }
+
+    @Test
+    void changesAreOnlySeenOnceMarkedDirty() {
+        world.container(3, 64, 3);
+        index.query(3.5, 64.5, 3.5, 8);
+
+        world.container(5, 64, 3);
+        world.remove(3, 64, 3);
+        assertEquals(Set.of(), positions(index.query(3.5, 64.5, 3.5, 8)));
+
+        index.markDirty(5, 64, 3);
+        assertEquals(Set.of(ChunkMath.pack(5, 64, 3)), positions(index.query(3.5, 64.5, 3.5, 8)));
+    }
+
+    @Test
+    void sectionsOfUnloadedChunksAreScannedOnceTheyLoad() {
+        world.container(40, 64, 3);
+        world.unloadChunk(1, 0);
+        assertEquals(Set.of(), positions(index.query(40.5, 64.5, 3.5, 4)));
+
+        world.loadChunk(1, 0);
+        assertEquals(Set.of(ChunkMath.pack(40, 64, 3)), positions(index.query(40.5, 64.5, 3.5, 4)));
+    }
+
+    @Test
+    void reloadedAndInvalidatedChunksAreRescanned() {
+        index.query(3.5, 64.5, 3.5, 8);
+        world.container(2, 64, 3);
+        index.onChunkUnloaded(0, 0);
+        index.onChunkLoaded(0, 0);
+        assertEquals(Set.of(ChunkMath.pack(2, 64, 3)), positions(index.query(3.5, 64.5, 3.5, 8)));
+
+        world.container(4, 64, 3);
+        index.invalidateChunk(0, 0);
+        assertEquals(Set.of(ChunkMath.pack(2, 64, 3), ChunkMath.pack(4, 64, 3)),
+            positions(index.query(3.5, 64.5, 3.5, 8)));
+    }
+
+    @Test
+    void storedColumnsOfTheSameRunAreReloadedWithoutRescanning() {
+        ContainerIndex<Long> stored = new ContainerIndex<>(world, new RegionStore(dir));
+        world.container(3, 64, 3);
+        stored.query(3.5, 64.5, 3.5, 8);
+        world.container(4, 64, 3);
+        stored.markDirty(4, 64, 3);
+        stored.query(3.5, 64.5, 3.5, 8);
+
+        stored.onChunkUnloaded(0, 0);
+        // The sphere reaches into three neighbouring columns, which are written too
+        assertEquals(4, stored.flush());
+        assertEquals(0, stored.flush());
+        stored.onChunkLoaded(0, 0);
+
+        world.lookups = 0;
+        assertEquals(Set.of(ChunkMath.pack(3, 64, 3), ChunkMath.pack(4, 64, 3)),
+            positions(stored.query(3.5, 64.5, 3.5, 8)));
+        // Each stored position is verified once and looked up once; nothing is scanned
+        assertEquals(4, world.lookups);
+        stored.close();
+    }
+
+    @Test
+    void storedColumnsOfAnEarlierRunAreRescanned() {
+        ContainerIndex<Long> before = new ContainerIndex<>(world, new RegionStore(dir));
+        world.container(3, 64, 3);
+        before.query(3.5, 64.5, 3.5, 8);
+        before.close();
+
+        // Changed while nothing was tracking the world
+        world.remove(3, 64, 3);
+        world.container(5, 64, 3);
+
+        ContainerIndex<Long> after = new ContainerIndex<>(world, new RegionStore(dir));
+        after.onChunkLoaded(0, 0);
+        assertEquals(Set.of(ChunkMath.pack(5, 64, 3)), positions(after.query(3.5, 64.5, 3.5, 8)));
+        after.close();
+    }
+
+    private static Set<Long> positions(ContainerHits<Long> hits) {
+        Set<Long> found = new HashSet<>();
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals(hits.position(i), (long) hits.container(i));
+            assertTrue(found.add(hits.position(i)), "container reported twice");
+        }
+        return found;
+    }
+
+    /**
+     * Containers (identified by their packed position) in an otherwise empty world,
+     * with every chunk loaded unless unloaded explicitly. Counts block lookups.
+     */
+    private static final class TestWorld implements SectionAccess<Long> {
+        private final Set<Long> containers = new HashSet<>();
+        private final Map<Long, Boolean> unloadedChunks = new HashMap<>();
+        int lookups;
+
+        void container(int x, int y, int z) {
+            containers.add(ChunkMath.pack(x, y, z));
+        }
+
+        void remove(int x, int y, int z) {
+            containers.remove(ChunkMath.pack(x, y, z));
+        }
+
+        void unloadChunk(int chunkX, int chunkZ) {
+            unloadedChunks.put(ChunkMath.chunkKey(chunkX, chunkZ), Boolean.TRUE);
+        }
+
+        void loadChunk(int chunkX, int chunkZ) {
+            unloadedChunks.remove(ChunkMath.chunkKey(chunkX, chunkZ));
+        }
+
+        @Override
+        public boolean loadSection(int chunkX, int section, int chunkZ) {
+            return isChunkLoaded(chunkX, chunkZ);
+        }
+
+        @Override
+        public boolean isChunkLoaded(int chunkX, int chunkZ) {
+            return !unloadedChunks.containsKey(ChunkMath.chunkKey(chunkX, chunkZ));
+        }
+
+        @Override
+        public Long containerAt(int x, int y, int z) {
+            lookups++;
+            long packed = ChunkMath.pack(x, y, z);
+            return containers.contains(packed) ? packed : null;
+        }
+
+        @Override
+        public boolean isPassable(int x, int y, int z) {
+            return !containers.contains(ChunkMath.pack(x, y, z));
+        }
+    }
+}
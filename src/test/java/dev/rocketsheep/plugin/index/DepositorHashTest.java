@@ -0,0 +1,94 @@
+package dev.rocketsheep.plugin.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class DepositorHashTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void cellsRoundTowardsNegativeInfinity() {
+        DepositorHash hash = new DepositorHash(8, null);
+
+        assertEquals(hash.cellKeyOf(0, 0, 0), hash.cellKeyOf(7, 7, 7));
+        assertNotEquals(hash.cellKeyOf(0, 0, 0), hash.cellKeyOf(8, 0, 0));
+        assertNotEquals(hash.cellKeyOf(0, 0, 0), hash.cellKeyOf(-1, 0, 0));
+        assertEquals(hash.cellKeyOf(-1, -1, -1), hash.cellKeyOf(-8, -8, -8));
+        assertNotEquals(hash.cellKeyOf(-8, 0, 0), hash.cellKeyOf(-9, 0, 0));
+    }
+
+    @Test
+    void nearestFindsTheClosestDepositorAcrossCells() {
+        DepositorHash hash = new DepositorHash(8, null);
+        hash.add(0, 0, 0);
+        hash.add(9, 0, 0);
+
+        assertEquals(ChunkMath.pack(0, 0, 0), hash.nearest(4.0, 0.5, 0.5));
+        assertEquals(ChunkMath.pack(9, 0, 0), hash.nearest(7.5, 0.5, 0.5));
+        assertEquals(ChunkMath.pack(0, 0, 0), hash.nearest(-3.5, 0.5, 0.5));
+    }
+
+    @Test
+    void nearestIgnoresDepositorsOutOfRangeInNeighborCells() {
+        DepositorHash hash = new DepositorHash(8, null);
+        hash.add(15, 0, 0);
+
+        // In the neighboring cell, but 15 blocks away
+        assertEquals(ChunkMath.pack(15, 0, 0), hash.closest(0.5, 0.5, 0.5));
+        assertEquals(DepositorHash.NONE, hash.nearest(0.5, 0.5, 0.5));
+
+        // Exactly at the range still counts
+        assertEquals(ChunkMath.pack(15, 0, 0), hash.nearest(7.5, 0.5, 0.5));
+    }
+
+    @Test
+    void closestOnlyLooksAtNeighborCells() {
+        DepositorHash hash = new DepositorHash(8, null);
+        hash.add(16, 0, 0);
+
+        assertEquals(DepositorHash.NONE, hash.closest(7.5, 0.5, 0.5));
+        assertEquals(ChunkMath.pack(16, 0, 0), hash.closest(8.5, 0.5, 0.5));
+    }
+
+    @Test
+    void versionOnlyChangesWithTheContents() {
+        DepositorHash hash = new DepositorHash(8, null);
+        hash.add(1, 2, 3);
+        int version = hash.version();
+
+        hash.add(1, 2, 3);
+        hash.remove(4, 5, 6);
+        assertEquals(version, hash.version());
+        assertEquals(1, hash.size());
+
+        hash.remove(1, 2, 3);
+        assertNotEquals(version, hash.version());
+        assertEquals(0, hash.size());
+        assertEquals(DepositorHash.NONE, hash.nearest(1.5, 2.5, 3.5));
+    }
+
+    @Test
+    void depositorsSurviveASaveAndLoad() {
+        Path file = directory.resolve("depositors.dat");
+        DepositorHash saved = new DepositorHash(8, file);
+        saved.add(0, 64, 0);
+        saved.add(-100, 70, 250);
+        saved.add(-101, 70, 250);
+        saved.remove(-101, 70, 250);
+        saved.save();
+
+        DepositorHash loaded = new DepositorHash(8, file);
+        loaded.load();
+
+        assertEquals(2, loaded.size());
+        assertEquals(ChunkMath.pack(0, 64, 0), loaded.nearest(2.5, 64.5, 2.5));
+        assertEquals(ChunkMath.pack(-100, 70, 250), loaded.nearest(-99.5, 70.5, 250.5));
+    }
+}
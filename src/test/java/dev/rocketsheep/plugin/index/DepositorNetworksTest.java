@@ -0,0 +1,143 @@
+package dev.rocketsheep.plugin.index;
+
+import dev.rocketsheep.plugin.search.ContainerHits;
+import dev.rocketsheep.plugin.search.ContainerSearch;
+import dev.rocketsheep.plugin.search.SectionAccess;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DepositorNetworksTest {
+
+    private static final long DEPOSITOR = ChunkMath.pack(28, 64, 4);
+    private static final double RADIUS = 8;
+
+    private final TestWorld world = new TestWorld();
+    private final ContainerIndex<Long> index = new ContainerIndex<>(world);
+    private final DepositorNetworks<Long> networks = new DepositorNetworks<>(index);
+
+    @Test
+    void aFreshNetworkOnlyLooksUpItsOwnContainers() {
+        world.container(25, 64, 4);
+        world.container(30, 66, 2);
+        Set<Long> expected = Set.of(ChunkMath.pack(25, 64, 4), ChunkMath.pack(30, 66, 2));
+        assertEquals(expected, search());
+
+        world.lookups = 0;
+        assertEquals(expected, search());
+        assertEquals(2, world.lookups);
+    }
+
+    @Test
+    void blockChangesInsideTheSphereRebuildTheNetwork() {
+        world.container(25, 64, 4);
+        search();
+
+        world.container(31, 64, 4);
+        index.markDirty(31, 64, 4);
+        networks.onBlockChanged(31, 64, 4);
+        assertEquals(Set.of(ChunkMath.pack(25, 64, 4), ChunkMath.pack(31, 64, 4)), search());
+
+        // Outside the sphere, so the cached network is still used
+        world.container(28, 64, 20);
+        index.markDirty(28, 64, 20);
+        networks.onBlockChanged(28, 64, 20);
+        world.lookups = 0;
+        assertEquals(2, search().size());
+        assertEquals(2, world.lookups);
+    }
+
+    @Test
+    void networksBuiltWhileAChunkWasUnloadedAreRebuiltWhenItLoads() {
+        world.container(25, 64, 4);
+        world.container(34, 64, 4);
+        world.unloadChunk(1, 0);
+        index.onChunkUnloaded(1, 0);
+        networks.onChunkUnloaded(1, 0);
+        assertEquals(Set.of(ChunkMath.pack(25, 64, 4)), search());
+
+        world.loadChunk(1, 0);
+        index.onChunkLoaded(1, 0);
+        networks.onChunkLoaded(1, 0);
+        assertEquals(Set.of(ChunkMath.pack(25, 64, 4), ChunkMath.pack(34, 64, 4)), search());
+    }
+
+    @Test
+    void breakingTheDepositorOrUnloadingItsChunkFreesTheNetwork() {
+        search();
+        assertEquals(1, networks.size());
+        networks.onBlockChanged(28, 64, 4);
+        assertEquals(0, networks.size());
+
+        search();
+        // A neighbouring chunk only marks it stale
+        networks.onChunkUnloaded(1, 0);
+        assertEquals(1, networks.size());
+        networks.onChunkUnloaded(0, 0);
+        assertEquals(0, networks.size());
+    }
+
+    private Set<Long> search() {
+        ContainerSearch<Long> search = networks.search(DEPOSITOR, RADIUS);
+        ContainerHits<Long> hits = new ContainerHits<>();
+        for (int step = 0; !search.isDone(); step++) {
+            assertTrue(step < 100_000, "search did not finish");
+            search.step(hits);
+        }
+        Set<Long> found = new HashSet<>();
+        for (int i = 0; i < hits.size(); i++) {
+            assertTrue(found.add(hits.position(i)), "container reported twice");
+        }
+        return found;
+    }
+
+    /**
+     * Containers (identified by their packed position) in an otherwise empty world,
+     * with every chunk loaded unless unloaded explicitly. Counts block lookups.
+     */
+    private static final class TestWorld implements SectionAccess<Long> {
+        private final Set<Long> containers = new HashSet<>();
+        private final Map<Long, Boolean> unloadedChunks = new HashMap<>();
+        int lookups;
+
+        void container(int x, int y, int z) {
+            containers.add(ChunkMath.pack(x, y, z));
+        }
+
+        void unloadChunk(int chunkX, int chunkZ) {
+            unloadedChunks.put(ChunkMath.chunkKey(chunkX, chunkZ), Boolean.TRUE);
+        }
+
+        void loadChunk(int chunkX, int chunkZ) {
+            unloadedChunks.remove(ChunkMath.chunkKey(chunkX, chunkZ));
+        }
+
+        @Override
+        public boolean loadSection(int chunkX, int section, int chunkZ) {
+            return isChunkLoaded(chunkX, chunkZ);
+        }
+
+        @Override
+        public boolean isChunkLoaded(int chunkX, int chunkZ) {
+            return !unloadedChunks.containsKey(ChunkMath.chunkKey(chunkX, chunkZ));
+        }
+
+        @Override
+        public Long containerAt(int x, int y, int z) {
+            lookups++;
+            long packed = ChunkMath.pack(x, y, z);
+            return containers.contains(packed) ? packed : null;
+        }
+
+        @Override
+        public boolean isPassable(int x, int y, int z) {
+            return !containers.contains(ChunkMath.pack(x, y, z));
+        }
+    }
+}
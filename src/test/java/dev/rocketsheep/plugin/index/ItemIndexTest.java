@@ -0,0 +1,234 @@
+package dev.rocketsheep.plugin.index;
+
+import dev.rocketsheep.plugin.platform.ContainerAccess;
+import dev.rocketsheep.plugin.search.ContainerHits;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItemIndexTest {
+
+    private static final String[] ITEMS = { "stone", "dirt", "log", "plank", "iron", "gold", "coal", "wool" };
+
+    private final ItemIndex<TestContainer> index = new ItemIndex<>(new TestAccess(), 16);
+    private final ContainerHits<TestContainer> hits = new ContainerHits<>();
+
+    @Test
+    void selectsTheContainersHoldingAnyOfThePlayersItems() {
+        SplittableRandom random = new SplittableRandom(7);
+        // Few holders, so selection uses the posting lists, then too many for them
+        for (int count : new int[] { 20, 400 }) {
+            hits.clear();
+            for (int i = 0; i < count; i++) {
+                TestContainer container = new TestContainer(4);
+                for (int slot = 0; slot < 4; slot++) {
+                    if (random.nextInt(3) == 0) {
+                        container.itemIds[slot] = ITEMS[random.nextInt(ITEMS.length)];
+                    }
+                }
+                hits.add(ChunkMath.pack(i, 64, count), container);
+            }
+            // Tracks and refreshes every container
+            index.selectAll(hits, 0, hits.size(), new ContainerHits<>());
+
+            for (int round = 0; round < 20; round++) {
+                TestContainer player = new TestContainer(3);
+                for (int slot = 0; slot < 3; slot++) {
+                    player.itemIds[slot] = ITEMS[random.nextInt(ITEMS.length)];
+                }
+                assertEquals(holders(player), select(index.playerItems(player), 0, hits.size()),
+                    count + " containers, round " + round);
+            }
+        }
+    }
+
+    @Test
+    void containersThatChangeAfterTheWalkAreTestedAgain() {
+        TestContainer gainsStone = container("dirt");
+        TestContainer losesStone = container("stone");
+        TestContainer keepsStone = container("stone", "log");
+        hits.add(ChunkMath.pack(0, 64, 0), gainsStone);
+        hits.add(ChunkMath.pack(1, 64, 0), losesStone);
+        hits.add(ChunkMath.pack(2, 64, 0), keepsStone);
+        index.selectAll(hits, 0, hits.size(), new ContainerHits<>());
+
+        ItemIndex.PlayerItems items = index.playerItems(container("stone"));
+        assertEquals(List.of(losesStone), select(items, 0, 2));
+
+        // Changed between two selection steps of the same deposit
+        gainsStone.set(0, "stone");
+        losesStone.set(0, null);
+        assertEquals(List.of(gainsStone, keepsStone), select(items, 0, 3));
+    }
+
+    @Test
+    void untrackedContainersDropOutOfThePostingLists() {
+        TestContainer chest = container("stone");
+        hits.add(ChunkMath.pack(0, 64, 0), chest);
+        index.selectAll(hits, 0, 1, new ContainerHits<>());
+
+        index.untrack(ChunkMath.pack(0, 64, 0));
+        hits.clear();
+        TestContainer replacement = container("dirt");
+        hits.add(ChunkMath.pack(0, 64, 0), replacement);
+        assertEquals(List.of(), select(index.playerItems(container("stone")), 0, 1));
+        assertEquals(List.of(replacement), select(index.playerItems(container("dirt")), 0, 1));
+    }
+
+    @Test
+    void versionsChangeWithTheContainerAndAreNeverReused() {
+        long position = ChunkMath.pack(3, 64, 3);
+        assertEquals(-1, index.version(position));
+
+        TestContainer chest = container("stone");
+        hits.add(position, chest);
+        index.selectAll(hits, 0, 1, new ContainerHits<>());
+        int first = index.version(position);
+        assertEquals(first, index.version(position));
+
+        chest.set(1, "dirt");
+        int changed = index.version(position);
+        assertTrue(changed > first);
+
+        index.untrackChunk(0, 0);
+        assertEquals(-1, index.version(position));
+        index.selectAll(hits, 0, 1, new ContainerHits<>());
+        assertTrue(index.version(position) > changed);
+    }
+
+    @Test
+    void recordedMissesAreSkippedUntilTheContainerChanges() {
+        long position = ChunkMath.pack(0, 64, 0);
+        TestContainer chest = container("stone");
+        hits.add(position, chest);
+        ItemIndex.PlayerItems items = index.playerItems(container("stone"));
+        assertEquals(List.of(chest), select(items, 0, 1));
+
+        index.recordMiss(position, index.version(position), items.fingerprint());
+        assertEquals(List.of(), select(index.playerItems(container("stone")), 0, 1));
+        // Other item types have their own misses
+        assertEquals(List.of(chest), select(index.playerItems(container("stone", "dirt")), 0, 1));
+
+        // A miss for an older version is ignored
+        int stale = index.version(position);
+        chest.set(1, "log");
+        index.recordMiss(position, stale, items.fingerprint());
+        assertEquals(List.of(chest), select(index.playerItems(container("stone")), 0, 1));
+    }
+
+    @Test
+    void fingerprintsDependOnlyOnTheSetOfItemTypes() {
+        long fingerprint = index.playerItems(container("stone", "dirt", "stone")).fingerprint();
+        assertEquals(fingerprint, index.playerItems(container("dirt", "stone")).fingerprint());
+        assertNotEquals(fingerprint, index.playerItems(container("dirt")).fingerprint());
+        assertEquals(fingerprint, index.fingerprint(container("stone", "dirt")));
+    }
+
+    private List<TestContainer> select(ItemIndex.PlayerItems items, int from, int to) {
+        ContainerHits<TestContainer> candidates = new ContainerHits<>();
+        index.selectCandidates(hits, from, to, items, candidates);
+        List<TestContainer> selected = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            selected.add(candidates.container(i));
+        }
+        return selected;
+    }
+
+    private List<TestContainer> holders(TestContainer player) {
+        List<TestContainer> expected = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) {
+            if (sharesAny(hits.container(i), player)) {
+                expected.add(hits.container(i));
+            }
+        }
+        return expected;
+    }
+
+    private static boolean sharesAny(TestContainer container, TestContainer player) {
+        for (String itemId : container.itemIds) {
+            for (String held : player.itemIds) {
+                if (itemId != null && itemId.equals(held)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static TestContainer container(String... itemIds) {
+        TestContainer container = new TestContainer(itemIds.length + 1);
+        System.arraycopy(itemIds, 0, container.itemIds, 0, itemIds.length);
+        return container;
+    }
+
+    private static final class TestContainer {
+        final String[] itemIds;
+        final List<Runnable> listeners = new ArrayList<>();
+
+        TestContainer(int capacity) {
+            itemIds = new String[capacity];
+        }
+
+        void set(int slot, String itemId) {
+            itemIds[slot] = itemId;
+            for (Runnable listener : new ArrayList<>(listeners)) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Reads slots and reports changes; moving items isn't needed by the index.
+     */
+    private static final class TestAccess implements ContainerAccess<TestContainer> {
+        @Override
+        public int capacity(TestContainer container) {
+            return container.itemIds.length;
+        }
+
+        @Override
+        public String itemId(TestContainer container, int slot) {
+            return container.itemIds[slot];
+        }
+
+        @Override
+        public int quantity(TestContainer container, int slot) {
+            return container.itemIds[slot] != null ? 1 : 0;
+        }
+
+        @Override
+        public int maxStack(TestContainer container, int slot) {
+            return 64;
+        }
+
+        @Override
+        public int moveFromSlot(TestContainer from, int slot, int quantity, TestContainer to) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int quickStack(TestContainer from, TestContainer to) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Subscription onChange(TestContainer container, Runnable listener) {
+            container.listeners.add(listener);
+            return () -> container.listeners.remove(listener);
+        }
+
+        @Override
+        public void beginBatch() {
+        }
+
+        @Override
+        public void endBatch() {
+        }
+    }
+}
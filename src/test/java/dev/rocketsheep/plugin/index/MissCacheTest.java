@@ -0,0 +1,55 @@
+package dev.rocketsheep.plugin.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MissCacheTest {
+
+    private final MissCache misses = new MissCache(2);
+
+    @Test
+    void missesOnlyMatchTheSameContainerVersionAndItemSet() {
+        Object chest = new Object();
+        misses.add(chest, 3, 100L);
+
+        assertTrue(misses.contains(chest, 3, 100L));
+        assertFalse(misses.contains(chest, 4, 100L));
+        assertFalse(misses.contains(chest, 3, 101L));
+        // Keyed by identity, not by equality
+        assertFalse(misses.contains(new Object(), 3, 100L));
+    }
+
+    @Test
+    void theLeastRecentlyUsedMissIsEvictedAtCapacity() {
+        Object chest = new Object();
+        Object barrel = new Object();
+        Object crate = new Object();
+        misses.add(chest, 1, 100L);
+        misses.add(barrel, 1, 100L);
+
+        // A lookup counts as a use, so the barrel is now the eldest
+        assertTrue(misses.contains(chest, 1, 100L));
+        misses.add(crate, 1, 100L);
+        assertTrue(misses.contains(chest, 1, 100L));
+        assertFalse(misses.contains(barrel, 1, 100L));
+        assertTrue(misses.contains(crate, 1, 100L));
+    }
+
+    @Test
+    void removingOwnersDropsAllTheirMisses() {
+        Object chest = new Object();
+        Object barrel = new Object();
+        misses.add(chest, 1, 100L);
+        misses.add(chest, 2, 200L);
+        misses.removeOwners(owner -> owner == chest);
+        assertTrue(misses.isEmpty());
+
+        misses.add(barrel, 1, 100L);
+        misses.removeOwners(owner -> owner == chest);
+        assertTrue(misses.contains(barrel, 1, 100L));
+        misses.clear();
+        assertTrue(misses.isEmpty());
+    }
+}
@@ -0,0 +1,73 @@
+package dev.rocketsheep.plugin.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OccupancyMapTest {
+
+    private static final int REGION_SIDE = 1 << OccupancyMap.REGION_BITS;
+
+    private final OccupancyMap map = new OccupancyMap();
+
+    @Test
+    void unknownColumnsAreNotKnownEmpty() {
+        assertFalse(map.isKnownEmpty(0, 0, 0b1));
+        assertFalse(map.isRegionKnownEmpty(0, 0, 0b1));
+    }
+
+    @Test
+    void onlyScannedSectionsWithoutContainersAreKnownEmpty() {
+        map.update(3, -7, 0b0111, 0b0100);
+
+        assertTrue(map.isKnownEmpty(3, -7, 0b0011));
+        assertFalse(map.isKnownEmpty(3, -7, 0b0110));
+        assertFalse(map.isKnownEmpty(3, -7, 0b1001));
+        assertFalse(map.isKnownEmpty(4, -7, 0b0001));
+    }
+
+    @Test
+    void forgottenColumnsAreVisitedAgain() {
+        map.update(5, 5, 0b1, 0);
+        map.forget(5, 5);
+
+        assertFalse(map.isKnownEmpty(5, 5, 0b1));
+    }
+
+    @Test
+    void aRegionIsKnownEmptyOnceEveryColumnIsScannedAndEmpty() {
+        // Region (-1, 0) covers chunk columns x -32..-1, z 0..31
+        for (int z = 0; z < REGION_SIDE; z++) {
+            for (int x = -REGION_SIDE; x < 0; x++) {
+                if (x != -1 || z != REGION_SIDE - 1) {
+                    map.update(x, z, 0b11, 0);
+                }
+            }
+        }
+        assertFalse(map.isRegionKnownEmpty(-1, 0, 0b01));
+
+        map.update(-1, REGION_SIDE - 1, 0b01, 0);
+        assertTrue(map.isRegionKnownEmpty(-1, 0, 0b01));
+        assertFalse(map.isRegionKnownEmpty(-1, 0, 0b11));
+        assertFalse(map.isRegionKnownEmpty(0, 0, 0b01));
+    }
+
+    @Test
+    void regionCountsFollowColumnUpdates() {
+        for (int z = 0; z < REGION_SIDE; z++) {
+            for (int x = 0; x < REGION_SIDE; x++) {
+                map.update(x, z, 0b1, 0);
+            }
+        }
+        map.update(10, 20, 0b1, 0b1);
+        assertFalse(map.isRegionKnownEmpty(0, 0, 0b1));
+
+        // Rescanning the column without the container makes the region empty again
+        map.update(10, 20, 0b1, 0);
+        assertTrue(map.isRegionKnownEmpty(0, 0, 0b1));
+
+        map.forget(10, 20);
+        assertFalse(map.isRegionKnownEmpty(0, 0, 0b1));
+    }
+}
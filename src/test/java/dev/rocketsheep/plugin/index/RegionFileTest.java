@@ -0,0 +1,154 @@
+package dev.rocketsheep.plugin.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionFileTest {
+
+    // Where the first record lands: after the 64-byte header and the 1024-slot table
+    private static final int FIRST_RECORD = 64 + 1024 * 16;
+
+    private static final long RUN = 42L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void columnsSurviveACleanClose() throws IOException {
+        Path path = dir.resolve("r.-1.0.adix");
+        try (RegionFile file = RegionFile.open(path, -1, 0, RUN)) {
+            file.write(-3, 5, column(0b1010, ChunkMath.pack(-96, 40, 160), ChunkMath.pack(-65, 100, 191)));
+        }
+
+        try (RegionFile file = RegionFile.open(path, -1, 0, RUN)) {
+            ChunkColumn column = file.read(-3, 5);
+            assertNotNull(column);
+            assertEquals(0b1010, column.scannedSections);
+            assertEquals(2, column.size);
+            assertTrue(column.contains(ChunkMath.pack(-96, 40, 160)));
+            assertTrue(column.contains(ChunkMath.pack(-65, 100, 191)));
+            assertTrue(column.unverified);
+            assertNull(file.read(-4, 5));
+        }
+    }
+
+    @Test
+    void aColumnFromAnEarlierRunIsReadBackUnscanned() throws IOException {
+        Path path = dir.resolve("r.0.0.adix");
+        try (RegionFile file = RegionFile.open(path, 0, 0, RUN)) {
+            file.write(1, 1, column(0b110, ChunkMath.pack(40, 70, 40)));
+        }
+
+        try (RegionFile file = RegionFile.open(path, 0, 0, RUN + 1)) {
+            ChunkColumn column = file.read(1, 1);
+            assertNotNull(column);
+            assertEquals(0, column.scannedSections);
+            assertTrue(column.contains(ChunkMath.pack(40, 70, 40)));
+            assertTrue(column.unverified);
+        }
+    }
+
+    @Test
+    void aGrownRecordMovesWithoutDisturbingOthers() throws IOException {
+        Path path = dir.resolve("r.0.0.adix");
+        try (RegionFile file = RegionFile.open(path, 0, 0, RUN)) {
+            file.write(0, 0, column(0b1, ChunkMath.pack(1, 2, 3)));
+            file.write(1, 0, column(0b1, ChunkMath.pack(33, 2, 3)));
+
+            ChunkColumn grown = column(0b1);
+            for (int x = 0; x < 32; x++) {
+                grown.add(ChunkMath.pack(x, 10, 7));
+            }
+            file.write(0, 0, grown);
+
+            assertEquals(32, file.read(0, 0).size);
+            assertTrue(file.read(1, 0).contains(ChunkMath.pack(33, 2, 3)));
+        }
+    }
+
+    @Test
+    void aColumnWithNothingScannedIsCleared() throws IOException {
+        try (RegionFile file = RegionFile.open(dir.resolve("r.0.0.adix"), 0, 0, RUN)) {
+            file.write(2, 2, column(0b1, ChunkMath.pack(64, 1, 64)));
+            file.write(2, 2, column(0));
+
+            assertNull(file.read(2, 2));
+        }
+    }
+
+    @Test
+    void aRecordWithABadChecksumIsDropped() throws IOException {
+        Path path = dir.resolve("r.0.0.adix");
+        try (RegionFile file = RegionFile.open(path, 0, 0, RUN)) {
+            file.write(0, 0, column(0b1, ChunkMath.pack(1, 2, 3)));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(path.toFile(), "rw")) {
+            raw.seek(FIRST_RECORD + 8);
+            raw.writeInt(12345);
+        }
+
+        try (RegionFile file = RegionFile.open(path, 0, 0, RUN)) {
+            assertNull(file.read(0, 0));
+        }
+    }
+
+    @Test
+    void aFileOfAnotherVersionIsDiscarded() throws IOException {
+        Path path = dir.resolve("r.0.0.adix");
+        try (RegionFile file = RegionFile.open(path, 0, 0, RUN)) {
+            file.write(0, 0, column(0b1, ChunkMath.pack(1, 2, 3)));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(path.toFile(), "rw")) {
+            raw.seek(4);
+            raw.writeInt(99);
+        }
+
+        try (RegionFile file = RegionFile.open(path, 0, 0, RUN)) {
+            assertNull(file.read(0, 0));
+        }
+    }
+
+    @Test
+    void aFileForAnotherRegionIsDiscarded() throws IOException {
+        Path path = dir.resolve("r.0.0.adix");
+        try (RegionFile file = RegionFile.open(path, 0, 0, RUN)) {
+            file.write(0, 0, column(0b1, ChunkMath.pack(1, 2, 3)));
+        }
+
+        try (RegionFile file = RegionFile.open(path, 1, 0, RUN)) {
+            assertNull(file.read(32, 0));
+        }
+    }
+
+    @Test
+    void aFileThatWasNotClosedIsDiscarded() throws IOException {
+        Path path = dir.resolve("r.0.0.adix");
+        try (RegionFile crashed = RegionFile.open(path, 0, 0, RUN)) {
+            crashed.write(0, 0, column(0b1, ChunkMath.pack(1, 2, 3)));
+            crashed.force();
+
+            // Opened again while the first is still open, as after a crash
+            try (RegionFile file = RegionFile.open(path, 0, 0, RUN)) {
+                assertNull(file.read(0, 0));
+            }
+        }
+    }
+
+    private static ChunkColumn column(int scannedSections, long... positions) {
+        ChunkColumn column = new ChunkColumn();
+        column.scannedSections = scannedSections;
+        for (long position : positions) {
+            column.add(position);
+        }
+        return column;
+    }
+}
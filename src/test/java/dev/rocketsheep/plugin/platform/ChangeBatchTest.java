@@ -0,0 +1,68 @@
+package dev.rocketsheep.plugin.platform;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChangeBatchTest {
+
+    private final ChangeBatch batch = new ChangeBatch();
+    private final List<String> fired = new ArrayList<>();
+
+    @Test
+    void listenersRunOnceWhenTheOutermostBatchEnds() {
+        ChangeBatch.Listener chest = listener("chest");
+        ChangeBatch.Listener barrel = listener("barrel");
+
+        batch.begin();
+        batch.fire(chest);
+        batch.begin();
+        batch.fire(barrel);
+        batch.fire(chest);
+        batch.end();
+        assertEquals(List.of(), fired);
+
+        batch.end();
+        assertEquals(List.of("chest", "barrel"), fired);
+
+        // Outside a batch every notification runs immediately
+        batch.fire(chest);
+        batch.fire(chest);
+        assertEquals(List.of("chest", "barrel", "chest", "chest"), fired);
+    }
+
+    @Test
+    void aThrowingListenerLeavesTheBatchClosedAndEmpty() {
+        ChangeBatch.Listener chest = listener("chest");
+        ChangeBatch.Listener broken = new ChangeBatch.Listener(() -> {
+            throw new IllegalStateException("broken");
+        });
+        ChangeBatch.Listener barrel = listener("barrel");
+
+        batch.begin();
+        batch.fire(chest);
+        batch.fire(broken);
+        batch.fire(barrel);
+        assertThrows(IllegalStateException.class, batch::end);
+        assertEquals(List.of("chest"), fired);
+
+        // The dropped notification is neither delivered later nor stuck as queued
+        batch.begin();
+        batch.end();
+        assertEquals(List.of("chest"), fired);
+        batch.begin();
+        batch.fire(barrel);
+        batch.end();
+        assertEquals(List.of("chest", "barrel"), fired);
+        batch.fire(chest);
+        assertEquals(List.of("chest", "barrel", "chest"), fired);
+    }
+
+    private ChangeBatch.Listener listener(String name) {
+        return new ChangeBatch.Listener(() -> fired.add(name));
+    }
+}
@@ -0,0 +1,125 @@
+package dev.rocketsheep.plugin.search;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomScannerTest {
+
+    private static final int CELLS_PER_STEP = 1024;
+
+    private final TestWorld world = new TestWorld();
+
+    @Test
+    void findsContainersInTheRoomButNotBehindItsWalls() {
+        // A 5x3x5 room of air, walled in on every side
+        for (int x = -3; x <= 3; x++) {
+            for (int y = 64; y <= 68; y++) {
+                for (int z = -3; z <= 3; z++) {
+                    if (Math.abs(x) == 3 || Math.abs(z) == 3 || y == 64 || y == 68) {
+                        world.solid(x, y, z);
+                    }
+                }
+            }
+        }
+        world.container(2, 65, 0, "inside");
+        world.container(-3, 66, 1, "in the wall");
+        world.container(5, 65, 0, "next door");
+
+        List<String> found = fill(scanner(0, 65, 0, 8), CELLS_PER_STEP);
+        assertEquals(List.of("in the wall", "inside"), sorted(found));
+    }
+
+    @Test
+    void staysWithinTheRadius() {
+        world.container(3, 64, 0, "near");
+        world.container(0, 64, -10, "far");
+
+        assertEquals(List.of("near"), fill(scanner(0, 64, 0, 4), CELLS_PER_STEP));
+    }
+
+    @Test
+    void aResumedFillFindsTheSameContainersOnce() {
+        world.container(1, 64, 0, "a");
+        world.container(-2, 65, 2, "b");
+        world.container(0, 62, -3, "c");
+
+        List<String> whole = fill(scanner(0, 64, 0, 5), CELLS_PER_STEP);
+        List<String> stepped = fill(scanner(0, 64, 0, 5), 1);
+
+        assertEquals(List.of("a", "b", "c"), sorted(whole));
+        assertEquals(sorted(whole), sorted(stepped));
+    }
+
+    @Test
+    void startsFromASolidBlock() {
+        world.solid(0, 64, 0);
+        world.container(1, 64, 0, "beside");
+
+        assertEquals(List.of("beside"), fill(scanner(0, 64, 0, 3), CELLS_PER_STEP));
+    }
+
+    private RoomScanner<String> scanner(int x, int y, int z, double radius) {
+        return new RoomScanner<>(world, x, y, z, x + 0.5, y + 0.5, z + 0.5, radius);
+    }
+
+    private static List<String> fill(RoomScanner<String> scanner, int cellsPerStep) {
+        ContainerHits<String> hits = new ContainerHits<>();
+        for (int step = 0; !scanner.isDone(); step++) {
+            assertTrue(step < 1_000_000, "fill did not finish");
+            scanner.step(cellsPerStep, hits);
+        }
+        List<String> found = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) {
+            found.add(hits.container(i));
+        }
+        return found;
+    }
+
+    private static List<String> sorted(List<String> names) {
+        List<String> copy = new ArrayList<>(names);
+        copy.sort(null);
+        return copy;
+    }
+
+    /**
+     * Air everywhere except the solid blocks and containers placed in it.
+     */
+    private static final class TestWorld implements SectionAccess<String> {
+        private final Set<Long> solid = new HashSet<>();
+        private final Map<Long, String> containers = new HashMap<>();
+
+        void solid(int x, int y, int z) {
+            solid.add(ChunkMath.pack(x, y, z));
+        }
+
+        void container(int x, int y, int z, String name) {
+            solid(x, y, z);
+            containers.put(ChunkMath.pack(x, y, z), name);
+        }
+
+        @Override
+        public boolean loadSection(int chunkX, int section, int chunkZ) {
+            return true;
+        }
+
+        @Override
+        public String containerAt(int x, int y, int z) {
+            return containers.get(ChunkMath.pack(x, y, z));
+        }
+
+        @Override
+        public boolean isPassable(int x, int y, int z) {
+            return !solid.contains(ChunkMath.pack(x, y, z));
+        }
+    }
+}
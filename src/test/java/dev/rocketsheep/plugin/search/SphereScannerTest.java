@@ -0,0 +1,151 @@
+package dev.rocketsheep.plugin.search;
+
+import dev.rocketsheep.plugin.index.ChunkMath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SphereScannerTest {
+
+    private final TestWorld world = new TestWorld();
+
+    @Test
+    void findsExactlyTheContainersWhoseCentersAreInRange() {
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < 400; i++) {
+            world.container(random.nextInt(-40, 40), random.nextInt(0, 100), random.nextInt(-40, 40));
+        }
+
+        for (int round = 0; round < 50; round++) {
+            double x = random.nextDouble(-20, 20);
+            double y = random.nextDouble(10, 90);
+            double z = random.nextDouble(-20, 20);
+            double radius = random.nextDouble(1, 24);
+
+            ContainerHits<Long> hits = new ContainerHits<>();
+            SphereScanner.scan(world, x, y, z, radius, hits);
+            assertEquals(world.within(x, y, z, radius), positions(hits), "round " + round);
+        }
+    }
+
+    @Test
+    void skipsUnloadedSections() {
+        world.container(1, 40, 1);
+        world.container(1, 70, 1);
+        world.unload(0, 2, 0);
+
+        ContainerHits<Long> hits = new ContainerHits<>();
+        SphereScanner.scan(world, 1.5, 55.5, 1.5, 20, hits);
+        assertEquals(Set.of(ChunkMath.pack(1, 40, 1)), positions(hits));
+    }
+
+    @Test
+    void scansAWholeSection() {
+        world.container(-32, 64, -1);
+        world.container(-1, 95, -32);
+        world.container(-1, 96, -1);
+        world.container(0, 64, 0);
+
+        ContainerHits<Long> hits = new ContainerHits<>();
+        SphereScanner.scanSection(world, -1, 2, -1, hits);
+        assertEquals(Set.of(ChunkMath.pack(-32, 64, -1), ChunkMath.pack(-1, 95, -32)), positions(hits));
+    }
+
+    @Test
+    void offsetTablesNeverClipABlockInRange() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int radius = 1; radius <= 12; radius++) {
+            SphereOffsets offsets = SphereOffsets.forRadius(radius);
+            for (int sample = 0; sample < 20; sample++) {
+                // Any center inside the origin block
+                double cx = random.nextDouble();
+                double cy = random.nextDouble();
+                double cz = random.nextDouble();
+                for (int dx = -radius; dx <= radius; dx++) {
+                    for (int dz = -radius; dz <= radius; dz++) {
+                        for (int dy = -radius; dy <= radius; dy++) {
+                            double ex = dx + 0.5 - cx;
+                            double ey = dy + 0.5 - cy;
+                            double ez = dz + 0.5 - cz;
+                            if (ex * ex + ey * ey + ez * ez <= (double) radius * radius) {
+                                assertTrue(Math.abs(dy) <= offsets.halfHeight(dx, dz),
+                                    "radius " + radius + " offset " + dx + ", " + dy + ", " + dz);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<Long> positions(ContainerHits<Long> hits) {
+        List<Long> found = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals(hits.position(i), (long) hits.container(i));
+            found.add(hits.position(i));
+        }
+        Set<Long> unique = new HashSet<>(found);
+        assertEquals(found.size(), unique.size(), "containers reported twice");
+        return unique;
+    }
+
+    /**
+     * Containers (identified by their packed position) in an otherwise empty world.
+     * Checks that blocks are only looked up inside the section last loaded.
+     */
+    private static final class TestWorld implements SectionAccess<Long> {
+        private final Set<Long> containers = new HashSet<>();
+        private final Map<Long, Boolean> unloaded = new HashMap<>();
+        private long section = Long.MIN_VALUE;
+
+        void container(int x, int y, int z) {
+            containers.add(ChunkMath.pack(x, y, z));
+        }
+
+        void unload(int chunkX, int section, int chunkZ) {
+            unloaded.put(ChunkMath.pack(chunkX, section, chunkZ), Boolean.TRUE);
+        }
+
+        Set<Long> within(double x, double y, double z, double radius) {
+            Set<Long> found = new HashSet<>();
+            for (long packed : containers) {
+                double dx = ChunkMath.unpackX(packed) + 0.5 - x;
+                double dy = ChunkMath.unpackY(packed) + 0.5 - y;
+                double dz = ChunkMath.unpackZ(packed) + 0.5 - z;
+                if (dx * dx + dy * dy + dz * dz <= radius * radius) {
+                    found.add(packed);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public boolean loadSection(int chunkX, int section, int chunkZ) {
+            long key = ChunkMath.pack(chunkX, section, chunkZ);
+            this.section = unloaded.containsKey(key) ? Long.MIN_VALUE : key;
+            return this.section == key;
+        }
+
+        @Override
+        public Long containerAt(int x, int y, int z) {
+            assertEquals(section, ChunkMath.pack(x >> ChunkMath.CHUNK_BITS, y >> ChunkMath.CHUNK_BITS,
+                z >> ChunkMath.CHUNK_BITS), "block outside the loaded section");
+            long packed = ChunkMath.pack(x, y, z);
+            return containers.contains(packed) ? packed : null;
+        }
+
+        @Override
+        public boolean isPassable(int x, int y, int z) {
+            return !containers.contains(ChunkMath.pack(x, y, z));
+        }
+    }
+}